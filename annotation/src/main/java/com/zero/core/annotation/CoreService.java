@@ -0,0 +1,108 @@
+package com.zero.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 声明一个服务实现类（AIDL Stub 的子类），编译期由 compiler 模块生成服务索引，
+ * 取代在每个进程 Application 静态块里挨个 Service.install() 的写法。
+ * <p>
+ * 例如：
+ * <pre>
+ * &#64;CoreService(id = StopPackageUI.SERVICE_ID, process = CoreService.PROCESS_MAIN)
+ * public class StopPackageUI extends IStopPackage.Stub { ... }
+ * </pre>
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface CoreService {
+
+    /**
+     * 运行在 core 进程（即 CoreProvider 所在进程）
+     */
+    String PROCESS_CORE = "#core";
+
+    /**
+     * 运行在主进程（进程名是包名无后缀）
+     */
+    String PROCESS_MAIN = "";
+
+    /**
+     * 预创建策略，同 Service.WARM_UP_LAZY / WARM_UP_EAGER / WARM_UP_IDLE
+     */
+    int WARM_UP_LAZY = 0;
+
+    int WARM_UP_EAGER = 1;
+
+    int WARM_UP_IDLE = 2;
+
+    /**
+     * 同 Service.DEFAULT_MAX_QUEUED_CALLS
+     */
+    int DEFAULT_MAX_QUEUED_CALLS = 4;
+
+    /**
+     * ServiceId，最好是纯英文无空格无符号，不可重复
+     */
+    String id();
+
+    /**
+     * 运行所在进程名的结尾，规则同 Service.getProcessSuffix()：core 进程用 {@link #PROCESS_CORE}，
+     * 主进程用 {@link #PROCESS_MAIN}，其他进程以 ":" 开头，例如 ":float"
+     */
+    String process() default PROCESS_CORE;
+
+    /**
+     * 幂等的 transaction code，规则同 Service.getIdempotentTransactions()，
+     * 调用时对端进程死掉会重新找到服务后重试一次
+     */
+    int[] idempotentTransactions() default {};
+
+    /**
+     * 可缓存的 transaction code，规则同 Service.getCacheableTransactions()，
+     * 调用方按参数缓存结果，实现方用 CoreServiceManager.invalidateCache 通知失效
+     */
+    int[] cacheableTransactions() default {};
+
+    /**
+     * 预创建策略，规则同 Service.getWarmUpPolicy()，只对 core 进程的服务有效
+     */
+    int warmUp() default WARM_UP_LAZY;
+
+    /**
+     * 构造时用到的其他 core 服务的 id，规则同 Service.getDependencies()
+     */
+    String[] dependencies() default {};
+
+    /**
+     * 同时运行副本的其他进程后缀，规则同 Service.getReplicaProcessSuffixes()，不能用于 core 进程的服务
+     */
+    String[] replicas() default {};
+
+    /**
+     * 同时在 binder 线程上执行的调用数上限，规则同 Service.getMaxConcurrentCalls()，0 不限制
+     */
+    int maxConcurrentCalls() default 0;
+
+    /**
+     * 超过并发上限时最多排队的同步调用数，规则同 Service.getMaxQueuedCalls()
+     */
+    int maxQueuedCalls() default DEFAULT_MAX_QUEUED_CALLS;
+
+    /**
+     * 每个调用方进程每秒最多的同步调用数，规则同 Service.getCallerRateLimit()，0 不限流
+     */
+    int callerRateLimit() default 0;
+
+    /**
+     * 是否把所有调用交给这个服务自己的线程串行执行，规则同 Service.getDispatchLooper()
+     */
+    boolean dispatchThread() default false;
+
+    /**
+     * 是否把调用方短时间内的 oneway 调用合并成一次 transaction，规则同 Service.isOnewayBatchingEnabled()
+     */
+    boolean batchOneway() default false;
+}
@@ -0,0 +1,242 @@
+/*
+ * This file is auto-generated.  DO NOT MODIFY.
+ * Original file: lib/src/main/java/com/zero/core/ICoreServiceManager.aidl
+ */
+package com.zero.core;
+public interface ICoreServiceManager extends android.os.IInterface
+{
+/** Local-side IPC implementation stub class. */
+public static abstract class Stub extends android.os.Binder implements com.zero.core.ICoreServiceManager
+{
+private static final java.lang.String DESCRIPTOR = "com.zero.core.ICoreServiceManager";
+/** Construct the stub at attach it to the interface. */
+public Stub()
+{
+this.attachInterface(this, DESCRIPTOR);
+}
+/**
+ * Cast an IBinder object into an com.zero.core.ICoreServiceManager interface,
+ * generating a proxy if needed.
+ */
+public static com.zero.core.ICoreServiceManager asInterface(android.os.IBinder obj)
+{
+if ((obj==null)) {
+return null;
+}
+android.os.IInterface iin = obj.queryLocalInterface(DESCRIPTOR);
+if (((iin!=null)&&(iin instanceof com.zero.core.ICoreServiceManager))) {
+return ((com.zero.core.ICoreServiceManager)iin);
+}
+return new com.zero.core.ICoreServiceManager.Stub.Proxy(obj);
+}
+@Override public android.os.IBinder asBinder()
+{
+return this;
+}
+@Override public boolean onTransact(int code, android.os.Parcel data, android.os.Parcel reply, int flags) throws android.os.RemoteException
+{
+switch (code)
+{
+case INTERFACE_TRANSACTION:
+{
+reply.writeString(DESCRIPTOR);
+return true;
+}
+case TRANSACTION_getCoreService:
+{
+data.enforceInterface(DESCRIPTOR);
+java.lang.String _arg0;
+_arg0 = data.readString();
+android.os.IBinder _result = this.getCoreService(_arg0);
+reply.writeNoException();
+reply.writeStrongBinder(_result);
+return true;
+}
+case TRANSACTION_installOtherManager:
+{
+data.enforceInterface(DESCRIPTOR);
+java.lang.String _arg0;
+_arg0 = data.readString();
+android.os.IBinder _arg1;
+_arg1 = data.readStrongBinder();
+this.installOtherManager(_arg0, _arg1);
+reply.writeNoException();
+return true;
+}
+case TRANSACTION_getOtherManager:
+{
+data.enforceInterface(DESCRIPTOR);
+java.lang.String _arg0;
+_arg0 = data.readString();
+android.os.IBinder _result = this.getOtherManager(_arg0);
+reply.writeNoException();
+reply.writeStrongBinder(_result);
+return true;
+}
+case TRANSACTION_getCoreServices:
+{
+data.enforceInterface(DESCRIPTOR);
+java.lang.String[] _arg0;
+_arg0 = data.createStringArray();
+java.util.List<com.zero.core.ServiceParcel> _result = this.getCoreServices(_arg0);
+reply.writeNoException();
+reply.writeTypedList(_result);
+return true;
+}
+case TRANSACTION_publishInvalidation:
+{
+data.enforceInterface(DESCRIPTOR);
+java.lang.String _arg0;
+_arg0 = data.readString();
+int _arg1;
+_arg1 = data.readInt();
+byte[] _arg2;
+_arg2 = data.createByteArray();
+this.publishInvalidation(_arg0, _arg1, _arg2);
+return true;
+}
+case TRANSACTION_getCoreServiceByHandle:
+{
+data.enforceInterface(DESCRIPTOR);
+int _arg0;
+_arg0 = data.readInt();
+android.os.IBinder _result = this.getCoreServiceByHandle(_arg0);
+reply.writeNoException();
+reply.writeStrongBinder(_result);
+return true;
+}
+}
+return super.onTransact(code, data, reply, flags);
+}
+private static class Proxy implements com.zero.core.ICoreServiceManager
+{
+private android.os.IBinder mRemote;
+Proxy(android.os.IBinder remote)
+{
+mRemote = remote;
+}
+@Override public android.os.IBinder asBinder()
+{
+return mRemote;
+}
+public java.lang.String getInterfaceDescriptor()
+{
+return DESCRIPTOR;
+}
+@Override public android.os.IBinder getCoreService(java.lang.String id) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+android.os.IBinder _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeString(id);
+mRemote.transact(Stub.TRANSACTION_getCoreService, _data, _reply, 0);
+_reply.readException();
+_result = _reply.readStrongBinder();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+@Override public void installOtherManager(java.lang.String callingProcessName, android.os.IBinder other) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeString(callingProcessName);
+_data.writeStrongBinder(other);
+mRemote.transact(Stub.TRANSACTION_installOtherManager, _data, _reply, 0);
+_reply.readException();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+}
+@Override public android.os.IBinder getOtherManager(java.lang.String processName) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+android.os.IBinder _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeString(processName);
+mRemote.transact(Stub.TRANSACTION_getOtherManager, _data, _reply, 0);
+_reply.readException();
+_result = _reply.readStrongBinder();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+@Override public java.util.List<com.zero.core.ServiceParcel> getCoreServices(java.lang.String[] ids) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+java.util.List<com.zero.core.ServiceParcel> _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeStringArray(ids);
+mRemote.transact(Stub.TRANSACTION_getCoreServices, _data, _reply, 0);
+_reply.readException();
+_result = _reply.createTypedArrayList(com.zero.core.ServiceParcel.CREATOR);
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+@Override public void publishInvalidation(java.lang.String serviceId, int code, byte[] args) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeString(serviceId);
+_data.writeInt(code);
+_data.writeByteArray(args);
+mRemote.transact(Stub.TRANSACTION_publishInvalidation, _data, null, android.os.IBinder.FLAG_ONEWAY);
+}
+finally {
+_data.recycle();
+}
+}
+@Override public android.os.IBinder getCoreServiceByHandle(int handle) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+android.os.IBinder _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeInt(handle);
+mRemote.transact(Stub.TRANSACTION_getCoreServiceByHandle, _data, _reply, 0);
+_reply.readException();
+_result = _reply.readStrongBinder();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+}
+static final int TRANSACTION_getCoreService = (android.os.IBinder.FIRST_CALL_TRANSACTION + 0);
+static final int TRANSACTION_installOtherManager = (android.os.IBinder.FIRST_CALL_TRANSACTION + 1);
+static final int TRANSACTION_getOtherManager = (android.os.IBinder.FIRST_CALL_TRANSACTION + 2);
+static final int TRANSACTION_getCoreServices = (android.os.IBinder.FIRST_CALL_TRANSACTION + 3);
+static final int TRANSACTION_publishInvalidation = (android.os.IBinder.FIRST_CALL_TRANSACTION + 4);
+static final int TRANSACTION_getCoreServiceByHandle = (android.os.IBinder.FIRST_CALL_TRANSACTION + 5);
+}
+public android.os.IBinder getCoreService(java.lang.String id) throws android.os.RemoteException;
+public void installOtherManager(java.lang.String callingProcessName, android.os.IBinder other) throws android.os.RemoteException;
+public android.os.IBinder getOtherManager(java.lang.String processName) throws android.os.RemoteException;
+public java.util.List<com.zero.core.ServiceParcel> getCoreServices(java.lang.String[] ids) throws android.os.RemoteException;
+public void publishInvalidation(java.lang.String serviceId, int code, byte[] args) throws android.os.RemoteException;
+public android.os.IBinder getCoreServiceByHandle(int handle) throws android.os.RemoteException;
+}
@@ -0,0 +1,205 @@
+/*
+ * This file is auto-generated.  DO NOT MODIFY.
+ * Original file: lib/src/main/java/com/zero/core/IOtherServiceManager.aidl
+ */
+package com.zero.core;
+public interface IOtherServiceManager extends android.os.IInterface
+{
+/** Local-side IPC implementation stub class. */
+public static abstract class Stub extends android.os.Binder implements com.zero.core.IOtherServiceManager
+{
+private static final java.lang.String DESCRIPTOR = "com.zero.core.IOtherServiceManager";
+/** Construct the stub at attach it to the interface. */
+public Stub()
+{
+this.attachInterface(this, DESCRIPTOR);
+}
+/**
+ * Cast an IBinder object into an com.zero.core.IOtherServiceManager interface,
+ * generating a proxy if needed.
+ */
+public static com.zero.core.IOtherServiceManager asInterface(android.os.IBinder obj)
+{
+if ((obj==null)) {
+return null;
+}
+android.os.IInterface iin = obj.queryLocalInterface(DESCRIPTOR);
+if (((iin!=null)&&(iin instanceof com.zero.core.IOtherServiceManager))) {
+return ((com.zero.core.IOtherServiceManager)iin);
+}
+return new com.zero.core.IOtherServiceManager.Stub.Proxy(obj);
+}
+@Override public android.os.IBinder asBinder()
+{
+return this;
+}
+@Override public boolean onTransact(int code, android.os.Parcel data, android.os.Parcel reply, int flags) throws android.os.RemoteException
+{
+switch (code)
+{
+case INTERFACE_TRANSACTION:
+{
+reply.writeString(DESCRIPTOR);
+return true;
+}
+case TRANSACTION_getService:
+{
+data.enforceInterface(DESCRIPTOR);
+java.lang.String _arg0;
+_arg0 = data.readString();
+android.os.IBinder _result = this.getService(_arg0);
+reply.writeNoException();
+reply.writeStrongBinder(_result);
+return true;
+}
+case TRANSACTION_getServices:
+{
+data.enforceInterface(DESCRIPTOR);
+java.lang.String[] _arg0;
+_arg0 = data.createStringArray();
+java.util.List<com.zero.core.ServiceParcel> _result = this.getServices(_arg0);
+reply.writeNoException();
+reply.writeTypedList(_result);
+return true;
+}
+case TRANSACTION_onDirectoryChanged:
+{
+data.enforceInterface(DESCRIPTOR);
+java.util.List<com.zero.core.ServiceParcel> _arg0;
+_arg0 = data.createTypedArrayList(com.zero.core.ServiceParcel.CREATOR);
+this.onDirectoryChanged(_arg0);
+return true;
+}
+case TRANSACTION_invalidateCache:
+{
+data.enforceInterface(DESCRIPTOR);
+java.lang.String _arg0;
+_arg0 = data.readString();
+int _arg1;
+_arg1 = data.readInt();
+byte[] _arg2;
+_arg2 = data.createByteArray();
+this.invalidateCache(_arg0, _arg1, _arg2);
+return true;
+}
+case TRANSACTION_getServiceByHandle:
+{
+data.enforceInterface(DESCRIPTOR);
+int _arg0;
+_arg0 = data.readInt();
+android.os.IBinder _result = this.getServiceByHandle(_arg0);
+reply.writeNoException();
+reply.writeStrongBinder(_result);
+return true;
+}
+}
+return super.onTransact(code, data, reply, flags);
+}
+private static class Proxy implements com.zero.core.IOtherServiceManager
+{
+private android.os.IBinder mRemote;
+Proxy(android.os.IBinder remote)
+{
+mRemote = remote;
+}
+@Override public android.os.IBinder asBinder()
+{
+return mRemote;
+}
+public java.lang.String getInterfaceDescriptor()
+{
+return DESCRIPTOR;
+}
+@Override public android.os.IBinder getService(java.lang.String id) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+android.os.IBinder _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeString(id);
+mRemote.transact(Stub.TRANSACTION_getService, _data, _reply, 0);
+_reply.readException();
+_result = _reply.readStrongBinder();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+@Override public java.util.List<com.zero.core.ServiceParcel> getServices(java.lang.String[] ids) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+java.util.List<com.zero.core.ServiceParcel> _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeStringArray(ids);
+mRemote.transact(Stub.TRANSACTION_getServices, _data, _reply, 0);
+_reply.readException();
+_result = _reply.createTypedArrayList(com.zero.core.ServiceParcel.CREATOR);
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+@Override public void onDirectoryChanged(java.util.List<com.zero.core.ServiceParcel> entries) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeTypedList(entries);
+mRemote.transact(Stub.TRANSACTION_onDirectoryChanged, _data, null, android.os.IBinder.FLAG_ONEWAY);
+}
+finally {
+_data.recycle();
+}
+}
+@Override public void invalidateCache(java.lang.String serviceId, int code, byte[] args) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeString(serviceId);
+_data.writeInt(code);
+_data.writeByteArray(args);
+mRemote.transact(Stub.TRANSACTION_invalidateCache, _data, null, android.os.IBinder.FLAG_ONEWAY);
+}
+finally {
+_data.recycle();
+}
+}
+@Override public android.os.IBinder getServiceByHandle(int handle) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+android.os.IBinder _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeInt(handle);
+mRemote.transact(Stub.TRANSACTION_getServiceByHandle, _data, _reply, 0);
+_reply.readException();
+_result = _reply.readStrongBinder();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+}
+static final int TRANSACTION_getService = (android.os.IBinder.FIRST_CALL_TRANSACTION + 0);
+static final int TRANSACTION_getServices = (android.os.IBinder.FIRST_CALL_TRANSACTION + 1);
+static final int TRANSACTION_onDirectoryChanged = (android.os.IBinder.FIRST_CALL_TRANSACTION + 2);
+static final int TRANSACTION_invalidateCache = (android.os.IBinder.FIRST_CALL_TRANSACTION + 3);
+static final int TRANSACTION_getServiceByHandle = (android.os.IBinder.FIRST_CALL_TRANSACTION + 4);
+}
+public android.os.IBinder getService(java.lang.String id) throws android.os.RemoteException;
+public java.util.List<com.zero.core.ServiceParcel> getServices(java.lang.String[] ids) throws android.os.RemoteException;
+public void onDirectoryChanged(java.util.List<com.zero.core.ServiceParcel> entries) throws android.os.RemoteException;
+public void invalidateCache(java.lang.String serviceId, int code, byte[] args) throws android.os.RemoteException;
+public android.os.IBinder getServiceByHandle(int handle) throws android.os.RemoteException;
+}
@@ -0,0 +1,13 @@
+package android.app;
+import java.util.ArrayList;
+import java.util.List;
+public class ActivityManager {
+    public static class RunningAppProcessInfo {
+        public static final int IMPORTANCE_FOREGROUND = 100;
+        public static final int IMPORTANCE_VISIBLE = 200;
+        public static final int IMPORTANCE_SERVICE = 300;
+        public static final int IMPORTANCE_BACKGROUND = 400;
+        public String processName; public int pid; public int uid; public int importance;
+    }
+    public List<RunningAppProcessInfo> getRunningAppProcesses() { return new ArrayList<RunningAppProcessInfo>(); }
+}
@@ -0,0 +1,7 @@
+package android.app;
+import android.content.ContextWrapper;
+public class Application extends ContextWrapper {
+    public Application() { super(null); }
+    public void onCreate() { }
+    public final void attach(android.content.Context base) { attachBaseContext(base); }
+}
@@ -0,0 +1,16 @@
+package android.content;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+public abstract class ContentProvider {
+    private Context mContext;
+    public final Context getContext() { return mContext; }
+    public void attachInfo(Context context) { mContext = context; onCreate(); }
+    public abstract boolean onCreate();
+    public Bundle call(String method, String arg, Bundle extras) { return null; }
+    public abstract Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder);
+    public abstract String getType(Uri uri);
+    public abstract Uri insert(Uri uri, ContentValues values);
+    public abstract int delete(Uri uri, String selection, String[] selectionArgs);
+    public abstract int update(Uri uri, ContentValues values, String selection, String[] selectionArgs);
+}
@@ -0,0 +1,13 @@
+package android.content;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.RemoteException;
+public class ContentProviderClient {
+    private final ContentProvider mProvider;
+    public ContentProviderClient(ContentProvider provider) { mProvider = provider; }
+    public Bundle call(String method, String arg, Bundle extras) throws RemoteException { return mProvider.call(method, arg, extras); }
+    public Cursor query(Uri url, String[] projection, String selection, String[] selectionArgs, String sortOrder) throws RemoteException { return mProvider.query(url, projection, selection, selectionArgs, sortOrder); }
+    public boolean release() { return true; }
+    public void close() { }
+}
@@ -0,0 +1,25 @@
+package android.content;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+/**
+ * Providers are resolved through a pluggable {@link Resolver} so that a host can decide which
+ * "process" answers (and how long that takes).
+ */
+public class ContentResolver {
+    public interface Resolver { ContentProviderClient acquire(String authority, boolean stable); }
+    private final Resolver mResolver;
+    public ContentResolver(Resolver resolver) { mResolver = resolver; }
+    public final ContentProviderClient acquireUnstableContentProviderClient(Uri uri) { return mResolver == null ? null : mResolver.acquire(uri.getAuthority(), false); }
+    public final ContentProviderClient acquireUnstableContentProviderClient(String name) { return mResolver == null ? null : mResolver.acquire(name, false); }
+    public final ContentProviderClient acquireContentProviderClient(Uri uri) { return mResolver == null ? null : mResolver.acquire(uri.getAuthority(), true); }
+    public final Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        ContentProviderClient c = acquireContentProviderClient(uri);
+        try { return c == null ? null : c.query(uri, projection, selection, selectionArgs, sortOrder); } catch (android.os.RemoteException e) { return null; } finally { if (c != null) c.release(); }
+    }
+    public final Bundle call(Uri uri, String method, String arg, Bundle extras) {
+        ContentProviderClient c = acquireContentProviderClient(uri);
+        if (c == null) throw new IllegalArgumentException("Unknown URI " + uri);
+        try { return c.call(method, arg, extras); } catch (android.os.RemoteException e) { return null; } finally { c.release(); }
+    }
+}
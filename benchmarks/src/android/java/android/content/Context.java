@@ -0,0 +1,19 @@
+package android.content;
+import android.os.Handler;
+import android.os.Looper;
+import java.io.File;
+public abstract class Context {
+    public static final String ACTIVITY_SERVICE = "activity";
+    public abstract ContentResolver getContentResolver();
+    public abstract String getPackageName();
+    public abstract Context getApplicationContext();
+    public abstract Looper getMainLooper();
+    public abstract File getCacheDir();
+    public abstract Object getSystemService(String name);
+    public abstract Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter);
+    public abstract Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter, String permission, Handler scheduler);
+    public abstract void unregisterReceiver(BroadcastReceiver receiver);
+    public abstract void sendBroadcast(Intent intent);
+    public abstract void sendBroadcast(Intent intent, String receiverPermission);
+    public abstract ComponentName startService(Intent service);
+}
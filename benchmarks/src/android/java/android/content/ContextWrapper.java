@@ -0,0 +1,22 @@
+package android.content;
+import android.os.Handler;
+import android.os.Looper;
+import java.io.File;
+public class ContextWrapper extends Context {
+    Context mBase;
+    public ContextWrapper(Context base) { mBase = base; }
+    protected void attachBaseContext(Context base) { mBase = base; }
+    public Context getBaseContext() { return mBase; }
+    public ContentResolver getContentResolver() { return mBase.getContentResolver(); }
+    public String getPackageName() { return mBase.getPackageName(); }
+    public Context getApplicationContext() { return mBase.getApplicationContext(); }
+    public Looper getMainLooper() { return mBase.getMainLooper(); }
+    public File getCacheDir() { return mBase.getCacheDir(); }
+    public Object getSystemService(String name) { return mBase.getSystemService(name); }
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) { return mBase.registerReceiver(receiver, filter); }
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter, String permission, Handler scheduler) { return mBase.registerReceiver(receiver, filter, permission, scheduler); }
+    public void unregisterReceiver(BroadcastReceiver receiver) { mBase.unregisterReceiver(receiver); }
+    public void sendBroadcast(Intent intent) { mBase.sendBroadcast(intent); }
+    public void sendBroadcast(Intent intent, String receiverPermission) { mBase.sendBroadcast(intent, receiverPermission); }
+    public ComponentName startService(Intent service) { return mBase.startService(service); }
+}
@@ -0,0 +1,29 @@
+package android.content;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Parcelable;
+public class Intent {
+    public static final String ACTION_PACKAGE_ADDED = "android.intent.action.PACKAGE_ADDED";
+    public static final int FLAG_RECEIVER_REGISTERED_ONLY = 0x40000000;
+    public static final int FLAG_INCLUDE_STOPPED_PACKAGES = 0x00000020;
+    private String mAction; private String mPackage; private Bundle mExtras; private Uri mData; private int mFlags;
+    public Intent() { }
+    public Intent(String action) { mAction = action; }
+    public String getAction() { return mAction; }
+    public Intent setAction(String a) { mAction = a; return this; }
+    public Intent setPackage(String p) { mPackage = p; return this; }
+    public String getPackage() { return mPackage; }
+    public Intent setClassName(String pkg, String cls) { return this; }
+    public Intent addFlags(int f) { mFlags |= f; return this; }
+    public Intent putExtra(String k, Parcelable v) { ext().putParcelable(k, v); return this; }
+    public Intent putExtra(String k, String v) { ext().putString(k, v); return this; }
+    public Intent putExtra(String k, int v) { ext().putInt(k, v); return this; }
+    public Intent putExtras(Bundle b) { mExtras = b; return this; }
+    public Bundle getExtras() { return mExtras; }
+    @SuppressWarnings("unchecked") public <T extends Parcelable> T getParcelableExtra(String k) { return mExtras == null ? null : (T) mExtras.getParcelable(k); }
+    public String getStringExtra(String k) { return mExtras == null ? null : mExtras.getString(k); }
+    public int getIntExtra(String k, int d) { return mExtras == null ? d : mExtras.getInt(k, d); }
+    public void setExtrasClassLoader(ClassLoader l) { }
+    public Uri getData() { return mData; }
+    private Bundle ext() { if (mExtras == null) mExtras = new Bundle(); return mExtras; }
+}
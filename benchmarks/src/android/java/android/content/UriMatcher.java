@@ -0,0 +1,10 @@
+package android.content;
+import android.net.Uri;
+import java.util.HashMap;
+public class UriMatcher {
+    public static final int NO_MATCH = -1;
+    private final HashMap<String, Integer> mCodes = new HashMap<String, Integer>();
+    public UriMatcher(int code) { }
+    public void addURI(String authority, String path, int code) { mCodes.put(authority + "/" + path, code); }
+    public int match(Uri uri) { Integer c = mCodes.get(uri.getAuthority() + uri.getPath()); return c == null ? NO_MATCH : c; }
+}
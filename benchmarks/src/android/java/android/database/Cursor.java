@@ -0,0 +1,7 @@
+package android.database;
+import android.os.Bundle;
+public interface Cursor extends java.io.Closeable {
+    Bundle getExtras();
+    int getCount();
+    void close();
+}
@@ -0,0 +1,8 @@
+package android.database;
+import android.os.Bundle;
+public class MatrixCursor implements Cursor {
+    public MatrixCursor(String[] columnNames) { }
+    public Bundle getExtras() { return Bundle.CREATOR.newArray(0).length == 0 ? new Bundle() : null; }
+    public int getCount() { return 0; }
+    public void close() { }
+}
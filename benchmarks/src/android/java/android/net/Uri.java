@@ -0,0 +1,17 @@
+package android.net;
+public abstract class Uri {
+    public static Uri parse(String s) { return new StringUri(s); }
+    public abstract String getAuthority();
+    public abstract String getPath();
+    public abstract String getSchemeSpecificPart();
+    private static final class StringUri extends Uri {
+        private final String s;
+        StringUri(String s) { this.s = s; }
+        public String getAuthority() { String r = s.substring(s.indexOf("://") + 3); int i = r.indexOf('/'); return i < 0 ? r : r.substring(0, i); }
+        public String getPath() { String r = s.substring(s.indexOf("://") + 3); int i = r.indexOf('/'); return i < 0 ? "" : r.substring(i); }
+        public String getSchemeSpecificPart() { return s.substring(s.indexOf(':') + 1); }
+        public String toString() { return s; }
+        public boolean equals(Object o) { return o instanceof StringUri && ((StringUri) o).s.equals(s); }
+        public int hashCode() { return s.hashCode(); }
+    }
+}
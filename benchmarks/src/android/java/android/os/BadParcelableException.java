@@ -0,0 +1,4 @@
+package android.os;
+public class BadParcelableException extends RuntimeException {
+    public BadParcelableException(String msg) { super(msg); }
+}
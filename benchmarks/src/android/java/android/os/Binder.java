@@ -0,0 +1,88 @@
+package android.os;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
+/**
+ * JVM stand-in for android.os.Binder. Calling identity is kept per thread so that transports which
+ * hop threads can emulate what the kernel driver does.
+ */
+public class Binder implements IBinder {
+
+    private static final ThreadLocal<long[]> IDENTITY = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[] { Process.myPid(), Process.myUid() };
+        }
+    };
+
+    private IInterface mOwner;
+    private String mDescriptor;
+
+    public Binder() { }
+
+    public static final int getCallingPid() { return (int) IDENTITY.get()[0]; }
+    public static final int getCallingUid() { return (int) IDENTITY.get()[1]; }
+
+    public static final long clearCallingIdentity() {
+        long[] id = IDENTITY.get();
+        long token = (id[1] << 32) | (id[0] & 0xffffffffL);
+        id[0] = Process.myPid();
+        id[1] = Process.myUid();
+        return token;
+    }
+
+    public static final void restoreCallingIdentity(long token) {
+        long[] id = IDENTITY.get();
+        id[0] = (int) token;
+        id[1] = (int) (token >>> 32);
+    }
+
+    public static final void flushPendingCommands() { }
+
+    public void attachInterface(IInterface owner, String descriptor) {
+        mOwner = owner;
+        mDescriptor = descriptor;
+    }
+
+    public String getInterfaceDescriptor() { return mDescriptor; }
+    public boolean pingBinder() { return true; }
+    public boolean isBinderAlive() { return true; }
+
+    public IInterface queryLocalInterface(String descriptor) {
+        if (mDescriptor != null && mDescriptor.equals(descriptor)) {
+            return mOwner;
+        }
+        return null;
+    }
+
+    protected boolean onTransact(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        if (code == INTERFACE_TRANSACTION) {
+            reply.writeString(getInterfaceDescriptor());
+            return true;
+        }
+        return false;
+    }
+
+    public void dump(FileDescriptor fd, String[] args) {
+        dump(fd, new PrintWriter(new java.io.FileOutputStream(fd)), args);
+    }
+
+    public void dumpAsync(FileDescriptor fd, String[] args) { dump(fd, args); }
+
+    protected void dump(FileDescriptor fd, PrintWriter fout, String[] args) { }
+
+    public final boolean transact(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        if (data != null) {
+            data.setDataPosition(0);
+        }
+        boolean r = onTransact(code, data, reply, flags);
+        if (reply != null) {
+            reply.setDataPosition(0);
+        }
+        return r;
+    }
+
+    public void linkToDeath(DeathRecipient recipient, int flags) { }
+    public boolean unlinkToDeath(DeathRecipient recipient, int flags) { return true; }
+}
@@ -0,0 +1,68 @@
+package android.os;
+
+import java.util.HashMap;
+import java.util.Set;
+
+public final class Bundle implements Parcelable {
+
+    private final HashMap<String, Object> mMap = new HashMap<String, Object>();
+    private ClassLoader mClassLoader;
+
+    public Bundle() { }
+    public Bundle(ClassLoader loader) { mClassLoader = loader; }
+
+    public void setClassLoader(ClassLoader loader) { mClassLoader = loader; }
+    public ClassLoader getClassLoader() { return mClassLoader; }
+    public int size() { return mMap.size(); }
+    public boolean isEmpty() { return mMap.isEmpty(); }
+    public Set<String> keySet() { return mMap.keySet(); }
+    public boolean containsKey(String key) { return mMap.containsKey(key); }
+    public Object get(String key) { return mMap.get(key); }
+    public void remove(String key) { mMap.remove(key); }
+
+    public void putParcelable(String key, Parcelable value) { mMap.put(key, value); }
+    public void putParcelableArray(String key, Parcelable[] value) { mMap.put(key, value); }
+    public void putString(String key, String value) { mMap.put(key, value); }
+    public void putStringArray(String key, String[] value) { mMap.put(key, value); }
+    public void putInt(String key, int value) { mMap.put(key, value); }
+    public void putLong(String key, long value) { mMap.put(key, value); }
+    public void putBoolean(String key, boolean value) { mMap.put(key, value); }
+    public void putByteArray(String key, byte[] value) { mMap.put(key, value); }
+    public void putBinder(String key, IBinder value) { mMap.put(key, value); }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Parcelable> T getParcelable(String key) { return (T) mMap.get(key); }
+    public Parcelable[] getParcelableArray(String key) { return (Parcelable[]) mMap.get(key); }
+    public String getString(String key) { return (String) mMap.get(key); }
+    public String[] getStringArray(String key) { return (String[]) mMap.get(key); }
+    public int getInt(String key) { Object o = mMap.get(key); return o == null ? 0 : (Integer) o; }
+    public int getInt(String key, int def) { Object o = mMap.get(key); return o == null ? def : (Integer) o; }
+    public long getLong(String key) { Object o = mMap.get(key); return o == null ? 0 : (Long) o; }
+    public long getLong(String key, long def) { Object o = mMap.get(key); return o == null ? def : (Long) o; }
+    public boolean getBoolean(String key) { Object o = mMap.get(key); return o != null && (Boolean) o; }
+    public byte[] getByteArray(String key) { return (byte[]) mMap.get(key); }
+    public IBinder getBinder(String key) { return (IBinder) mMap.get(key); }
+
+    public int describeContents() { return 0; }
+
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(mMap.size());
+        for (java.util.Map.Entry<String, Object> e : mMap.entrySet()) {
+            dest.writeString(e.getKey());
+            dest.writeValue(e.getValue());
+        }
+    }
+
+    public static final Parcelable.Creator<Bundle> CREATOR = new Parcelable.Creator<Bundle>() {
+        public Bundle createFromParcel(Parcel in) {
+            Bundle b = new Bundle();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String k = in.readString();
+                b.mMap.put(k, in.readValue(Bundle.class.getClassLoader()));
+            }
+            return b;
+        }
+        public Bundle[] newArray(int size) { return new Bundle[size]; }
+    };
+}
@@ -0,0 +1,5 @@
+package android.os;
+public class DeadObjectException extends RemoteException {
+    public DeadObjectException() {}
+    public DeadObjectException(String message) { super(message); }
+}
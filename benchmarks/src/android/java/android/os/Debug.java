@@ -0,0 +1,7 @@
+package android.os;
+public final class Debug {
+    public static void startAllocCounting() { }
+    public static void stopAllocCounting() { }
+    public static int getThreadAllocCount() { return 0; }
+    public static void resetThreadAllocCount() { }
+}
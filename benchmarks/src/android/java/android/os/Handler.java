@@ -0,0 +1,18 @@
+package android.os;
+public class Handler {
+    public Handler() { }
+    public Handler(Looper looper) { }
+    public Handler(Looper looper, Callback cb) { }
+    public interface Callback { boolean handleMessage(Message msg); }
+    public final boolean post(Runnable r) { r.run(); return true; }
+    public final boolean postDelayed(Runnable r, long d) { return true; }
+    public final boolean postAtFrontOfQueue(Runnable r) { r.run(); return true; }
+    public final void removeCallbacks(Runnable r) { }
+    public final Looper getLooper() { return null; }
+    public void handleMessage(Message msg) { }
+    public final boolean sendMessage(Message msg) { return true; }
+    public final boolean sendMessageDelayed(Message msg, long d) { return true; }
+    public final Message obtainMessage(int what) { Message m = new Message(); m.what = what; return m; }
+    public final boolean hasMessages(int what) { return false; }
+    public final void removeMessages(int what) { }
+}
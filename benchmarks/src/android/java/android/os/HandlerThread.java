@@ -0,0 +1,7 @@
+package android.os;
+public class HandlerThread extends Thread {
+    public HandlerThread(String name) { super(name); }
+    public HandlerThread(String name, int priority) { super(name); }
+    public Looper getLooper() { return null; }
+    public boolean quit() { return true; }
+}
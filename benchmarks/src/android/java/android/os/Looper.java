@@ -0,0 +1,11 @@
+package android.os;
+public final class Looper {
+    public static Looper myLooper() { return null; }
+    public static Looper getMainLooper() { return null; }
+    public static void prepare() { }
+    public static void loop() { }
+    public static MessageQueue myQueue() { return new MessageQueue(); }
+    public Thread getThread() { return null; }
+    public void quit() { }
+    public MessageQueue getQueue() { return new MessageQueue(); }
+}
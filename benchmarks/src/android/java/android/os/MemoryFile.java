@@ -0,0 +1,12 @@
+package android.os;
+import java.io.*;
+public class MemoryFile {
+    private final byte[] mData;
+    public MemoryFile(String name, int length) throws IOException { mData = new byte[length]; }
+    public void close() { }
+    public int length() { return mData.length; }
+    public void writeBytes(byte[] buffer, int srcOffset, int destOffset, int count) throws IOException { System.arraycopy(buffer, srcOffset, mData, destOffset, count); }
+    public int readBytes(byte[] buffer, int srcOffset, int destOffset, int count) throws IOException { System.arraycopy(mData, srcOffset, buffer, destOffset, count); return count; }
+    public InputStream getInputStream() { return new ByteArrayInputStream(mData); }
+    public boolean allowPurging(boolean allowPurging) throws IOException { return false; }
+}
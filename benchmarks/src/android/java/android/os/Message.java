@@ -0,0 +1,2 @@
+package android.os;
+public final class Message { public int what; public int arg1; public int arg2; public Object obj; }
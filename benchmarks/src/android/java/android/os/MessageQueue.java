@@ -0,0 +1,6 @@
+package android.os;
+public final class MessageQueue {
+    public interface IdleHandler { boolean queueIdle(); }
+    public void addIdleHandler(IdleHandler h) { }
+    public void removeIdleHandler(IdleHandler h) { }
+}
@@ -0,0 +1,589 @@
+package android.os;
+
+import java.io.FileDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+
+/**
+ * JVM stand-in for android.os.Parcel: a little-endian byte buffer with 4-byte alignment and a side
+ * table for active objects (binders, file descriptors), mirroring the real wire layout closely
+ * enough that position arithmetic done by callers behaves the same.
+ */
+public final class Parcel {
+
+    private static final int POOL_SIZE = 6;
+    private static final Parcel[] sPool = new Parcel[POOL_SIZE];
+
+    private byte[] mData = new byte[64];
+    private int mSize;
+    private int mPos;
+    private Object[] mObjects = new Object[4];
+    private int[] mObjectOffsets = new int[4];
+    private int mObjectCount;
+
+    private Parcel() { }
+
+    public static Parcel obtain() {
+        synchronized (sPool) {
+            for (int i = 0; i < POOL_SIZE; i++) {
+                Parcel p = sPool[i];
+                if (p != null) {
+                    sPool[i] = null;
+                    return p;
+                }
+            }
+        }
+        return new Parcel();
+    }
+
+    public void recycle() {
+        freeBuffer();
+        synchronized (sPool) {
+            for (int i = 0; i < POOL_SIZE; i++) {
+                if (sPool[i] == null) {
+                    sPool[i] = this;
+                    return;
+                }
+            }
+        }
+    }
+
+    private void freeBuffer() {
+        mSize = 0;
+        mPos = 0;
+        for (int i = 0; i < mObjectCount; i++) {
+            mObjects[i] = null;
+        }
+        mObjectCount = 0;
+    }
+
+    public int dataSize() { return mSize; }
+    public int dataAvail() { return mSize - mPos; }
+    public int dataPosition() { return mPos; }
+    public int dataCapacity() { return mData.length; }
+
+    public void setDataSize(int size) {
+        ensure(size);
+        mSize = size;
+        if (mPos > size) {
+            mPos = size;
+        }
+        while (mObjectCount > 0 && mObjectOffsets[mObjectCount - 1] >= size) {
+            mObjects[--mObjectCount] = null;
+        }
+    }
+
+    public void setDataPosition(int pos) { mPos = pos; }
+    public void setDataCapacity(int size) { ensure(size); }
+
+    public boolean hasFileDescriptors() {
+        for (int i = 0; i < mObjectCount; i++) {
+            if (mObjects[i] instanceof FileDescriptor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void ensure(int cap) {
+        if (cap > mData.length) {
+            mData = Arrays.copyOf(mData, Math.max(cap, mData.length * 2));
+        }
+    }
+
+    private void grow(int n) {
+        ensure(mPos + n);
+        if (mPos + n > mSize) {
+            mSize = mPos + n;
+        }
+    }
+
+    private static int pad(int n) { return (n + 3) & ~3; }
+
+    public byte[] marshall() {
+        if (mObjectCount != 0) {
+            throw new RuntimeException("Tried to marshall a Parcel that contained Binder objects.");
+        }
+        return Arrays.copyOf(mData, mSize);
+    }
+
+    public void unmarshall(byte[] data, int offset, int length) {
+        freeBuffer();
+        ensure(length);
+        System.arraycopy(data, offset, mData, 0, length);
+        mSize = length;
+    }
+
+    public void appendFrom(Parcel parcel, int offset, int length) {
+        ensure(mPos + length);
+        for (int i = 0; i < parcel.mObjectCount; i++) {
+            int off = parcel.mObjectOffsets[i];
+            if (off >= offset && off < offset + length) {
+                addObject(mPos + off - offset, parcel.mObjects[i]);
+            }
+        }
+        System.arraycopy(parcel.mData, offset, mData, mPos, length);
+        mPos += length;
+        if (mPos > mSize) {
+            mSize = mPos;
+        }
+    }
+
+    private void addObject(int offset, Object o) {
+        if (mObjectCount == mObjects.length) {
+            mObjects = Arrays.copyOf(mObjects, mObjectCount * 2);
+            mObjectOffsets = Arrays.copyOf(mObjectOffsets, mObjectCount * 2);
+        }
+        mObjects[mObjectCount] = o;
+        mObjectOffsets[mObjectCount] = offset;
+        mObjectCount++;
+    }
+
+    private Object objectAt(int offset) {
+        for (int i = 0; i < mObjectCount; i++) {
+            if (mObjectOffsets[i] == offset) {
+                return mObjects[i];
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Not Android API: raw access used by the in-JVM binder transport to copy bytes and binder
+     * objects between the parcels of two simulated processes.
+     */
+
+    public byte[] getData() { return Arrays.copyOf(mData, mSize); }
+    public int getObjectCount() { return mObjectCount; }
+    public int getObjectOffset(int index) { return mObjectOffsets[index]; }
+    public Object getObjectAt(int index) { return mObjects[index]; }
+    public void putObject(int offset, Object o) { addObject(offset, o); }
+
+    public void writeInt(int val) {
+        grow(4);
+        mData[mPos] = (byte) val;
+        mData[mPos + 1] = (byte) (val >> 8);
+        mData[mPos + 2] = (byte) (val >> 16);
+        mData[mPos + 3] = (byte) (val >> 24);
+        mPos += 4;
+    }
+
+    public int readInt() {
+        if (mPos + 4 > mSize) {
+            mPos = mSize;
+            return 0;
+        }
+        int v = (mData[mPos] & 0xff) | ((mData[mPos + 1] & 0xff) << 8)
+                | ((mData[mPos + 2] & 0xff) << 16) | ((mData[mPos + 3] & 0xff) << 24);
+        mPos += 4;
+        return v;
+    }
+
+    public void writeLong(long val) { writeInt((int) val); writeInt((int) (val >>> 32)); }
+    public long readLong() { long lo = readInt() & 0xffffffffL; long hi = readInt() & 0xffffffffL; return lo | (hi << 32); }
+    public void writeFloat(float val) { writeInt(Float.floatToIntBits(val)); }
+    public float readFloat() { return Float.intBitsToFloat(readInt()); }
+    public void writeDouble(double val) { writeLong(Double.doubleToLongBits(val)); }
+    public double readDouble() { return Double.longBitsToDouble(readLong()); }
+    public void writeByte(byte val) { writeInt(val); }
+    public byte readByte() { return (byte) readInt(); }
+
+    public void writeString(String val) {
+        if (val == null) {
+            writeInt(-1);
+            return;
+        }
+        int n = val.length();
+        writeInt(n);
+        int bytes = pad((n + 1) * 2);
+        grow(bytes);
+        for (int i = 0; i < n; i++) {
+            char c = val.charAt(i);
+            mData[mPos + i * 2] = (byte) c;
+            mData[mPos + i * 2 + 1] = (byte) (c >> 8);
+        }
+        for (int i = n * 2; i < bytes; i++) {
+            mData[mPos + i] = 0;
+        }
+        mPos += bytes;
+    }
+
+    public String readString() {
+        int n = readInt();
+        if (n < 0) {
+            return null;
+        }
+        char[] cs = new char[n];
+        for (int i = 0; i < n; i++) {
+            cs[i] = (char) ((mData[mPos + i * 2] & 0xff) | ((mData[mPos + i * 2 + 1] & 0xff) << 8));
+        }
+        mPos += pad((n + 1) * 2);
+        return new String(cs);
+    }
+
+    public void writeByteArray(byte[] b) { writeByteArray(b, 0, b == null ? 0 : b.length); }
+
+    public void writeByteArray(byte[] b, int offset, int len) {
+        if (b == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(len);
+        int bytes = pad(len);
+        grow(bytes);
+        System.arraycopy(b, offset, mData, mPos, len);
+        mPos += bytes;
+    }
+
+    public byte[] createByteArray() {
+        int n = readInt();
+        if (n < 0) {
+            return null;
+        }
+        byte[] b = Arrays.copyOfRange(mData, mPos, mPos + n);
+        mPos += pad(n);
+        return b;
+    }
+
+    public void readByteArray(byte[] val) {
+        byte[] b = createByteArray();
+        System.arraycopy(b, 0, val, 0, b.length);
+    }
+
+    public void writeStrongBinder(IBinder val) {
+        addObject(mPos, val);
+        writeInt(val == null ? 0 : 1);
+        writeInt(0);
+    }
+
+    public IBinder readStrongBinder() {
+        IBinder b = (IBinder) objectAt(mPos);
+        readInt();
+        readInt();
+        return b;
+    }
+
+    public void writeStrongInterface(IInterface val) { writeStrongBinder(val == null ? null : val.asBinder()); }
+
+    public void writeFileDescriptor(FileDescriptor val) {
+        addObject(mPos, val);
+        writeInt(1);
+        writeInt(0);
+    }
+
+    public ParcelFileDescriptor readFileDescriptor() {
+        FileDescriptor fd = (FileDescriptor) objectAt(mPos);
+        readInt();
+        readInt();
+        return fd == null ? null : new ParcelFileDescriptor(fd);
+    }
+
+    public void writeStringArray(String[] val) {
+        if (val == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(val.length);
+        for (String s : val) {
+            writeString(s);
+        }
+    }
+
+    public String[] createStringArray() {
+        int n = readInt();
+        if (n < 0) {
+            return null;
+        }
+        String[] a = new String[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = readString();
+        }
+        return a;
+    }
+
+    public void readStringArray(String[] val) {
+        int n = readInt();
+        for (int i = 0; i < n; i++) {
+            val[i] = readString();
+        }
+    }
+
+    public void writeIntArray(int[] val) {
+        if (val == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(val.length);
+        for (int v : val) {
+            writeInt(v);
+        }
+    }
+
+    public int[] createIntArray() {
+        int n = readInt();
+        if (n < 0) {
+            return null;
+        }
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = readInt();
+        }
+        return a;
+    }
+
+    public void writeBinderArray(IBinder[] val) {
+        if (val == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(val.length);
+        for (IBinder b : val) {
+            writeStrongBinder(b);
+        }
+    }
+
+    public IBinder[] createBinderArray() {
+        int n = readInt();
+        if (n < 0) {
+            return null;
+        }
+        IBinder[] a = new IBinder[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = readStrongBinder();
+        }
+        return a;
+    }
+
+    public <T extends Parcelable> void writeTypedList(List<T> val) {
+        if (val == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(val.size());
+        for (T t : val) {
+            if (t == null) {
+                writeInt(0);
+            } else {
+                writeInt(1);
+                t.writeToParcel(this, 0);
+            }
+        }
+    }
+
+    public <T> ArrayList<T> createTypedArrayList(Parcelable.Creator<T> c) {
+        int n = readInt();
+        if (n < 0) {
+            return null;
+        }
+        ArrayList<T> l = new ArrayList<T>(n);
+        for (int i = 0; i < n; i++) {
+            l.add(readInt() != 0 ? c.createFromParcel(this) : null);
+        }
+        return l;
+    }
+
+    public <T> void readTypedList(List<T> list, Parcelable.Creator<T> c) {
+        list.clear();
+        list.addAll(createTypedArrayList(c));
+    }
+
+    public <T extends Parcelable> void writeTypedArray(T[] val, int flags) {
+        if (val == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(val.length);
+        for (T t : val) {
+            if (t == null) {
+                writeInt(0);
+            } else {
+                writeInt(1);
+                t.writeToParcel(this, flags);
+            }
+        }
+    }
+
+    public <T> T[] createTypedArray(Parcelable.Creator<T> c) {
+        int n = readInt();
+        if (n < 0) {
+            return null;
+        }
+        T[] a = c.newArray(n);
+        for (int i = 0; i < n; i++) {
+            a[i] = readInt() != 0 ? c.createFromParcel(this) : null;
+        }
+        return a;
+    }
+
+    public void writeParcelable(Parcelable p, int flags) {
+        if (p == null) {
+            writeString(null);
+            return;
+        }
+        writeString(p.getClass().getName());
+        p.writeToParcel(this, flags);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Parcelable> T readParcelable(ClassLoader loader) {
+        String name = readString();
+        if (name == null) {
+            return null;
+        }
+        try {
+            Class<?> c = Class.forName(name, true, loader == null ? Parcel.class.getClassLoader() : loader);
+            Parcelable.Creator<T> creator = (Parcelable.Creator<T>) c.getField("CREATOR").get(null);
+            return creator.createFromParcel(this);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void writeBundle(Bundle val) {
+        if (val == null) {
+            writeInt(-1);
+            return;
+        }
+        val.writeToParcel(this, 0);
+    }
+
+    public Bundle readBundle() { return readBundle(null); }
+
+    public Bundle readBundle(ClassLoader loader) {
+        int n = readInt();
+        if (n < 0) {
+            return null;
+        }
+        mPos -= 4;
+        Bundle b = Bundle.CREATOR.createFromParcel(this);
+        b.setClassLoader(loader);
+        return b;
+    }
+
+    public void writeInterfaceToken(String interfaceName) {
+        writeInt(0);
+        writeString(interfaceName);
+    }
+
+    public void enforceInterface(String interfaceName) {
+        readInt();
+        String s = readString();
+        if (!interfaceName.equals(s)) {
+            throw new SecurityException("Binder invocation to an incorrect interface");
+        }
+    }
+
+    public void writeNoException() { writeInt(0); }
+
+    public void readException() {
+        int code = readInt();
+        if (code != 0) {
+            String msg = readString();
+            switch (code) {
+                case EX_SECURITY: throw new SecurityException(msg);
+                case EX_BAD_PARCELABLE: throw new android.os.BadParcelableException(msg);
+                case EX_ILLEGAL_ARGUMENT: throw new IllegalArgumentException(msg);
+                case EX_NULL_POINTER: throw new NullPointerException(msg);
+                case EX_ILLEGAL_STATE: throw new IllegalStateException(msg);
+                default: throw new RuntimeException("Unknown exception code: " + code + " msg " + msg);
+            }
+        }
+    }
+
+    private static final int EX_SECURITY = -1;
+    private static final int EX_BAD_PARCELABLE = -2;
+    private static final int EX_ILLEGAL_ARGUMENT = -3;
+    private static final int EX_NULL_POINTER = -4;
+    private static final int EX_ILLEGAL_STATE = -5;
+
+    public void writeException(Exception e) {
+        int code = 0;
+        if (e instanceof SecurityException) code = EX_SECURITY;
+        else if (e instanceof BadParcelableException) code = EX_BAD_PARCELABLE;
+        else if (e instanceof IllegalArgumentException) code = EX_ILLEGAL_ARGUMENT;
+        else if (e instanceof NullPointerException) code = EX_NULL_POINTER;
+        else if (e instanceof IllegalStateException) code = EX_ILLEGAL_STATE;
+        if (code == 0) {
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            throw new RuntimeException(e);
+        }
+        writeInt(code);
+        writeString(e.getMessage());
+    }
+
+    public void writeValue(Object v) {
+        if (v == null) { writeInt(-1); }
+        else if (v instanceof String) { writeInt(0); writeString((String) v); }
+        else if (v instanceof Integer) { writeInt(1); writeInt((Integer) v); }
+        else if (v instanceof Map) { writeInt(2); writeMap((Map) v); }
+        else if (v instanceof Bundle) { writeInt(3); writeBundle((Bundle) v); }
+        else if (v instanceof Parcelable) { writeInt(4); writeParcelable((Parcelable) v, 0); }
+        else if (v instanceof Long) { writeInt(6); writeLong((Long) v); }
+        else if (v instanceof Boolean) { writeInt(9); writeInt(((Boolean) v) ? 1 : 0); }
+        else if (v instanceof byte[]) { writeInt(13); writeByteArray((byte[]) v); }
+        else if (v instanceof String[]) { writeInt(14); writeStringArray((String[]) v); }
+        else if (v instanceof IBinder) { writeInt(15); writeStrongBinder((IBinder) v); }
+        else if (v instanceof Parcelable[]) { Parcelable[] a = (Parcelable[]) v; writeInt(16); writeInt(a.length); for (Parcelable p : a) writeParcelable(p, 0); }
+        else { throw new RuntimeException("Parcel: unable to marshal value " + v); }
+    }
+
+    public Object readValue(ClassLoader loader) {
+        int type = readInt();
+        switch (type) {
+            case -1: return null;
+            case 0: return readString();
+            case 1: return readInt();
+            case 2: { HashMap m = new HashMap(); readMap(m, loader); return m; }
+            case 3: return readBundle(loader);
+            case 4: return readParcelable(loader);
+            case 6: return readLong();
+            case 9: return readInt() != 0;
+            case 13: return createByteArray();
+            case 14: return createStringArray();
+            case 15: return readStrongBinder();
+            case 16: { int n = readInt(); Parcelable[] a = new Parcelable[n]; for (int i = 0; i < n; i++) a[i] = readParcelable(loader); return a; }
+            default: throw new RuntimeException("Parcel: bad type " + type);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void writeMap(Map val) {
+        if (val == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(val.size());
+        for (Object o : val.entrySet()) {
+            Map.Entry e = (Map.Entry) o;
+            writeValue(e.getKey());
+            writeValue(e.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void readMap(Map outVal, ClassLoader loader) {
+        int n = readInt();
+        for (int i = 0; i < n; i++) {
+            Object k = readValue(loader);
+            outVal.put(k, readValue(loader));
+        }
+    }
+
+    public void writeList(List val) {
+        if (val == null) { writeInt(-1); return; }
+        writeInt(val.size());
+        for (Object o : val) writeValue(o);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ArrayList readArrayList(ClassLoader loader) {
+        int n = readInt();
+        if (n < 0) return null;
+        ArrayList l = new ArrayList(n);
+        for (int i = 0; i < n; i++) l.add(readValue(loader));
+        return l;
+    }
+}
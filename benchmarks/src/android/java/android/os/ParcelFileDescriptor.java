@@ -0,0 +1,22 @@
+package android.os;
+import java.io.*;
+public class ParcelFileDescriptor implements Parcelable, Closeable {
+    private final FileDescriptor mFd;
+    public ParcelFileDescriptor(FileDescriptor fd) { mFd = fd; }
+    public static ParcelFileDescriptor dup(FileDescriptor orig) throws IOException { return new ParcelFileDescriptor(orig); }
+    public static ParcelFileDescriptor open(File file, int mode) throws FileNotFoundException { return new ParcelFileDescriptor(new FileDescriptor()); }
+    public static ParcelFileDescriptor[] createPipe() throws IOException { return new ParcelFileDescriptor[2]; }
+    public FileDescriptor getFileDescriptor() { return mFd; }
+    public long getStatSize() { return 0; }
+    public int getFd() { return 0; }
+    public void close() throws IOException { }
+    public int describeContents() { return 1; }
+    public void writeToParcel(Parcel out, int flags) { out.writeFileDescriptor(mFd); }
+    public static final Parcelable.Creator<ParcelFileDescriptor> CREATOR = new Parcelable.Creator<ParcelFileDescriptor>() {
+        public ParcelFileDescriptor createFromParcel(Parcel in) { return in.readFileDescriptor(); }
+        public ParcelFileDescriptor[] newArray(int size) { return new ParcelFileDescriptor[size]; }
+    };
+    public static class AutoCloseInputStream extends FileInputStream {
+        public AutoCloseInputStream(ParcelFileDescriptor pfd) { super(pfd.getFileDescriptor()); }
+    }
+}
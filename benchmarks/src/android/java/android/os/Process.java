@@ -0,0 +1,18 @@
+package android.os;
+/**
+ * The pid is per class loader: the multi-process simulation loads one copy of this class per
+ * simulated process and BinderDriver sets it.
+ */
+public class Process {
+    static int sMyPid = 1;
+    public static final int THREAD_PRIORITY_DEFAULT = 0;
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+    public static final int THREAD_PRIORITY_FOREGROUND = -2;
+    public static final int THREAD_PRIORITY_MORE_FAVORABLE = -1;
+    public static final int THREAD_PRIORITY_LESS_FAVORABLE = 1;
+    public static int myPid() { return sMyPid; }
+    public static int myUid() { return 10000; }
+    public static int myTid() { return (int) Thread.currentThread().getId(); }
+    public static void setThreadPriority(int p) { }
+    public static void setThreadPriority(int tid, int p) { }
+}
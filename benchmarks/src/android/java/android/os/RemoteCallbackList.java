@@ -0,0 +1,18 @@
+package android.os;
+import java.util.ArrayList;
+public class RemoteCallbackList<E extends IInterface> {
+    private final ArrayList<E> mList = new ArrayList<E>();
+    private final ArrayList<Object> mCookies = new ArrayList<Object>();
+    private Object[] mActive;
+    public boolean register(E callback) { return register(callback, null); }
+    public synchronized boolean register(E callback, Object cookie) { mList.add(callback); mCookies.add(cookie); return true; }
+    public synchronized boolean unregister(E callback) { int i = mList.indexOf(callback); if (i < 0) return false; mList.remove(i); mCookies.remove(i); return true; }
+    public void kill() { }
+    public void onCallbackDied(E callback) { }
+    public void onCallbackDied(E callback, Object cookie) { onCallbackDied(callback); }
+    public synchronized int beginBroadcast() { mActive = mList.toArray(); return mActive.length; }
+    @SuppressWarnings("unchecked") public E getBroadcastItem(int index) { return (E) mActive[index]; }
+    public Object getBroadcastCookie(int index) { return null; }
+    public void finishBroadcast() { mActive = null; }
+    public synchronized int getRegisteredCallbackCount() { return mList.size(); }
+}
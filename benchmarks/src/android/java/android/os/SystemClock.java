@@ -0,0 +1,7 @@
+package android.os;
+public final class SystemClock {
+    public static long elapsedRealtime() { return System.nanoTime() / 1000000L; }
+    public static long uptimeMillis() { return System.nanoTime() / 1000000L; }
+    public static long elapsedRealtimeNanos() { return System.nanoTime(); }
+    public static void sleep(long ms) { try { Thread.sleep(ms); } catch (InterruptedException e) { } }
+}
@@ -0,0 +1,4 @@
+package android.os;
+public class TransactionTooLargeException extends RemoteException {
+    public TransactionTooLargeException() {}
+}
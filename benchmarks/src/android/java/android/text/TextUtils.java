@@ -0,0 +1,6 @@
+package android.text;
+public class TextUtils {
+    public static boolean isEmpty(CharSequence str) { return str == null || str.length() == 0; }
+    public static boolean equals(CharSequence a, CharSequence b) { return a == b || (a != null && b != null && a.toString().equals(b.toString())); }
+    public static String join(CharSequence delimiter, Object[] tokens) { StringBuilder sb = new StringBuilder(); for (int i = 0; i < tokens.length; i++) { if (i > 0) sb.append(delimiter); sb.append(tokens[i]); } return sb.toString(); }
+}
@@ -0,0 +1,18 @@
+package android.util;
+public final class Log {
+    public static volatile boolean sQuiet = true;
+    private static int p(String lvl, String tag, String msg, Throwable tr) {
+        if (!sQuiet) { System.err.println(lvl + "/" + tag + ": " + msg); if (tr != null) tr.printStackTrace(); }
+        return 0;
+    }
+    public static int v(String tag, String msg) { return p("V", tag, msg, null); }
+    public static int d(String tag, String msg) { return p("D", tag, msg, null); }
+    public static int d(String tag, String msg, Throwable tr) { return p("D", tag, msg, tr); }
+    public static int i(String tag, String msg) { return p("I", tag, msg, null); }
+    public static int w(String tag, String msg) { return p("W", tag, msg, null); }
+    public static int w(String tag, String msg, Throwable tr) { return p("W", tag, msg, tr); }
+    public static int e(String tag, String msg) { return p("E", tag, msg, null); }
+    public static int e(String tag, String msg, Throwable tr) { return p("E", tag, msg, tr); }
+    public static boolean isLoggable(String tag, int level) { return !sQuiet; }
+    public static final int VERBOSE = 2, DEBUG = 3, INFO = 4, WARN = 5, ERROR = 6;
+}
@@ -0,0 +1,17 @@
+package com.zero.core;
+
+/**
+ * 压测用的服务实现，原样返回参数
+ */
+public class EchoService extends IEcho.Stub {
+
+    @Override
+    public int echo(int value) {
+        return value;
+    }
+
+    @Override
+    public String echoString(String value) {
+        return value;
+    }
+}
@@ -0,0 +1,168 @@
+package com.zero.core;
+
+import android.os.IBinder;
+import android.os.IInterface;
+import android.os.Parcel;
+import android.os.RemoteException;
+
+import java.io.FileDescriptor;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * 检查稳态下经过 RemoteBinderProxy 的调用在库里不分配对象：普通调用和结果缓存命中两条路径各跑一遍，
+ * 用 ThreadMXBean.getThreadAllocatedBytes 统计预热之后几轮里最少的分配量，大于 0 就以非 0 退出，./gradlew :benchmarks:check 会失败。
+ * <p>
+ * 对端是固定返回的 {@link ReplyBinder}，data / reply 由这里复用（生成的 Stub.Proxy 每次 Parcel.obtain 不算库的分配），
+ * 统计到的只有 RemoteBinderProxy 自己。
+ */
+public final class AllocationCheck {
+
+    static final String PLAIN_ID = "AllocPlain";
+
+    static final String CACHED_ID = "AllocCached";
+
+    private static final String DESCRIPTOR = "com.zero.core.IEcho";
+
+    private static final int CODE = IEcho.Stub.TRANSACTION_echo;
+
+    private static final int WARM_UP_ROUNDS = 40;
+
+    private static final int CALLS_PER_ROUND = 5000;
+
+    private static final int MEASURED_CALLS = 100000;
+
+    /**
+     * 库里真有分配的话每次调用至少一个对象，每一轮都不会是 0
+     */
+    private static final int ATTEMPTS = 5;
+
+    static final Service PLAIN = new Service(EchoService.class) {
+        @Override
+        public String getServiceId() {
+            return PLAIN_ID;
+        }
+    };
+
+    static final Service CACHED = new Service(EchoService.class) {
+        @Override
+        public String getServiceId() {
+            return CACHED_ID;
+        }
+
+        @Override
+        protected int[] getCacheableTransactions() {
+            return new int[]{CODE};
+        }
+    };
+
+    private AllocationCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            System.err.println("ThreadMXBean.getThreadAllocatedBytes is not supported by this JVM");
+            System.exit(1);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        JvmEnvironment.init();
+        PLAIN.install();
+        CACHED.install();
+        boolean failed = false;
+        for (String id : new String[]{PLAIN_ID, CACHED_ID}) {
+            IBinder proxy = JvmEnvironment.createRemoteBinderProxy(id, new ReplyBinder());
+            double bytesPerCall = measure(threads, proxy);
+            System.out.println(String.format(Locale.US, "%-12s %.3f bytes/call", id, bytesPerCall));
+            failed |= bytesPerCall > 0;
+        }
+        if (failed) {
+            System.err.println("Steady-state calls allocate in library code");
+            System.exit(1);
+        }
+    }
+
+    private static double measure(com.sun.management.ThreadMXBean threads, IBinder proxy) throws RemoteException {
+        long threadId = Thread.currentThread().getId();
+        Parcel data = Parcel.obtain();
+        Parcel reply = Parcel.obtain();
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) { // 分成多次调用，让 call 整个方法被编译，测量时不会碰上 OSR 切换
+            call(proxy, data, reply, CALLS_PER_ROUND);
+        }
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < ATTEMPTS && min > 0; i++) { // 分层编译升级时 JVM 自己会在本线程分配一点，取最小的一次
+            long before = threads.getThreadAllocatedBytes(threadId);
+            call(proxy, data, reply, MEASURED_CALLS);
+            min = Math.min(min, threads.getThreadAllocatedBytes(threadId) - before);
+        }
+        data.recycle();
+        reply.recycle();
+        return min / (double) MEASURED_CALLS;
+    }
+
+    private static void call(IBinder proxy, Parcel data, Parcel reply, int count) throws RemoteException {
+        for (int i = 0; i < count; i++) {
+            data.setDataSize(0);
+            data.setDataPosition(0);
+            reply.setDataSize(0);
+            reply.setDataPosition(0);
+            data.writeInterfaceToken(DESCRIPTOR);
+            data.writeInt(i & 7); // 缓存路径上只有 8 个不同的参数，预热后都是命中
+            proxy.transact(CODE, data, reply, 0);
+        }
+    }
+
+    /**
+     * 对端进程的 binder，按 AIDL 的格式返回一个 int，自己不分配对象
+     */
+    private static final class ReplyBinder implements IBinder {
+
+        @Override
+        public boolean transact(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+            if (null != reply) {
+                reply.writeNoException();
+                reply.writeInt(code);
+            }
+            return true;
+        }
+
+        @Override
+        public String getInterfaceDescriptor() throws RemoteException {
+            return DESCRIPTOR;
+        }
+
+        @Override
+        public boolean pingBinder() {
+            return true;
+        }
+
+        @Override
+        public boolean isBinderAlive() {
+            return true;
+        }
+
+        @Override
+        public IInterface queryLocalInterface(String descriptor) {
+            return null;
+        }
+
+        @Override
+        public void dump(FileDescriptor fd, String[] args) throws RemoteException {
+        }
+
+        @Override
+        public void dumpAsync(FileDescriptor fd, String[] args) throws RemoteException {
+        }
+
+        @Override
+        public void linkToDeath(DeathRecipient recipient, int flags) throws RemoteException {
+        }
+
+        @Override
+        public boolean unlinkToDeath(DeathRecipient recipient, int flags) {
+            return true;
+        }
+    }
+}
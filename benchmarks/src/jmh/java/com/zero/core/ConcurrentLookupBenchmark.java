@@ -0,0 +1,74 @@
+package com.zero.core;
+
+import android.os.IInterface;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多线程同时命中 cache 的吞吐，看查表有没有争用。线程数写死在方法上，JSON 结果里按方法名区分
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentLookupBenchmark {
+
+    private int mHandle;
+
+    @Setup
+    public void setUp() throws Exception {
+        JvmEnvironment.init();
+        mHandle = JvmEnvironment.CORE_ECHO.getHandle();
+        CoreServiceManager.getService(mHandle);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public IInterface byId1() {
+        return CoreServiceManager.getService(JvmEnvironment.CORE_ECHO_ID);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public IInterface byId4() {
+        return CoreServiceManager.getService(JvmEnvironment.CORE_ECHO_ID);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public IInterface byId8() {
+        return CoreServiceManager.getService(JvmEnvironment.CORE_ECHO_ID);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public IInterface byHandle1() {
+        return CoreServiceManager.getService(mHandle);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public IInterface byHandle4() {
+        return CoreServiceManager.getService(mHandle);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public IInterface byHandle8() {
+        return CoreServiceManager.getService(mHandle);
+    }
+}
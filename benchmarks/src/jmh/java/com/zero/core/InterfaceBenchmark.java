@@ -0,0 +1,101 @@
+package com.zero.core;
+
+import android.os.IBinder;
+import android.os.IInterface;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * binder 转接口的开销：Service 默认的反射工厂、覆写 createInterfaceFactory、直接调 Stub.asInterface，
+ * 以及每次都 getMethod 的反射（不缓存 Method 时的代价）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterfaceBenchmark {
+
+    private Service mReflect;
+
+    private Service mFactory;
+
+    private IBinder mBinder;
+
+    private Method mAsInterface;
+
+    @Setup
+    public void setUp() throws Exception {
+        JvmEnvironment.init();
+        mReflect = new Service(EchoService.class) {
+            @Override
+            public String getServiceId() {
+                return "EchoReflect";
+            }
+        };
+        mFactory = new Service(EchoService.class) {
+            @Override
+            public String getServiceId() {
+                return "EchoFactory";
+            }
+
+            @Override
+            protected InterfaceFactory createInterfaceFactory() {
+                return new InterfaceFactory() {
+                    @Override
+                    public IInterface asInterface(IBinder binder) {
+                        return IEcho.Stub.asInterface(binder);
+                    }
+                };
+            }
+        };
+        mBinder = new LoopbackBinder(new EchoService()); // 没有本地接口，每次都新建 Proxy
+        mAsInterface = EchoService.class.getMethod("asInterface", IBinder.class);
+    }
+
+    @Benchmark
+    public IInterface reflectFactory() {
+        return mReflect.asInterface(mBinder);
+    }
+
+    @Benchmark
+    public IInterface overriddenFactory() {
+        return mFactory.asInterface(mBinder);
+    }
+
+    @Benchmark
+    public IInterface directStub() {
+        return IEcho.Stub.asInterface(mBinder);
+    }
+
+    @Benchmark
+    public Object cachedMethodInvoke() throws Exception {
+        return mAsInterface.invoke(null, mBinder);
+    }
+
+    @Benchmark
+    public Object uncachedMethodInvoke() throws Exception {
+        return EchoService.class.getMethod("asInterface", IBinder.class).invoke(null, mBinder);
+    }
+
+    /**
+     * 本进程服务：查 IMPL_MAP 拿实现
+     */
+    @Benchmark
+    public IBinder localGetService() {
+        return JvmEnvironment.LOCAL_ECHO.getService();
+    }
+}
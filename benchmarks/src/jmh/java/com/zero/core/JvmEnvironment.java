@@ -0,0 +1,162 @@
+package com.zero.core;
+
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * 压测用的进程环境：当前 JVM 扮演主进程（非 core），装两个服务：
+ * <ul>
+ * <li>{@link #LOCAL_ECHO_ID} 实现在本进程，getService 走本地路由</li>
+ * <li>{@link #CORE_ECHO_ID} 实现在 core 进程，binder 已经查过一次放在 cache 里，是 {@link LoopbackBinder} 外面包的 RemoteBinderProxy</li>
+ * </ul>
+ * 库里的状态都是进程级的静态变量，一个 JVM 只能初始化一次，不要用 -f 0 在同一个 JVM 里跑多个压测。
+ */
+final class JvmEnvironment {
+
+    static final String PACKAGE_NAME = "com.zero.benchmark";
+
+    static final String LOCAL_ECHO_ID = "EchoLocal";
+
+    static final String CORE_ECHO_ID = "EchoCore";
+
+    /**
+     * 装过但 core 查不到的服务，用来测负缓存
+     */
+    static final String MISSING_ID = "Missing";
+
+    static final Service LOCAL_ECHO = new Service(EchoService.class) {
+        @Override
+        public String getServiceId() {
+            return LOCAL_ECHO_ID;
+        }
+
+        @Override
+        public String getProcessSuffix() {
+            return PROCESS_MAIN_SUFFIX;
+        }
+    };
+
+    static final Service CORE_ECHO = new Service(EchoService.class) {
+        @Override
+        public String getServiceId() {
+            return CORE_ECHO_ID;
+        }
+    };
+
+    static final Service MISSING = new Service(EchoService.class) {
+        @Override
+        public String getServiceId() {
+            return MISSING_ID;
+        }
+    };
+
+    private static boolean sInitialized;
+
+    private JvmEnvironment() {
+    }
+
+    static synchronized void init() throws Exception {
+        if (sInitialized) {
+            return;
+        }
+        sInitialized = true;
+        Field processName = AppUtil.class.getDeclaredField("sCurProcessName"); // JVM 的 cmdline 不是包名
+        processName.setAccessible(true);
+        processName.set(null, PACKAGE_NAME);
+        Application app = new Application();
+        app.attach(new JvmContext());
+        CoreServiceManager.setPrestartCore(false); // 没有 core 进程，不握手
+        AppUtil.init(app);
+        LOCAL_ECHO.install();
+        CORE_ECHO.install();
+        MISSING.install();
+        ServiceList.putCacheBinder(CORE_ECHO_ID, createRemoteBinderProxy(CORE_ECHO_ID,
+                new LoopbackBinder(new ServerBinder(CORE_ECHO_ID, new EchoService()))));
+        ServiceList.putNegativeCache(MISSING_ID);
+    }
+
+    /**
+     * 和 getService 查到 core 服务后一样包一层 RemoteBinderProxy（私有类，只能反射创建）
+     */
+    static IBinder createRemoteBinderProxy(String id, IBinder remote) throws Exception {
+        Class<?> clazz = Class.forName(CoreServiceManager.class.getName() + "$RemoteBinderProxy");
+        Method create = clazz.getDeclaredMethod("createInterface", String.class, IBinder.class);
+        create.setAccessible(true);
+        return (IBinder) create.invoke(null, id, remote);
+    }
+
+    private static final class JvmContext extends Context {
+
+        private final ContentResolver mResolver = new ContentResolver(null);
+
+        @Override
+        public ContentResolver getContentResolver() {
+            return mResolver;
+        }
+
+        @Override
+        public String getPackageName() {
+            return PACKAGE_NAME;
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+
+        @Override
+        public Looper getMainLooper() {
+            return null;
+        }
+
+        @Override
+        public File getCacheDir() {
+            return new File(System.getProperty("java.io.tmpdir"));
+        }
+
+        @Override
+        public Object getSystemService(String name) {
+            return null;
+        }
+
+        @Override
+        public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+            return null;
+        }
+
+        @Override
+        public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter, String permission,
+                                       Handler scheduler) {
+            return null;
+        }
+
+        @Override
+        public void unregisterReceiver(BroadcastReceiver receiver) {
+        }
+
+        @Override
+        public void sendBroadcast(Intent intent) {
+        }
+
+        @Override
+        public void sendBroadcast(Intent intent, String receiverPermission) {
+        }
+
+        @Override
+        public ComponentName startService(Intent service) {
+            return null;
+        }
+    }
+}
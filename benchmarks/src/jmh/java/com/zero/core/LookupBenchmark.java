@@ -0,0 +1,99 @@
+package com.zero.core;
+
+import android.os.IInterface;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CoreServiceManager.getService 的单线程耗时：命中 cache、接口没有 cache（重新 asInterface）、负缓存。
+ * 查 core 的 IPC 本身不在这里测，见 ProxyBenchmark 和 sim 模拟。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    private ServiceList.Slot mLocalSlot;
+
+    private ServiceList.Slot mCoreSlot;
+
+    private int mLocalHandle;
+
+    private int mCoreHandle;
+
+    @Setup
+    public void setUp() throws Exception {
+        JvmEnvironment.init();
+        mLocalHandle = JvmEnvironment.LOCAL_ECHO.getHandle();
+        mCoreHandle = JvmEnvironment.CORE_ECHO.getHandle();
+        mLocalSlot = ServiceList.getSlot(mLocalHandle);
+        mCoreSlot = ServiceList.getSlot(mCoreHandle);
+        if (null == CoreServiceManager.getService(JvmEnvironment.LOCAL_ECHO_ID)
+                || null == CoreServiceManager.getService(JvmEnvironment.CORE_ECHO_ID)) {
+            throw new IllegalStateException("echo services not available");
+        }
+    }
+
+    /**
+     * 负缓存 3 秒过期，每轮重新放入
+     */
+    @Setup(Level.Iteration)
+    public void refreshNegativeCache() {
+        ServiceList.putNegativeCache(JvmEnvironment.MISSING_ID);
+    }
+
+    @Benchmark
+    public IInterface localHitById() {
+        return CoreServiceManager.getService(JvmEnvironment.LOCAL_ECHO_ID);
+    }
+
+    @Benchmark
+    public IInterface localHitByHandle() {
+        return CoreServiceManager.getService(mLocalHandle);
+    }
+
+    @Benchmark
+    public IInterface localMiss() {
+        mLocalSlot.iin = null;
+        return CoreServiceManager.getService(JvmEnvironment.LOCAL_ECHO_ID);
+    }
+
+    @Benchmark
+    public IInterface coreHitById() {
+        return CoreServiceManager.getService(JvmEnvironment.CORE_ECHO_ID);
+    }
+
+    @Benchmark
+    public IInterface coreHitByHandle() {
+        return CoreServiceManager.getService(mCoreHandle);
+    }
+
+    /**
+     * binder 还在 cache 里，只重新包接口
+     */
+    @Benchmark
+    public IInterface coreMiss() {
+        mCoreSlot.iin = null;
+        return CoreServiceManager.getService(JvmEnvironment.CORE_ECHO_ID);
+    }
+
+    @Benchmark
+    public IInterface negativeCached() {
+        return CoreServiceManager.getService(JvmEnvironment.MISSING_ID);
+    }
+}
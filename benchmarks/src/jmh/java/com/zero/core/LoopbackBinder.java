@@ -0,0 +1,79 @@
+package com.zero.core;
+
+import android.os.IBinder;
+import android.os.IInterface;
+import android.os.Parcel;
+import android.os.RemoteException;
+
+import java.io.FileDescriptor;
+
+/**
+ * 在同一个 JVM 里模拟对端进程的 binder：queryLocalInterface 返回 null，调用方只能走 Proxy；
+ * transact 时像 binder 驱动一样把请求拷给对端、把返回拷回来，不包含真实的内核切换开销。
+ */
+final class LoopbackBinder implements IBinder {
+
+    private final IBinder mTarget;
+
+    LoopbackBinder(IBinder target) {
+        mTarget = target;
+    }
+
+    @Override
+    public boolean transact(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        Parcel in = Parcel.obtain();
+        Parcel out = null != reply ? Parcel.obtain() : null;
+        try {
+            in.appendFrom(data, 0, data.dataSize());
+            in.setDataPosition(0);
+            boolean result = mTarget.transact(code, in, out, flags);
+            if (null != reply) {
+                reply.appendFrom(out, 0, out.dataSize());
+                reply.setDataPosition(0);
+            }
+            return result;
+        } finally {
+            in.recycle();
+            if (null != out) {
+                out.recycle();
+            }
+        }
+    }
+
+    @Override
+    public String getInterfaceDescriptor() throws RemoteException {
+        return mTarget.getInterfaceDescriptor();
+    }
+
+    @Override
+    public boolean pingBinder() {
+        return true;
+    }
+
+    @Override
+    public boolean isBinderAlive() {
+        return true;
+    }
+
+    @Override
+    public IInterface queryLocalInterface(String descriptor) {
+        return null;
+    }
+
+    @Override
+    public void dump(FileDescriptor fd, String[] args) throws RemoteException {
+    }
+
+    @Override
+    public void dumpAsync(FileDescriptor fd, String[] args) throws RemoteException {
+    }
+
+    @Override
+    public void linkToDeath(DeathRecipient recipient, int flags) throws RemoteException {
+    }
+
+    @Override
+    public boolean unlinkToDeath(DeathRecipient recipient, int flags) {
+        return true;
+    }
+}
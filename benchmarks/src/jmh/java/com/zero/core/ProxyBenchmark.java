@@ -0,0 +1,75 @@
+package com.zero.core;
+
+import android.os.RemoteException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次调用经过各层的开销：直接调实现、Stub.Proxy + LoopbackBinder（相当于裸 binder）、
+ * 再加上 RemoteBinderProxy 和服务端 ServerBinder。LoopbackBinder 只拷贝 Parcel，没有内核切换，
+ * 差值就是库自己加的开销。metrics / trace 两个参数看打开统计的代价。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyBenchmark {
+
+    @Param({"true", "false"})
+    public boolean metrics;
+
+    @Param({"0", "2"})
+    public int traceLevel;
+
+    private IEcho mDirect;
+
+    private IEcho mLoopback;
+
+    private IEcho mManaged;
+
+    private int mValue;
+
+    @Setup
+    public void setUp() throws Exception {
+        JvmEnvironment.init();
+        TransactionMetrics.setEnabled(metrics);
+        CoreTrace.setLevel(traceLevel);
+        mDirect = new EchoService();
+        mLoopback = IEcho.Stub.asInterface(new LoopbackBinder(new EchoService()));
+        mManaged = (IEcho) CoreServiceManager.getService(JvmEnvironment.CORE_ECHO_ID);
+    }
+
+    @Benchmark
+    public int direct() throws RemoteException {
+        return mDirect.echo(mValue++);
+    }
+
+    @Benchmark
+    public int loopback() throws RemoteException {
+        return mLoopback.echo(mValue++);
+    }
+
+    @Benchmark
+    public int managed() throws RemoteException {
+        return mManaged.echo(mValue++);
+    }
+
+    @Benchmark
+    public String managedString() throws RemoteException {
+        return mManaged.echoString("com.zero.benchmark");
+    }
+}
@@ -0,0 +1,76 @@
+package com.zero.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ServiceList 各张表的单次查询
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceListBenchmark {
+
+    private int mHandle;
+
+    @Setup
+    public void setUp() throws Exception {
+        JvmEnvironment.init();
+        mHandle = JvmEnvironment.CORE_ECHO.getHandle();
+    }
+
+    /**
+     * 负缓存 3 秒过期，每轮重新放入
+     */
+    @Setup(Level.Iteration)
+    public void refreshNegativeCache() {
+        ServiceList.putNegativeCache(JvmEnvironment.MISSING_ID);
+    }
+
+    @Benchmark
+    public Service getServiceHit() {
+        return ServiceList.getService(JvmEnvironment.CORE_ECHO_ID);
+    }
+
+    /**
+     * 没有 install 也不在生成的索引里，会再查一次索引
+     */
+    @Benchmark
+    public Service getServiceMiss() {
+        return ServiceList.getService("NotInstalled");
+    }
+
+    @Benchmark
+    public ServiceList.Slot getSlotById() {
+        return ServiceList.getSlot(JvmEnvironment.CORE_ECHO_ID);
+    }
+
+    @Benchmark
+    public ServiceList.Slot getSlotByHandle() {
+        return ServiceList.getSlot(mHandle);
+    }
+
+    @Benchmark
+    public Object getCacheInterface() {
+        return ServiceList.getCacheInterface(JvmEnvironment.CORE_ECHO_ID);
+    }
+
+    @Benchmark
+    public boolean isNegativeCached() {
+        return ServiceList.isNegativeCached(JvmEnvironment.MISSING_ID);
+    }
+}
@@ -0,0 +1,38 @@
+package android.content;
+
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.RemoteException;
+
+/**
+ * Host side of a simulated provider connection. Only call() is carried across processes.
+ */
+public class ContentProviderNative extends Binder {
+
+    static final String DESCRIPTOR = "android.content.IContentProvider";
+
+    static final int CALL_TRANSACTION = FIRST_CALL_TRANSACTION + 20;
+
+    private final ContentProvider mProvider;
+
+    public ContentProviderNative(ContentProvider provider) {
+        mProvider = provider;
+        attachInterface(null, DESCRIPTOR);
+    }
+
+    @Override
+    protected boolean onTransact(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        if (CALL_TRANSACTION != code) {
+            return super.onTransact(code, data, reply, flags);
+        }
+        data.enforceInterface(DESCRIPTOR);
+        String method = data.readString();
+        String arg = data.readString();
+        Bundle extras = data.readBundle();
+        Bundle result = mProvider.call(method, arg, extras);
+        reply.writeNoException();
+        reply.writeBundle(result);
+        return true;
+    }
+}
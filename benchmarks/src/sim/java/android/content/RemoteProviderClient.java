@@ -0,0 +1,45 @@
+package android.content;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.RemoteException;
+
+/**
+ * Client side of a simulated provider connection, talking to a {@link ContentProviderNative} in
+ * another process. A dead host surfaces as DeadObjectException, like an unstable client.
+ */
+public class RemoteProviderClient extends ContentProviderClient {
+
+    private final IBinder mRemote;
+
+    public RemoteProviderClient(IBinder remote) {
+        super(null);
+        mRemote = remote;
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) throws RemoteException {
+        Parcel data = Parcel.obtain();
+        Parcel reply = Parcel.obtain();
+        try {
+            data.writeInterfaceToken(ContentProviderNative.DESCRIPTOR);
+            data.writeString(method);
+            data.writeString(arg);
+            data.writeBundle(extras);
+            mRemote.transact(ContentProviderNative.CALL_TRANSACTION, data, reply, 0);
+            reply.readException();
+            return reply.readBundle();
+        } finally {
+            reply.recycle();
+            data.recycle();
+        }
+    }
+
+    @Override
+    public Cursor query(Uri url, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        return null;
+    }
+}
@@ -0,0 +1,113 @@
+package android.os;
+
+import com.zero.sim.Kernel;
+import com.zero.sim.Transfer;
+
+/**
+ * Per-process end of the simulated binder driver: flattens parcels into {@link Transfer}s (binder
+ * objects become kernel node ids) and runs incoming transactions with the caller's identity.
+ */
+public final class BinderDriver {
+
+    private final Kernel mKernel;
+
+    private final int mPid;
+
+    public BinderDriver(Kernel kernel, int pid) {
+        mKernel = kernel;
+        mPid = pid;
+        Process.sMyPid = pid;
+    }
+
+    Kernel getKernel() {
+        return mKernel;
+    }
+
+    int getPid() {
+        return mPid;
+    }
+
+    public IBinder createProxy(int node) {
+        return new BinderProxy(this, node);
+    }
+
+    /**
+     * @return a proxy for the provider in its host process, or null if it cannot be launched
+     */
+    public IBinder acquireProvider(String authority) {
+        return (IBinder) mKernel.acquireProvider(mPid, authority);
+    }
+
+    public void broadcast(String action, Bundle extras) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeBundle(extras);
+            mKernel.broadcast(mPid, action, write(parcel, new Transfer()));
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    public Bundle readBundle(Transfer transfer) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            read(transfer, parcel);
+            return parcel.readBundle();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    public boolean onTransact(Object target, int code, Transfer data, Transfer reply, int flags, int callingPid,
+                              int callingUid) throws RemoteException {
+        Parcel in = Parcel.obtain();
+        Parcel out = null != reply ? Parcel.obtain() : null;
+        long identity = Binder.clearCallingIdentity();
+        Binder.restoreCallingIdentity(((long) callingUid << 32) | (callingPid & 0xffffffffL));
+        try {
+            read(data, in);
+            boolean handled = ((IBinder) target).transact(code, in, out, flags);
+            if (null != out) {
+                write(out, reply);
+            }
+            return handled;
+        } finally {
+            Binder.restoreCallingIdentity(identity);
+            in.recycle();
+            if (null != out) {
+                out.recycle();
+            }
+        }
+    }
+
+    public void sendDeathNotice(Object proxy) {
+        ((BinderProxy) proxy).sendDeathNotice();
+    }
+
+    Transfer write(Parcel parcel, Transfer out) {
+        int count = parcel.getObjectCount();
+        out.data = parcel.getData();
+        out.offsets = new int[count];
+        out.nodes = new int[count];
+        for (int i = 0; i < count; i++) {
+            Object object = parcel.getObjectAt(i);
+            out.offsets[i] = parcel.getObjectOffset(i);
+            if (object instanceof BinderProxy) {
+                out.nodes[i] = ((BinderProxy) object).getNode();
+            } else if (null == object || object instanceof IBinder) {
+                out.nodes[i] = mKernel.export(mPid, object);
+            } else {
+                throw new IllegalArgumentException("Cannot transfer " + object.getClass().getName());
+            }
+        }
+        return out;
+    }
+
+    void read(Transfer transfer, Parcel parcel) {
+        parcel.unmarshall(transfer.data, 0, transfer.data.length);
+        for (int i = 0; i < transfer.nodes.length; i++) {
+            parcel.putObject(transfer.offsets[i], mKernel.resolve(mPid, transfer.nodes[i]));
+        }
+        parcel.setDataPosition(0);
+    }
+}
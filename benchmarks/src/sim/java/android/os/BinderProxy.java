@@ -0,0 +1,107 @@
+package android.os;
+
+import com.zero.sim.Kernel;
+import com.zero.sim.Transfer;
+
+import java.io.FileDescriptor;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A reference to a binder living in another simulated process. One instance per node per process,
+ * so identity comparisons behave as on a device.
+ */
+final class BinderProxy implements IBinder {
+
+    private final BinderDriver mDriver;
+
+    private final int mNode;
+
+    private final CopyOnWriteArrayList<DeathRecipient> mRecipients = new CopyOnWriteArrayList<DeathRecipient>();
+
+    private volatile boolean mDead;
+
+    BinderProxy(BinderDriver driver, int node) {
+        mDriver = driver;
+        mNode = node;
+    }
+
+    int getNode() {
+        return mNode;
+    }
+
+    @Override
+    public boolean transact(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        Transfer out = null != reply ? new Transfer() : null;
+        int status = mDriver.getKernel().transact(mDriver.getPid(), mNode, code, mDriver.write(data, new Transfer()),
+                out, flags);
+        if (Kernel.STATUS_DEAD == status) {
+            throw new DeadObjectException();
+        }
+        if (Kernel.STATUS_OK == status && null != reply) {
+            mDriver.read(out, reply);
+        }
+        return Kernel.STATUS_OK == status;
+    }
+
+    @Override
+    public String getInterfaceDescriptor() throws RemoteException {
+        Parcel data = Parcel.obtain();
+        Parcel reply = Parcel.obtain();
+        try {
+            transact(INTERFACE_TRANSACTION, data, reply, 0);
+            return reply.readString();
+        } finally {
+            reply.recycle();
+            data.recycle();
+        }
+    }
+
+    @Override
+    public boolean pingBinder() {
+        return isBinderAlive();
+    }
+
+    @Override
+    public boolean isBinderAlive() {
+        return !mDead && mDriver.getKernel().isAlive(mNode);
+    }
+
+    @Override
+    public IInterface queryLocalInterface(String descriptor) {
+        return null;
+    }
+
+    @Override
+    public void dump(FileDescriptor fd, String[] args) {
+    }
+
+    @Override
+    public void dumpAsync(FileDescriptor fd, String[] args) {
+    }
+
+    @Override
+    public void linkToDeath(DeathRecipient recipient, int flags) throws RemoteException {
+        mRecipients.add(recipient);
+        if (!isBinderAlive()) {
+            mRecipients.remove(recipient);
+            throw new DeadObjectException();
+        }
+    }
+
+    @Override
+    public boolean unlinkToDeath(DeathRecipient recipient, int flags) {
+        return mRecipients.remove(recipient);
+    }
+
+    void sendDeathNotice() {
+        mDead = true;
+        for (DeathRecipient recipient : mRecipients) {
+            mRecipients.remove(recipient);
+            try {
+                recipient.binderDied();
+            } catch (RuntimeException e) {
+                System.err.println("[binderDied] " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.zero.core;
+
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.ContentProvider;
+import android.content.ContentProviderClient;
+import android.content.ContentProviderNative;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.RemoteProviderClient;
+import android.os.BinderDriver;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+
+import com.zero.sim.Guest;
+import com.zero.sim.Kernel;
+import com.zero.sim.SimConfig;
+import com.zero.sim.Transfer;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 模拟进程里的应用：和真实应用一样先创建 Provider，再 AppUtil.init、install 服务。
+ * 每个进程都 install 两个服务：{@link #CORE_ECHO_ID} 在 core 进程，{@link #PEER_ECHO_ID} 在 {@link #PEER_SUFFIX} 进程。
+ */
+public final class SimGuest implements Guest {
+
+    public static final String CORE_ECHO_ID = "EchoCore";
+
+    public static final String PEER_ECHO_ID = "EchoPeer";
+
+    public static final String PEER_SUFFIX = ":peer";
+
+    private static final Service CORE_ECHO = new Service(EchoService.class) {
+        @Override
+        public String getServiceId() {
+            return CORE_ECHO_ID;
+        }
+    };
+
+    private static final Service PEER_ECHO = new Service(EchoService.class) {
+        @Override
+        public String getServiceId() {
+            return PEER_ECHO_ID;
+        }
+
+        @Override
+        public String getProcessSuffix() {
+            return PEER_SUFFIX;
+        }
+    };
+
+    private final HashMap<String, IBinder> mProviders = new HashMap<String, IBinder>();
+
+    private BinderDriver mDriver;
+
+    private Application mApplication;
+
+    private SimContext mContext;
+
+    @Override
+    public void start(Kernel kernel, String processName, int pid, String[] authorities) throws Exception {
+        SimConfig config = kernel.getConfig();
+        mDriver = new BinderDriver(kernel, pid);
+        Field name = AppUtil.class.getDeclaredField("sCurProcessName");
+        name.setAccessible(true);
+        name.set(null, processName);
+        mContext = new SimContext(config.packageName);
+        mApplication = new Application();
+        mApplication.attach(mContext);
+        for (String authority : authorities) { // 和 ActivityThread 一样，Provider 先于 Application.onCreate
+            ContentProvider provider = CoreProvider.AUTHORITY.equals(authority)
+                    ? new CoreProvider() : new ProcessProvider();
+            provider.attachInfo(mApplication);
+            mProviders.put(authority, new ContentProviderNative(provider));
+        }
+        CoreServiceManager.setPrestartCore(config.prestart);
+        CoreServiceManager.setRegistryRateLimit(config.registryRate, config.registryRate * 2);
+        AppUtil.init(mApplication);
+        CORE_ECHO.install();
+        PEER_ECHO.install();
+    }
+
+    @Override
+    public int echo(String serviceId, int value, long timeoutMillis) throws Exception {
+        IEcho echo = (IEcho) (timeoutMillis > 0
+                ? CoreServiceManager.getService(serviceId, timeoutMillis)
+                : CoreServiceManager.getService(serviceId));
+        if (null == echo) {
+            throw new IllegalStateException("Service " + serviceId + " not available");
+        }
+        return echo.echo(value);
+    }
+
+    @Override
+    public boolean lookup(String serviceId) {
+        return null != CoreServiceManager.getService(serviceId);
+    }
+
+    @Override
+    public void dropCache(String serviceId) {
+        ServiceList.removeCacheBinder(serviceId);
+    }
+
+    @Override
+    public String dump() {
+        StringWriter writer = new StringWriter();
+        CoreServiceManager.dump(new PrintWriter(writer));
+        return writer.toString();
+    }
+
+    @Override
+    public Object getProvider(String authority) {
+        return mProviders.get(authority);
+    }
+
+    @Override
+    public Object createProxy(int node) {
+        return mDriver.createProxy(node);
+    }
+
+    @Override
+    public boolean onTransact(Object binder, int code, Transfer data, Transfer reply, int flags, int callingPid,
+                              int callingUid) throws Exception {
+        return mDriver.onTransact(binder, code, data, reply, flags, callingPid, callingUid);
+    }
+
+    @Override
+    public void sendDeathNotice(Object proxy) {
+        mDriver.sendDeathNotice(proxy);
+    }
+
+    @Override
+    public void deliverBroadcast(String action, Transfer extras) {
+        Intent intent = new Intent(action);
+        intent.putExtras(mDriver.readBundle(extras));
+        mContext.deliver(mApplication, intent);
+    }
+
+    /**
+     * Provider 和广播走 {@link Kernel}，其余能力库里用不到，返回空
+     */
+    private final class SimContext extends Context {
+
+        private final String mPackageName;
+
+        private final ContentResolver mResolver = new ContentResolver(new ContentResolver.Resolver() {
+            @Override
+            public ContentProviderClient acquire(String authority, boolean stable) {
+                IBinder provider = mDriver.acquireProvider(authority);
+                return null != provider ? new RemoteProviderClient(provider) : null;
+            }
+        });
+
+        private final CopyOnWriteArrayList<Object[]> mReceivers = new CopyOnWriteArrayList<Object[]>();
+
+        SimContext(String packageName) {
+            mPackageName = packageName;
+        }
+
+        void deliver(Context context, Intent intent) {
+            for (Object[] registration : mReceivers) {
+                if (((IntentFilter) registration[1]).hasAction(intent.getAction())) {
+                    ((BroadcastReceiver) registration[0]).onReceive(context, intent);
+                }
+            }
+        }
+
+        @Override
+        public ContentResolver getContentResolver() {
+            return mResolver;
+        }
+
+        @Override
+        public String getPackageName() {
+            return mPackageName;
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return mApplication;
+        }
+
+        @Override
+        public Looper getMainLooper() {
+            return null;
+        }
+
+        @Override
+        public File getCacheDir() {
+            return new File(System.getProperty("java.io.tmpdir"));
+        }
+
+        @Override
+        public Object getSystemService(String name) {
+            return null;
+        }
+
+        @Override
+        public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+            return registerReceiver(receiver, filter, null, null);
+        }
+
+        @Override
+        public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter, String permission,
+                                       Handler scheduler) {
+            mReceivers.add(new Object[]{receiver, filter});
+            return null;
+        }
+
+        @Override
+        public void unregisterReceiver(BroadcastReceiver receiver) {
+            for (Object[] registration : mReceivers) {
+                if (registration[0] == receiver) {
+                    mReceivers.remove(registration);
+                }
+            }
+        }
+
+        @Override
+        public void sendBroadcast(Intent intent) {
+            mDriver.broadcast(intent.getAction(), intent.getExtras());
+        }
+
+        @Override
+        public void sendBroadcast(Intent intent, String receiverPermission) {
+            sendBroadcast(intent);
+        }
+
+        @Override
+        public ComponentName startService(Intent service) {
+            return null;
+        }
+    }
+}
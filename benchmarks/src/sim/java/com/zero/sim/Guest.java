@@ -0,0 +1,64 @@
+package com.zero.sim;
+
+/**
+ * 一个模拟进程里的入口，实现类（com.zero.core.SimGuest）由该进程自己的 ClassLoader 加载，
+ * 和父 ClassLoader 之间只传 JDK 类型、{@link Kernel} 和 {@link Transfer}。
+ */
+public interface Guest {
+
+    /*
+     * 测试方调用
+     */
+
+    /**
+     * 相当于 fork 出进程后 bindApplication：先创建 authorities 对应的 Provider，再 AppUtil.init、install 服务
+     */
+    void start(Kernel kernel, String processName, int pid, String[] authorities) throws Exception;
+
+    /**
+     * CoreServiceManager.getService 后调用一次 echo
+     *
+     * @param timeoutMillis &gt;0 时用 getService(id, timeout)，服务所在进程没运行会被拉起
+     * @throws IllegalStateException 拿不到服务
+     */
+    int echo(String serviceId, int value, long timeoutMillis) throws Exception;
+
+    /**
+     * @return getService 是否拿到了服务，已经有 cache 时不走 IPC
+     */
+    boolean lookup(String serviceId);
+
+    /**
+     * 去掉本进程对该服务的 cache，下次 getService 重新向 core 查
+     */
+    void dropCache(String serviceId);
+
+    String dump();
+
+    /*
+     * Kernel 调用
+     */
+
+    /**
+     * @return authority 对应 Provider 的 binder（本进程对象）
+     */
+    Object getProvider(String authority);
+
+    /**
+     * @return 本进程里代表 node 的 BinderProxy
+     */
+    Object createProxy(int node);
+
+    /**
+     * 在本进程的 binder 线程上执行一次 transaction
+     *
+     * @param reply oneway 时为 null
+     * @return onTransact 的返回值
+     */
+    boolean onTransact(Object binder, int code, Transfer data, Transfer reply, int flags, int callingPid,
+                       int callingUid) throws Exception;
+
+    void sendDeathNotice(Object proxy);
+
+    void deliverBroadcast(String action, Transfer extras);
+}
@@ -0,0 +1,549 @@
+package com.zero.sim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 模拟的 binder 驱动 + ActivityManager：管理进程、binder 节点，在进程之间传递 transaction、死亡通知和广播。
+ * <ul>
+ * <li>每个进程一个 {@link ProcessClassLoader}，16 个 binder 线程，一个主线程（收广播）</li>
+ * <li>transaction 在目标进程的 binder 线程上执行，调用方线程等结果；请求、返回各加一跳延迟</li>
+ * <li>进程被杀后它的节点都失效，正在等的调用收到 {@link #STATUS_DEAD}，其他进程持有的代理收到死亡通知</li>
+ * <li>拿 Provider 时进程没运行就先拉起，拉起要 launchDelay</li>
+ * </ul>
+ * 被杀进程里已经在跑的线程停不下来，它之后发出的调用都按进程已死处理。
+ */
+public final class Kernel {
+
+    public static final int STATUS_OK = 0;
+
+    /**
+     * onTransact 返回 false 或抛了没法写进 reply 的异常
+     */
+    public static final int STATUS_FAILED = 1;
+
+    /**
+     * 目标或调用方进程已死，调用方抛 DeadObjectException
+     */
+    public static final int STATUS_DEAD = 2;
+
+    /**
+     * 同 IBinder.FLAG_ONEWAY
+     */
+    private static final int FLAG_ONEWAY = 0x00000001;
+
+    private static final int BINDER_THREADS = 16;
+
+    private static final int APP_UID = 10000;
+
+    private static final String GUEST_CLASS = "com.zero.core.SimGuest";
+
+    private final SimConfig mConfig;
+
+    /**
+     * 进程名 -> 该进程声明的 authority
+     */
+    private final HashMap<String, String[]> mDeclared = new HashMap<String, String[]>();
+
+    /**
+     * authority -> 进程名
+     */
+    private final HashMap<String, String> mAuthorities = new HashMap<String, String>();
+
+    private final ConcurrentHashMap<String, Object> mLaunchLocks = new ConcurrentHashMap<String, Object>();
+
+    private final ConcurrentHashMap<String, ProcessRecord> mRunning = new ConcurrentHashMap<String, ProcessRecord>();
+
+    private final ConcurrentHashMap<Integer, ProcessRecord> mByPid = new ConcurrentHashMap<Integer, ProcessRecord>();
+
+    private final ConcurrentHashMap<Integer, Node> mNodes = new ConcurrentHashMap<Integer, Node>();
+
+    private final AtomicInteger mNextNode = new AtomicInteger(1);
+
+    private final AtomicInteger mNextPid = new AtomicInteger(1000);
+
+    private final AtomicLong mTransactions = new AtomicLong();
+
+    private final AtomicLong mLaunches = new AtomicLong();
+
+    private final AtomicLong mDeathNotices = new AtomicLong();
+
+    private final AtomicLong mBroadcasts = new AtomicLong();
+
+    private static final class Node {
+
+        final int id;
+
+        final ProcessRecord owner;
+
+        final Object binder;
+
+        Node(int id, ProcessRecord owner, Object binder) {
+            this.id = id;
+            this.owner = owner;
+            this.binder = binder;
+        }
+    }
+
+    private static final class ProcessRecord {
+
+        final String name;
+
+        final int pid;
+
+        final ProcessClassLoader loader;
+
+        final ThreadPoolExecutor binderPool;
+
+        final ThreadPoolExecutor mainThread;
+
+        final IdentityHashMap<Object, Node> exported = new IdentityHashMap<Object, Node>();
+
+        /**
+         * 其他进程的节点 -> 本进程的代理
+         */
+        final ConcurrentHashMap<Integer, Object> proxies = new ConcurrentHashMap<Integer, Object>();
+
+        /**
+         * 交给本进程、还没有结果的同步调用
+         */
+        final Set<Call> pending = Collections.newSetFromMap(new ConcurrentHashMap<Call, Boolean>());
+
+        volatile Guest guest;
+
+        volatile boolean alive = true;
+
+        ProcessRecord(String name, int pid) {
+            this.name = name;
+            this.pid = pid;
+            this.loader = new ProcessClassLoader(name, Kernel.class.getClassLoader());
+            this.binderPool = newPool("Binder:" + pid + "_", BINDER_THREADS);
+            this.mainThread = newPool("main:" + pid, 1);
+        }
+
+        private ThreadPoolExecutor newPool(final String name, final int threads) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, threads > 1 ? name + mCount.incrementAndGet() : name);
+                    thread.setDaemon(true);
+                    thread.setContextClassLoader(loader);
+                    return thread;
+                }
+            });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    /**
+     * 一次同步调用，目标进程死掉时由 kill 直接结束
+     */
+    private final class Call implements Runnable {
+
+        private final Node mTarget;
+
+        private final int mCode;
+
+        private final Transfer mData;
+
+        private final Transfer mReply;
+
+        private final int mFlags;
+
+        private final ProcessRecord mCaller;
+
+        private final CountDownLatch mDone = new CountDownLatch(1);
+
+        private volatile int mStatus = STATUS_DEAD;
+
+        Call(Node target, int code, Transfer data, Transfer reply, int flags, ProcessRecord caller) {
+            mTarget = target;
+            mCode = code;
+            mData = data;
+            mReply = reply;
+            mFlags = flags;
+            mCaller = caller;
+        }
+
+        @Override
+        public void run() {
+            ProcessRecord owner = mTarget.owner;
+            int status = STATUS_DEAD;
+            try {
+                if (owner.alive) {
+                    boolean handled = owner.guest.onTransact(mTarget.binder, mCode, mData, mReply, mFlags,
+                            mCaller.pid, APP_UID);
+                    status = handled ? STATUS_OK : STATUS_FAILED;
+                }
+            } catch (Throwable e) {
+                if (owner.alive) {
+                    System.err.println("[" + owner.name + "] transaction " + mCode + " failed: " + e);
+                }
+                status = STATUS_FAILED;
+            }
+            complete(status);
+        }
+
+        void complete(int status) {
+            if (mDone.getCount() == 0) {
+                return;
+            }
+            synchronized (this) {
+                if (mDone.getCount() == 0) {
+                    return;
+                }
+                mStatus = status;
+                mDone.countDown();
+            }
+            mTarget.owner.pending.remove(this);
+        }
+
+        int await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    mDone.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return mStatus;
+        }
+    }
+
+    public Kernel(SimConfig config) {
+        mConfig = config;
+    }
+
+    public SimConfig getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * 相当于 AndroidManifest 里的 android:process 和 provider 声明
+     */
+    public synchronized void declareProcess(String processName, String... authorities) {
+        mDeclared.put(processName, authorities);
+        for (String authority : authorities) {
+            mAuthorities.put(authority, processName);
+        }
+    }
+
+    /**
+     * 进程没有运行时拉起（要 launchDelay），已经在运行直接返回
+     */
+    public Guest startProcess(String processName) throws Exception {
+        String[] authorities;
+        synchronized (this) {
+            authorities = mDeclared.get(processName);
+        }
+        if (null == authorities) {
+            throw new IllegalArgumentException("Undeclared process " + processName);
+        }
+        Object lock = mLaunchLocks.get(processName);
+        if (null == lock) {
+            lock = new Object();
+            Object old = mLaunchLocks.putIfAbsent(processName, lock);
+            if (null != old) {
+                lock = old;
+            }
+        }
+        synchronized (lock) {
+            ProcessRecord running = mRunning.get(processName);
+            if (null != running && running.alive) {
+                return running.guest;
+            }
+            sleepMillis(mConfig.launchDelayMillis);
+            ProcessRecord record = new ProcessRecord(processName, mNextPid.getAndIncrement());
+            Thread thread = Thread.currentThread();
+            ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(record.loader); // 进程里创建的线程都继承这个
+            try {
+                record.guest = (Guest) record.loader.loadClass(GUEST_CLASS).newInstance();
+                mByPid.put(record.pid, record); // Provider 创建时就可能发广播
+                record.guest.start(this, processName, record.pid, authorities);
+            } finally {
+                thread.setContextClassLoader(previous);
+            }
+            mRunning.put(processName, record);
+            mLaunches.incrementAndGet();
+            return record.guest;
+        }
+    }
+
+    public Guest getProcess(String processName) {
+        ProcessRecord record = mRunning.get(processName);
+        return null != record ? record.guest : null;
+    }
+
+    public ClassLoader getClassLoader(String processName) {
+        ProcessRecord record = mRunning.get(processName);
+        return null != record ? record.loader : null;
+    }
+
+    /**
+     * 杀掉进程：它的节点失效，交给它的调用都以 {@link #STATUS_DEAD} 结束，其他进程的代理收到死亡通知
+     */
+    public void kill(String processName) {
+        ProcessRecord dead = mRunning.remove(processName);
+        if (null == dead) {
+            return;
+        }
+        dead.alive = false;
+        dead.binderPool.shutdownNow();
+        dead.mainThread.shutdownNow();
+        for (Call call : dead.pending) {
+            call.complete(STATUS_DEAD);
+        }
+        for (final ProcessRecord other : mRunning.values()) {
+            Iterator<Map.Entry<Integer, Object>> it = other.proxies.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, Object> entry = it.next();
+                Node node = mNodes.get(entry.getKey());
+                if (null == node || node.owner != dead) {
+                    continue;
+                }
+                it.remove();
+                final Object proxy = entry.getValue();
+                execute(other.binderPool, new Runnable() {
+                    @Override
+                    public void run() {
+                        hop();
+                        mDeathNotices.incrementAndGet();
+                        other.guest.sendDeathNotice(proxy);
+                    }
+                });
+            }
+        }
+        List<Integer> nodes = new ArrayList<Integer>();
+        for (Node node : mNodes.values()) {
+            if (node.owner == dead) {
+                nodes.add(node.id);
+            }
+        }
+        for (Integer id : nodes) { // 死节点留着没用，调用方按找不到节点处理，同样是 STATUS_DEAD
+            mNodes.remove(id);
+        }
+    }
+
+    public void killAll() {
+        for (String name : new ArrayList<String>(mRunning.keySet())) {
+            kill(name);
+        }
+    }
+
+    /**
+     * @return 本进程对象的节点号，null 返回 0
+     */
+    public int export(int pid, Object binder) {
+        if (null == binder) {
+            return 0;
+        }
+        ProcessRecord record = mByPid.get(pid);
+        if (null == record) {
+            throw new IllegalStateException("Unknown pid " + pid);
+        }
+        synchronized (record.exported) {
+            Node node = record.exported.get(binder);
+            if (null == node) {
+                node = new Node(mNextNode.getAndIncrement(), record, binder);
+                record.exported.put(binder, node);
+                mNodes.put(node.id, node);
+            }
+            return node.id;
+        }
+    }
+
+    /**
+     * @return node 在 pid 进程里对应的对象：本进程的节点返回原对象，否则返回代理（同一个节点同一个代理）；
+     * 节点已死也返回代理，用的时候才报 DeadObjectException
+     */
+    public Object resolve(int pid, int node) {
+        if (0 == node) {
+            return null;
+        }
+        ProcessRecord record = mByPid.get(pid);
+        if (null == record) {
+            throw new IllegalStateException("Unknown pid " + pid);
+        }
+        Node target = mNodes.get(node);
+        if (null != target && target.owner == record) {
+            return target.binder;
+        }
+        Object proxy = record.proxies.get(node);
+        if (null == proxy) {
+            proxy = record.guest.createProxy(node);
+            if (null == target || !target.owner.alive) { // 已经死了，不放进表里，也就收不到死亡通知，linkToDeath 会直接失败
+                return proxy;
+            }
+            Object old = record.proxies.putIfAbsent(node, proxy);
+            if (null != old) {
+                proxy = old;
+            }
+        }
+        return proxy;
+    }
+
+    public boolean isAlive(int node) {
+        Node target = mNodes.get(node);
+        return null != target && target.owner.alive;
+    }
+
+    /**
+     * @param reply oneway 时为 null
+     * @return {@link #STATUS_OK}、{@link #STATUS_FAILED} 或 {@link #STATUS_DEAD}
+     */
+    public int transact(int fromPid, int node, int code, Transfer data, Transfer reply, int flags) {
+        ProcessRecord caller = mByPid.get(fromPid);
+        Node target = mNodes.get(node);
+        if (null == caller || !caller.alive || null == target || !target.owner.alive) {
+            return STATUS_DEAD;
+        }
+        mTransactions.incrementAndGet();
+        hop();
+        boolean oneway = 0 != (flags & FLAG_ONEWAY);
+        Call call = new Call(target, code, data, oneway ? null : reply, flags, caller);
+        if (!oneway) {
+            target.owner.pending.add(call);
+        }
+        if (!execute(target.owner.binderPool, call)) {
+            call.complete(STATUS_DEAD);
+        }
+        if (oneway) {
+            return STATUS_OK;
+        }
+        int status = call.await();
+        hop();
+        return status;
+    }
+
+    /**
+     * 相当于 ActivityManager.getContentProvider：先走一次 system_server，进程没运行就拉起
+     *
+     * @return Provider 在调用方进程里的代理，没有声明或拉起失败返回 null
+     */
+    public Object acquireProvider(int fromPid, String authority) {
+        ProcessRecord caller = mByPid.get(fromPid);
+        String processName;
+        synchronized (this) {
+            processName = mAuthorities.get(authority);
+        }
+        if (null == caller || !caller.alive || null == processName) {
+            return null;
+        }
+        hop();
+        Guest host;
+        try {
+            host = startProcess(processName);
+        } catch (Exception e) {
+            System.err.println("[kernel] launch " + processName + " failed: " + e);
+            return null;
+        }
+        ProcessRecord record = mRunning.get(processName);
+        if (null == record || record.guest != host) { // 刚拉起又被杀了
+            return null;
+        }
+        int node = export(record.pid, host.getProvider(authority));
+        hop();
+        return resolve(fromPid, node);
+    }
+
+    /**
+     * 发给所有运行中的进程（包括自己），在各自的主线程上收
+     */
+    public void broadcast(int fromPid, final String action, final Transfer extras) {
+        ProcessRecord caller = mByPid.get(fromPid);
+        if (null == caller || !caller.alive) {
+            return;
+        }
+        for (final ProcessRecord record : mRunning.values()) {
+            execute(record.mainThread, new Runnable() {
+                @Override
+                public void run() {
+                    hop();
+                    if (record.alive) {
+                        mBroadcasts.incrementAndGet();
+                        record.guest.deliverBroadcast(action, extras);
+                    }
+                }
+            });
+        }
+    }
+
+    Map<String, Object> getCounters() {
+        HashMap<String, Object> counters = new HashMap<String, Object>();
+        counters.put("transactions", mTransactions.get());
+        counters.put("launches", mLaunches.get());
+        counters.put("deathNotices", mDeathNotices.get());
+        counters.put("broadcasts", mBroadcasts.get());
+        return counters;
+    }
+
+    private static boolean execute(ExecutorService executor, Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) { // 进程刚被杀
+            return false;
+        }
+    }
+
+    /**
+     * 一跳的延迟，park 精度不够的部分自旋
+     */
+    private void hop() {
+        long nanos = TimeUnit.MICROSECONDS.toNanos(mConfig.hopLatencyMicros);
+        if (mConfig.jitterMicros > 0) {
+            nanos += ThreadLocalRandom.current().nextLong(TimeUnit.MICROSECONDS.toNanos(mConfig.jitterMicros));
+        }
+        if (nanos <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + nanos;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > 200000) {
+                LockSupport.parkNanos(remaining - 100000);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static void sleepMillis(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.zero.sim;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * 每个模拟进程一个：android.* 和 com.zero.core.* 自己加载（child-first），库和替身的静态状态各进程独立；
+ * 其他类（包括 com.zero.sim）交给父 ClassLoader，各进程共享。进程被杀后连同它的静态状态一起丢掉。
+ */
+final class ProcessClassLoader extends URLClassLoader {
+
+    private static final String[] ISOLATED_PREFIXES = {"android.", "com.zero.core."};
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    private final String mProcessName;
+
+    ProcessClassLoader(String processName, ClassLoader parent) {
+        super(classPath(), parent);
+        mProcessName = processName;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (!isIsolated(name)) {
+            return super.loadClass(name, resolve);
+        }
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> clazz = findLoadedClass(name);
+            if (null == clazz) {
+                clazz = findClass(name);
+            }
+            if (resolve) {
+                resolveClass(clazz);
+            }
+            return clazz;
+        }
+    }
+
+    private static boolean isIsolated(String name) {
+        for (String prefix : ISOLATED_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static URL[] classPath() {
+        String[] entries = System.getProperty("java.class.path").split(File.pathSeparator);
+        URL[] urls = new URL[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            try {
+                urls[i] = new File(entries[i]).toURI().toURL();
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return urls;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessClassLoader[" + mProcessName + "]";
+    }
+}
@@ -0,0 +1,71 @@
+package com.zero.sim;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一项指标的耗时样本（纳秒），输出时换成微秒
+ */
+final class Samples {
+
+    private final String mName;
+
+    private long[] mValues = new long[64];
+
+    private int mCount;
+
+    private int mFailures;
+
+    Samples(String name) {
+        mName = name;
+    }
+
+    synchronized void add(long nanos) {
+        if (mCount == mValues.length) {
+            mValues = Arrays.copyOf(mValues, mCount * 2);
+        }
+        mValues[mCount++] = nanos;
+    }
+
+    synchronized void fail() {
+        mFailures++;
+    }
+
+    String getName() {
+        return mName;
+    }
+
+    synchronized Map<String, Object> summarize() {
+        long[] sorted = Arrays.copyOf(mValues, mCount);
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long value : sorted) {
+            total += value;
+        }
+        LinkedHashMap<String, Object> summary = new LinkedHashMap<String, Object>();
+        summary.put("name", mName);
+        summary.put("unit", "us");
+        summary.put("count", mCount);
+        summary.put("failures", mFailures);
+        summary.put("mean", micros(mCount == 0 ? 0 : total / mCount));
+        summary.put("min", micros(percentile(sorted, 0)));
+        summary.put("p50", micros(percentile(sorted, 50)));
+        summary.put("p90", micros(percentile(sorted, 90)));
+        summary.put("p99", micros(percentile(sorted, 99)));
+        summary.put("max", micros(percentile(sorted, 100)));
+        return summary;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.min(sorted.length - 1, Math.max(0, index))];
+    }
+
+    private static double micros(long nanos) {
+        return Math.round(nanos / 100.0) / 10.0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.zero.sim;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 模拟参数，命令行 --name=value 覆盖，见 {@link #parse(String[])}
+ */
+public final class SimConfig {
+
+    public String packageName = "com.zero.demo";
+
+    /**
+     * 同时运行的客户端进程数
+     */
+    public int clients = 4;
+
+    /**
+     * 每一跳（请求、返回、死亡通知、广播各算一跳）的固定延迟
+     */
+    public long hopLatencyMicros = 50;
+
+    /**
+     * 每一跳额外的随机延迟 [0, jitter)
+     */
+    public long jitterMicros = 20;
+
+    /**
+     * 拉起进程（fork + bindApplication）的耗时
+     */
+    public long launchDelayMillis = 150;
+
+    /**
+     * 稳态阶段每个客户端的循环次数
+     */
+    public int iterations = 200;
+
+    /**
+     * 冷启动、握手、重连阶段各重复几轮
+     */
+    public int rounds = 5;
+
+    /**
+     * 同 CoreServiceManager.setPrestartCore
+     */
+    public boolean prestart = true;
+
+    /**
+     * core 注册表每个调用方每秒的查询数，0 不限流。稳态阶段会连续查询，默认关掉，免得结果里混进被限流的调用
+     */
+    public int registryRate = 0;
+
+    /**
+     * 重连阶段等服务恢复的上限
+     */
+    public long reconnectTimeoutMillis = 10000;
+
+    public String out = "build/reports/sim/results.json";
+
+    public static SimConfig parse(String[] args) {
+        SimConfig config = new SimConfig();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg.substring(2) : arg.substring(2, eq);
+            String value = eq < 0 ? "true" : arg.substring(eq + 1);
+            if ("package".equals(name)) {
+                config.packageName = value;
+            } else if ("clients".equals(name)) {
+                config.clients = Math.max(1, Integer.parseInt(value));
+            } else if ("hop-latency-us".equals(name)) {
+                config.hopLatencyMicros = Long.parseLong(value);
+            } else if ("jitter-us".equals(name)) {
+                config.jitterMicros = Long.parseLong(value);
+            } else if ("launch-delay-ms".equals(name)) {
+                config.launchDelayMillis = Long.parseLong(value);
+            } else if ("iterations".equals(name)) {
+                config.iterations = Integer.parseInt(value);
+            } else if ("rounds".equals(name)) {
+                config.rounds = Integer.parseInt(value);
+            } else if ("prestart".equals(name)) {
+                config.prestart = Boolean.parseBoolean(value);
+            } else if ("registry-rate".equals(name)) {
+                config.registryRate = Integer.parseInt(value);
+            } else if ("reconnect-timeout-ms".equals(name)) {
+                config.reconnectTimeoutMillis = Long.parseLong(value);
+            } else if ("out".equals(name)) {
+                config.out = value;
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+        return config;
+    }
+
+    Map<String, Object> toMap() {
+        LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("package", packageName);
+        map.put("clients", clients);
+        map.put("hopLatencyMicros", hopLatencyMicros);
+        map.put("jitterMicros", jitterMicros);
+        map.put("launchDelayMillis", launchDelayMillis);
+        map.put("iterations", iterations);
+        map.put("rounds", rounds);
+        map.put("prestart", prestart);
+        map.put("registryRate", registryRate);
+        return map;
+    }
+}
@@ -0,0 +1,305 @@
+package com.zero.sim;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 在一个 JVM 里模拟 core 进程、一个带 ProcessProvider 的 peer 进程和多个客户端进程，测：
+ * <ul>
+ * <li>coldStart：core 没有运行时，新客户端第一次 getService + 调用（含拉起 core 和握手）</li>
+ * <li>handshake：core 已在运行，新客户端第一次 getService + 调用</li>
+ * <li>lookup.cached / lookup.miss / call.core / call.peer：多个客户端并发的稳态耗时，miss 是去掉 cache 后重新向 core 查</li>
+ * <li>reconnect.core / reconnect.peer：杀掉服务所在进程后，客户端到第一次调用成功的时间（binderDied、重新握手、拉起进程）</li>
+ * </ul>
+ * coldStart 和 handshake 都包含新进程第一次加载、解释执行库代码的时间，和真实的冷进程一样。
+ * 用法：./gradlew :benchmarks:simulate -PsimArgs="--clients=8 --hop-latency-us=100"，参数见 {@link SimConfig}。
+ * 结果打印到控制台，同时以 JSON 写到 --out（默认 build/reports/sim/results.json）。
+ */
+public final class Simulation {
+
+    /**
+     * 同 CoreProvider.AUTHORITY
+     */
+    private static final String CORE_AUTHORITY = "com.zero.core.CoreProvider";
+
+    /**
+     * 同 ProcessProvider.getAuthority(":peer")
+     */
+    private static final String PEER_AUTHORITY = "com.zero.core.process.peer";
+
+    /**
+     * 同 SimGuest 里的服务
+     */
+    private static final String CORE_ECHO_ID = "EchoCore";
+
+    private static final String PEER_ECHO_ID = "EchoPeer";
+
+    private static final long PEER_LAUNCH_TIMEOUT_MILLIS = 5000;
+
+    private static final long RETRY_INTERVAL_MICROS = 500;
+
+    private final SimConfig mConfig;
+
+    private final Kernel mKernel;
+
+    private final String mCoreProcess;
+
+    private final String mPeerProcess;
+
+    private final List<String> mClientProcesses = new ArrayList<String>();
+
+    private final LinkedHashMap<String, Samples> mSamples = new LinkedHashMap<String, Samples>();
+
+    private int mProbes;
+
+    public static void main(String[] args) throws Exception {
+        Simulation simulation = new Simulation(SimConfig.parse(args));
+        simulation.run();
+        simulation.report();
+        System.exit(0); // 库在被杀进程里开的线程停不下来
+    }
+
+    public Simulation(SimConfig config) {
+        mConfig = config;
+        mKernel = new Kernel(config);
+        mCoreProcess = config.packageName + ":core";
+        mPeerProcess = config.packageName + ":peer";
+        mKernel.declareProcess(mCoreProcess, CORE_AUTHORITY);
+        mKernel.declareProcess(mPeerProcess, PEER_AUTHORITY);
+        for (int i = 0; i < config.clients; i++) {
+            String name = 0 == i ? config.packageName : config.packageName + ":client" + i;
+            mKernel.declareProcess(name);
+            mClientProcesses.add(name);
+        }
+        for (String name : new String[]{"coldStart", "handshake", "lookup.cached", "lookup.miss", "call.core",
+                "call.peer", "reconnect.core", "reconnect.peer"}) {
+            mSamples.put(name, new Samples(name));
+        }
+    }
+
+    public void run() throws Exception {
+        log("cold start");
+        for (int i = 0; i < mConfig.rounds; i++) {
+            mKernel.killAll();
+            Guest client = mKernel.startProcess(mClientProcesses.get(0));
+            timeFirstCall(client, "coldStart");
+        }
+        log("handshake");
+        for (int i = 0; i < mConfig.rounds; i++) {
+            String probe = mConfig.packageName + ":probe" + (++mProbes);
+            mKernel.declareProcess(probe);
+            timeFirstCall(mKernel.startProcess(probe), "handshake");
+            mKernel.kill(probe);
+        }
+        log("steady state");
+        startClients();
+        runClients(new ClientTask() {
+            @Override
+            public void run(Guest client, int index) throws Exception {
+                for (int i = 0; i < mConfig.iterations; i++) {
+                    long start = System.nanoTime();
+                    boolean found = client.lookup(CORE_ECHO_ID);
+                    record("lookup.cached", start, found);
+                    start = System.nanoTime();
+                    client.echo(CORE_ECHO_ID, i, 0);
+                    record("call.core", start, true);
+                    start = System.nanoTime();
+                    client.echo(PEER_ECHO_ID, i, 0);
+                    record("call.peer", start, true);
+                    client.dropCache(CORE_ECHO_ID);
+                    start = System.nanoTime();
+                    found = client.lookup(CORE_ECHO_ID);
+                    record("lookup.miss", start, found);
+                }
+            }
+        });
+        log("reconnect core");
+        for (int i = 0; i < mConfig.rounds; i++) {
+            measureReconnect(mCoreProcess, CORE_ECHO_ID, 0, "reconnect.core");
+        }
+        log("reconnect peer");
+        for (int i = 0; i < mConfig.rounds; i++) {
+            measureReconnect(mPeerProcess, PEER_ECHO_ID, PEER_LAUNCH_TIMEOUT_MILLIS, "reconnect.peer");
+        }
+    }
+
+    private void timeFirstCall(Guest client, String name) {
+        long start = System.nanoTime();
+        try {
+            client.echo(CORE_ECHO_ID, 1, 0);
+            record(name, start, true);
+        } catch (Exception e) {
+            log(name + " failed: " + e);
+            mSamples.get(name).fail();
+        }
+    }
+
+    /**
+     * 拉起所有客户端，各自先连上 core 和 peer
+     */
+    private void startClients() throws Exception {
+        for (String name : mClientProcesses) {
+            Guest client = mKernel.startProcess(name);
+            client.echo(CORE_ECHO_ID, 0, 0);
+            client.echo(PEER_ECHO_ID, 0, PEER_LAUNCH_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * 所有客户端都连上后杀掉 processName，每个客户端不停重试直到调用成功
+     */
+    private void measureReconnect(String processName, final String serviceId, final long timeoutMillis,
+                                  final String name) throws Exception {
+        startClients();
+        final long killedAt = System.nanoTime();
+        mKernel.kill(processName);
+        runClients(new ClientTask() {
+            @Override
+            public void run(Guest client, int index) throws Exception {
+                long deadline = killedAt + TimeUnit.MILLISECONDS.toNanos(mConfig.reconnectTimeoutMillis);
+                while (System.nanoTime() < deadline) {
+                    try {
+                        client.echo(serviceId, index, timeoutMillis);
+                        record(name, killedAt, true);
+                        return;
+                    } catch (Exception e) { // 对端死了、还在重连或被拉起中
+                        TimeUnit.MICROSECONDS.sleep(RETRY_INTERVAL_MICROS);
+                    }
+                }
+                mSamples.get(name).fail();
+            }
+        });
+    }
+
+    private interface ClientTask {
+        void run(Guest client, int index) throws Exception;
+    }
+
+    /**
+     * 每个客户端进程一个线程同时跑
+     */
+    private void runClients(final ClientTask task) throws Exception {
+        final CountDownLatch ready = new CountDownLatch(mClientProcesses.size());
+        final CountDownLatch go = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < mClientProcesses.size(); i++) {
+            final String name = mClientProcesses.get(i);
+            final Guest client = mKernel.getProcess(name);
+            final int index = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ready.countDown();
+                    try {
+                        go.await();
+                        task.run(client, index);
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            }, "client:" + name);
+            thread.setContextClassLoader(mKernel.getClassLoader(name));
+            threads.add(thread);
+            thread.start();
+        }
+        ready.await();
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (null != error.get()) {
+            throw new IllegalStateException("client failed", error.get());
+        }
+    }
+
+    private void record(String name, long start, boolean success) {
+        Samples samples = mSamples.get(name);
+        if (success) {
+            samples.add(System.nanoTime() - start);
+        } else {
+            samples.fail();
+        }
+    }
+
+    public void report() throws Exception {
+        List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+        System.out.println(String.format(Locale.US, "%-16s %7s %5s %10s %10s %10s %10s %10s",
+                "metric(us)", "count", "fail", "mean", "p50", "p90", "p99", "max"));
+        for (Samples samples : mSamples.values()) {
+            Map<String, Object> summary = samples.summarize();
+            results.add(summary);
+            System.out.println(String.format(Locale.US, "%-16s %7d %5d %10.1f %10.1f %10.1f %10.1f %10.1f",
+                    summary.get("name"), summary.get("count"), summary.get("failures"), summary.get("mean"),
+                    summary.get("p50"), summary.get("p90"), summary.get("p99"), summary.get("max")));
+        }
+        Map<String, Object> counters = mKernel.getCounters();
+        System.out.println("kernel: " + counters);
+        LinkedHashMap<String, Object> json = new LinkedHashMap<String, Object>();
+        json.put("config", mConfig.toMap());
+        json.put("kernel", counters);
+        json.put("results", results);
+        File out = new File(mConfig.out);
+        File dir = out.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + dir);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(out), "UTF-8");
+        try {
+            writeJson(writer, json);
+            writer.write('\n');
+        } finally {
+            writer.close();
+        }
+        System.out.println("results: " + out.getAbsolutePath());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeJson(Writer writer, Object value) throws Exception {
+        if (value instanceof Map) {
+            writer.write('{');
+            boolean first = true;
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                writeJson(writer, entry.getKey());
+                writer.write(':');
+                writeJson(writer, entry.getValue());
+            }
+            writer.write('}');
+        } else if (value instanceof List) {
+            writer.write('[');
+            boolean first = true;
+            for (Object item : (List<Object>) value) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                writeJson(writer, item);
+            }
+            writer.write(']');
+        } else if (value instanceof String) {
+            writer.write('"');
+            writer.write(((String) value).replace("\\", "\\\\").replace("\"", "\\\""));
+            writer.write('"');
+        } else {
+            writer.write(String.valueOf(value));
+        }
+    }
+
+    private static void log(String message) {
+        System.out.println("[sim] " + message);
+    }
+}
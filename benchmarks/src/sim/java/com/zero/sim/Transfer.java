@@ -0,0 +1,14 @@
+package com.zero.sim;
+
+/**
+ * 在途的 Parcel：字节原样拷贝，binder 对象换成 {@link Kernel} 的节点号（0 表示 null），
+ * 接收方再按节点号换回自己进程里的对象（本进程的 Binder 或 BinderProxy）。
+ */
+public final class Transfer {
+
+    public byte[] data;
+
+    public int[] offsets;
+
+    public int[] nodes;
+}
@@ -0,0 +1,473 @@
+package com.zero.core.compiler;
+
+import com.zero.core.annotation.CoreService;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * 处理 {@link CoreService}，生成 com.zero.core.GeneratedServiceIndex。
+ * <p>
+ * 索引只有按 id 排序的字符串数组和两个 switch（实现类、Stub.asInterface），运行时按 id 二分查找，
+ * 只有真正被用到的服务才会加载实现类，进程启动时不再逐个 install，转接口也不用反射。
+ */
+public class CoreServiceProcessor extends AbstractProcessor {
+
+    static final String INDEX_PACKAGE = "com.zero.core";
+
+    static final String INDEX_SIMPLE_NAME = "GeneratedServiceIndex";
+
+    private static final String IBINDER = "android.os.IBinder";
+
+    private Filer mFiler;
+
+    private Messager mMessager;
+
+    private Types mTypes;
+
+    /**
+     * id -> 实现类，TreeMap 保证生成的数组有序，运行时可以二分查找
+     */
+    private final TreeMap<String, Entry> mEntries = new TreeMap<String, Entry>();
+
+    private static class Entry {
+        final String id;
+        final String process;
+        final String className;
+        final int[] idempotentTransactions;
+        final int[] cacheableTransactions;
+        final boolean batchOneway;
+        final int warmUp;
+        final String[] dependencies;
+        final String[] replicas;
+        final int maxConcurrentCalls;
+        final int maxQueuedCalls;
+        final boolean dispatchThread;
+        final int callerRateLimit;
+
+        Entry(String id, String process, String className, int[] idempotentTransactions,
+              int[] cacheableTransactions, boolean batchOneway, int warmUp, String[] dependencies,
+              String[] replicas, int maxConcurrentCalls, int maxQueuedCalls, boolean dispatchThread,
+              int callerRateLimit) {
+            this.id = id;
+            this.process = process;
+            this.className = className;
+            this.idempotentTransactions = idempotentTransactions;
+            this.cacheableTransactions = cacheableTransactions;
+            this.batchOneway = batchOneway;
+            this.warmUp = warmUp;
+            this.dependencies = dependencies;
+            this.replicas = replicas;
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            this.maxQueuedCalls = maxQueuedCalls;
+            this.dispatchThread = dispatchThread;
+            this.callerRateLimit = callerRateLimit;
+        }
+    }
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        mFiler = processingEnv.getFiler();
+        mMessager = processingEnv.getMessager();
+        mTypes = processingEnv.getTypeUtils();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(CoreService.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(CoreService.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@CoreService can only be applied to classes.");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            if (!checkImplementation(type)) {
+                continue;
+            }
+            CoreService annotation = type.getAnnotation(CoreService.class);
+            String id = annotation.id();
+            String process = annotation.process();
+            if (id.length() == 0) {
+                error(type, "@CoreService id must not be empty.");
+                continue;
+            }
+            if (!CoreService.PROCESS_CORE.equals(process) && !CoreService.PROCESS_MAIN.equals(process)
+                    && !process.startsWith(":")) {
+                error(type, "@CoreService process must be PROCESS_CORE, PROCESS_MAIN or start with \":\".");
+                continue;
+            }
+            int warmUp = annotation.warmUp();
+            if (warmUp != CoreService.WARM_UP_LAZY && warmUp != CoreService.WARM_UP_EAGER
+                    && warmUp != CoreService.WARM_UP_IDLE) {
+                error(type, "@CoreService warmUp must be WARM_UP_LAZY, WARM_UP_EAGER or WARM_UP_IDLE.");
+                continue;
+            }
+            String[] replicas = annotation.replicas();
+            if (!checkReplicas(type, process, replicas)) {
+                continue;
+            }
+            if (annotation.maxConcurrentCalls() < 0 || annotation.maxQueuedCalls() < 0
+                    || annotation.callerRateLimit() < 0) {
+                error(type, "@CoreService maxConcurrentCalls, maxQueuedCalls and callerRateLimit must not be negative.");
+                continue;
+            }
+            Entry old = mEntries.get(id);
+            if (null != old) {
+                error(type, "Duplicate @CoreService id \"" + id + "\", already used by " + old.className + ".");
+                continue;
+            }
+            mEntries.put(id, new Entry(id, process, type.getQualifiedName().toString(),
+                    annotation.idempotentTransactions(), annotation.cacheableTransactions(), annotation.batchOneway(),
+                    warmUp, annotation.dependencies(), replicas, annotation.maxConcurrentCalls(),
+                    annotation.maxQueuedCalls(), annotation.dispatchThread(), annotation.callerRateLimit()));
+        }
+
+        // 其他处理器在后面的轮次里生成的 @CoreService 类也要进索引，所以等所有轮次结束再写
+        if (roundEnv.processingOver() && !mEntries.isEmpty()) {
+            try {
+                writeIndex();
+            } catch (IOException e) {
+                mMessager.printMessage(Diagnostic.Kind.ERROR, "Failed to write service index: " + e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 副本只能放在非 core 进程，且不能和 process 重复
+     */
+    private boolean checkReplicas(TypeElement type, String process, String[] replicas) {
+        if (replicas.length == 0) {
+            return true;
+        }
+        if (CoreService.PROCESS_CORE.equals(process)) {
+            error(type, "@CoreService replicas are not supported for PROCESS_CORE services.");
+            return false;
+        }
+        for (String replica : replicas) {
+            if (!CoreService.PROCESS_MAIN.equals(replica) && !replica.startsWith(":")) {
+                error(type, "@CoreService replicas must be PROCESS_MAIN or start with \":\".");
+                return false;
+            }
+            if (replica.equals(process)) {
+                error(type, "@CoreService replicas must not repeat process \"" + process + "\".");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 实现类必须是 public、非 abstract、有 public 无参构造的 IBinder（AIDL Stub 子类）
+     */
+    private boolean checkImplementation(TypeElement type) {
+        Set<Modifier> modifiers = type.getModifiers();
+        if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.ABSTRACT)) {
+            error(type, "@CoreService class must be public and not abstract.");
+            return false;
+        }
+        TypeElement binder = processingEnv.getElementUtils().getTypeElement(IBINDER);
+        if (null != binder) {
+            TypeMirror binderType = binder.asType();
+            if (!mTypes.isAssignable(type.asType(), binderType)) {
+                error(type, "@CoreService class must extend the AIDL Stub of its interface.");
+                return false;
+            }
+        }
+        boolean hasDefaultConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                hasDefaultConstructor = true;
+                break;
+            }
+        }
+        if (!hasDefaultConstructor) {
+            error(type, "@CoreService class must have a public no-arg constructor.");
+            return false;
+        }
+        return true;
+    }
+
+    private void writeIndex() throws IOException {
+        ArrayList<Entry> entries = new ArrayList<Entry>(mEntries.values());
+        JavaFileObject file = mFiler.createSourceFile(INDEX_PACKAGE + "." + INDEX_SIMPLE_NAME);
+        Writer writer = file.openWriter();
+        try {
+            StringBuilder sb = new StringBuilder();
+            sb.append("package ").append(INDEX_PACKAGE).append(";\n\n");
+            sb.append("/**\n * Generated by ").append(CoreServiceProcessor.class.getSimpleName())
+                    .append(" from @CoreService, do not edit.\n */\n");
+            sb.append("public final class ").append(INDEX_SIMPLE_NAME).append(" extends ServiceIndex {\n\n");
+
+            sb.append("    private static final String[] IDS = {\n");
+            for (Entry entry : entries) {
+                sb.append("            ").append(quote(entry.id)).append(",\n");
+            }
+            sb.append("    };\n\n");
+
+            sb.append("    private static final String[] PROCESS_SUFFIXES = {\n");
+            for (Entry entry : entries) {
+                sb.append("            ")
+                        .append(CoreService.PROCESS_CORE.equals(entry.process) ? "null" : quote(entry.process))
+                        .append(",\n");
+            }
+            sb.append("    };\n\n");
+
+            sb.append("    public ").append(INDEX_SIMPLE_NAME).append("() {\n");
+            sb.append("        super(IDS, PROCESS_SUFFIXES);\n");
+            sb.append("    }\n\n");
+
+            sb.append("    @Override\n");
+            sb.append("    protected Class<?> getServiceClass(int index) {\n");
+            sb.append("        switch (index) {\n");
+            for (int i = 0; i < entries.size(); i++) {
+                sb.append("            case ").append(i).append(":\n");
+                sb.append("                return ").append(entries.get(i).className).append(".class;\n");
+            }
+            sb.append("            default:\n");
+            sb.append("                return null;\n");
+            sb.append("        }\n");
+            sb.append("    }\n\n");
+
+            sb.append("    @Override\n");
+            sb.append("    protected android.os.IInterface asInterface(int index, android.os.IBinder binder) {\n");
+            sb.append("        switch (index) {\n");
+            for (int i = 0; i < entries.size(); i++) {
+                sb.append("            case ").append(i).append(":\n");
+                sb.append("                return ").append(entries.get(i).className).append(".asInterface(binder);\n");
+            }
+            sb.append("            default:\n");
+            sb.append("                return null;\n");
+            sb.append("        }\n");
+            sb.append("    }\n");
+            int[][] idempotent = new int[entries.size()][];
+            int[][] cacheable = new int[entries.size()][];
+            for (int i = 0; i < entries.size(); i++) {
+                idempotent[i] = entries.get(i).idempotentTransactions;
+                cacheable[i] = entries.get(i).cacheableTransactions;
+            }
+            writeTransactionCodes(sb, "getIdempotentTransactions", idempotent);
+            writeTransactionCodes(sb, "getCacheableTransactions", cacheable);
+            boolean[] batchOneway = new boolean[entries.size()];
+            boolean[] dispatchThread = new boolean[entries.size()];
+            int[] warmUp = new int[entries.size()];
+            int[] maxConcurrentCalls = new int[entries.size()];
+            int[] maxQueuedCalls = new int[entries.size()];
+            int[] callerRateLimit = new int[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                batchOneway[i] = entries.get(i).batchOneway;
+                dispatchThread[i] = entries.get(i).dispatchThread;
+                warmUp[i] = entries.get(i).warmUp;
+                maxConcurrentCalls[i] = entries.get(i).maxConcurrentCalls;
+                maxQueuedCalls[i] = entries.get(i).maxQueuedCalls;
+                callerRateLimit[i] = entries.get(i).callerRateLimit;
+            }
+            writeFlags(sb, "isOnewayBatchingEnabled", batchOneway);
+            writeFlags(sb, "hasDispatchThread", dispatchThread);
+            writeInts(sb, "getWarmUpPolicy", warmUp, CoreService.WARM_UP_LAZY);
+            writeInts(sb, "getMaxConcurrentCalls", maxConcurrentCalls, 0);
+            writeInts(sb, "getMaxQueuedCalls", maxQueuedCalls, CoreService.DEFAULT_MAX_QUEUED_CALLS);
+            writeInts(sb, "getCallerRateLimit", callerRateLimit, 0);
+            String[][] dependencies = new String[entries.size()][];
+            String[][] replicas = new String[entries.size()][];
+            for (int i = 0; i < entries.size(); i++) {
+                dependencies[i] = entries.get(i).dependencies;
+                replicas[i] = entries.get(i).replicas;
+            }
+            writeStrings(sb, "getDependencies", dependencies);
+            writeStrings(sb, "getReplicaProcessSuffixes", replicas);
+            sb.append("}\n");
+            writer.write(sb.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * 生成 getIdempotentTransactions / getCacheableTransactions 这类按 index 返回 code 数组的方法，
+     * 只有声明了的才生成 case，都没有声明就不覆写
+     *
+     * @param codesByIndex 和 entries 一一对应
+     */
+    private static void writeTransactionCodes(StringBuilder sb, String method, int[][] codesByIndex) {
+        boolean any = false;
+        for (int[] codes : codesByIndex) {
+            if (codes.length > 0) {
+                any = true;
+                break;
+            }
+        }
+        if (!any) {
+            return;
+        }
+        sb.append("\n");
+        sb.append("    @Override\n");
+        sb.append("    protected int[] ").append(method).append("(int index) {\n");
+        sb.append("        switch (index) {\n");
+        for (int i = 0; i < codesByIndex.length; i++) {
+            int[] codes = codesByIndex[i];
+            if (codes.length == 0) {
+                continue;
+            }
+            sb.append("            case ").append(i).append(":\n");
+            sb.append("                return new int[] {");
+            for (int j = 0; j < codes.length; j++) {
+                sb.append(j == 0 ? "" : ", ").append(codes[j]);
+            }
+            sb.append("};\n");
+        }
+        sb.append("            default:\n");
+        sb.append("                return null;\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+    }
+
+    /**
+     * 生成 isOnewayBatchingEnabled 这类按 index 返回 boolean 的方法，
+     * 只有为 true 的才生成 case，都是 false 就不覆写
+     */
+    private static void writeFlags(StringBuilder sb, String method, boolean[] values) {
+        boolean any = false;
+        for (boolean value : values) {
+            if (value) {
+                any = true;
+                break;
+            }
+        }
+        if (!any) {
+            return;
+        }
+        sb.append("\n");
+        sb.append("    @Override\n");
+        sb.append("    protected boolean ").append(method).append("(int index) {\n");
+        sb.append("        switch (index) {\n");
+        for (int i = 0; i < values.length; i++) {
+            if (values[i]) {
+                sb.append("            case ").append(i).append(":\n");
+            }
+        }
+        sb.append("                return true;\n");
+        sb.append("            default:\n");
+        sb.append("                return false;\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+    }
+
+    /**
+     * 生成 getWarmUpPolicy 这类按 index 返回 int 的方法，
+     * 只有不是默认值的才生成 case，都是默认值就不覆写
+     *
+     * @param defaultValue 和 ServiceIndex 里的默认实现一致
+     */
+    private static void writeInts(StringBuilder sb, String method, int[] values, int defaultValue) {
+        boolean any = false;
+        for (int value : values) {
+            if (value != defaultValue) {
+                any = true;
+                break;
+            }
+        }
+        if (!any) {
+            return;
+        }
+        sb.append("\n");
+        sb.append("    @Override\n");
+        sb.append("    protected int ").append(method).append("(int index) {\n");
+        sb.append("        switch (index) {\n");
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == defaultValue) {
+                continue;
+            }
+            sb.append("            case ").append(i).append(":\n");
+            sb.append("                return ").append(values[i]).append(";\n");
+        }
+        sb.append("            default:\n");
+        sb.append("                return ").append(defaultValue).append(";\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+    }
+
+    /**
+     * 生成 getDependencies / getReplicaProcessSuffixes 这类按 index 返回字符串数组的方法，
+     * 只有声明了的才生成 case，都没有声明就不覆写
+     */
+    private static void writeStrings(StringBuilder sb, String method, String[][] values) {
+        boolean any = false;
+        for (String[] strings : values) {
+            if (strings.length > 0) {
+                any = true;
+                break;
+            }
+        }
+        if (!any) {
+            return;
+        }
+        sb.append("\n");
+        sb.append("    @Override\n");
+        sb.append("    protected String[] ").append(method).append("(int index) {\n");
+        sb.append("        switch (index) {\n");
+        for (int i = 0; i < values.length; i++) {
+            String[] strings = values[i];
+            if (strings.length == 0) {
+                continue;
+            }
+            sb.append("            case ").append(i).append(":\n");
+            sb.append("                return new String[] {");
+            for (int j = 0; j < strings.length; j++) {
+                sb.append(j == 0 ? "" : ", ").append(quote(strings[j]));
+            }
+            sb.append("};\n");
+        }
+        sb.append("            default:\n");
+        sb.append("                return null;\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    private void error(Element element, String message) {
+        mMessager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
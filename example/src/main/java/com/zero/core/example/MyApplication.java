@@ -21,8 +21,6 @@ public class MyApplication extends Application {
         if (DEBUG) {
             Log.d(TAG, "[static init]：running in process " + AppUtil.getProcessName());
         }
-        StopPackageService.INSTALLER.install();
-        StopPackageUI.INSTALLER.install();
     }
 
     @Override
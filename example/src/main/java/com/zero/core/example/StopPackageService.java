@@ -5,13 +5,14 @@ import android.util.Log;
 
 import com.zero.core.AppEnv;
 import com.zero.core.CoreServiceManager;
-import com.zero.core.Service;
+import com.zero.core.annotation.CoreService;
 
 /**
  * 测试例子
  *
  * @author chaopei
  */
+@CoreService(id = StopPackageService.SERVICE_ID)
 public class StopPackageService extends IStopPackage.Stub {
 
     private static final boolean DEBUG = AppEnv.DEBUG;
@@ -20,15 +21,6 @@ public class StopPackageService extends IStopPackage.Stub {
 
     public static final String SERVICE_ID = "StopPackageService";
 
-    public static final Service INSTALLER = new Service(StopPackageService.class) {
-
-        @Override
-        public String getServiceId() {
-            return SERVICE_ID;
-        }
-
-    };
-
     @Override
     public void killSysNoWait() throws RemoteException {
         if (DEBUG) {
@@ -5,13 +5,14 @@ import android.os.RemoteException;
 import android.util.Log;
 
 import com.zero.core.AppEnv;
-import com.zero.core.Service;
+import com.zero.core.annotation.CoreService;
 
 /**
  * 测试例子
  *
  * @author chaopei
  */
+@CoreService(id = StopPackageUI.SERVICE_ID, process = CoreService.PROCESS_MAIN)
 public class StopPackageUI extends IStopPackage.Stub {
 
     private static final boolean DEBUG = AppEnv.DEBUG;
@@ -20,20 +21,6 @@ public class StopPackageUI extends IStopPackage.Stub {
 
     public static final String SERVICE_ID = "StopPackageUI";
 
-    public static final Service INSTALLER = new Service(StopPackageUI.class) {
-
-        @Override
-        public String getServiceId() {
-            return SERVICE_ID;
-        }
-
-        @Override
-        public String getProcessSuffix() {
-            return ""; //主进程
-        }
-
-    };
-
     @Override
     public void killSysNoWait() throws RemoteException {
         if (DEBUG) {
@@ -5,13 +5,14 @@ import android.util.Log;
 
 import com.zero.core.AppEnv;
 import com.zero.core.CoreServiceManager;
-import com.zero.core.Service;
+import com.zero.core.annotation.CoreService;
 
 /**
  * 测试例子
  *
  * @author chaopei
  */
+@CoreService(id = WhiteListService.SERVICE_ID)
 public class WhiteListService extends IWhiteListImpl.Stub {
 
     private static final boolean DEBUG = AppEnv.DEBUG;
@@ -20,15 +21,6 @@ public class WhiteListService extends IWhiteListImpl.Stub {
 
     public static final String SERVICE_ID = "WhiteListService";
 
-    public static final Service INSTALLER = new Service(WhiteListService.class) {
-
-        @Override
-        public String getServiceId() {
-            return SERVICE_ID;
-        }
-
-    };
-
     @Override
     public boolean isWhite(String pkg) throws RemoteException {
         //todo
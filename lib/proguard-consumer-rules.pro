@@ -0,0 +1,7 @@
+# 打包进 aar，使用方开启混淆时自动生效
+
+# ServiceIndex 通过 Class.forName 加载生成的索引
+-keep class com.zero.core.GeneratedServiceIndex { public <init>(); }
+
+# Service 通过 Class.newInstance 创建 @CoreService 的实现类
+-keep @com.zero.core.annotation.CoreService class * { public <init>(); }
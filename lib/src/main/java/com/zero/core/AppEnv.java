@@ -2,7 +2,9 @@ package com.zero.core;
 
 /**
  * env
+ * <p>
+ * DEBUG 只控制示例代码的 logcat 输出；库里的诊断和错误都记在 {@link CoreTrace}，不受它影响。
  */
 public class AppEnv {
-	public static final boolean DEBUG = true;
+	public static final boolean DEBUG = false;
 }
@@ -2,7 +2,6 @@ package com.zero.core;
 
 import android.app.Application;
 import android.text.TextUtils;
-import android.util.Log;
 
 import java.io.BufferedReader;
 import java.io.FileInputStream;
@@ -23,7 +22,10 @@ public class AppUtil {
 
     private static final int PROCESS_TYPE_CORE = 1;
 
-    private static int sProcessType = PROCESS_TYPE_UNKNOWN;
+    /**
+     * 预先握手的后台线程也会读
+     */
+    private static volatile int sProcessType = PROCESS_TYPE_UNKNOWN;
 
     private static String sCurProcessName;
 
@@ -57,11 +59,12 @@ public class AppUtil {
     }
 
     static void initCoreProcess(boolean isCore) {
-        if (DEBUG) {
-            Log.d(TAG, "[initCoreProcess]：running in process " + getProcessName());
+        if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+            CoreTrace.record(CoreTrace.EVENT_LAUNCH, getProcessName(), 0, 0, isCore ? "core" : "not core");
         }
         if (isCore) {
             sProcessType = PROCESS_TYPE_CORE;
+            ServiceList.resetRoutes();
         }
     }
 
@@ -75,9 +78,7 @@ public class AppUtil {
                 return line.trim();
             }
         } catch (Exception e) {
-            if (AppEnv.DEBUG) {
-                Log.e(TAG, "[getCurrentProcessName]: ", e);
-            }
+            CoreTrace.error(null, "[getCurrentProcessName]", e);
         } finally {
             if (reader != null) {
                 try {
@@ -0,0 +1,256 @@
+package com.zero.core;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 【实现进程】按调用方进程（Binder.getCallingPid）限流，防止一个出错的进程循环调用把本进程的 binder 线程池占满。
+ * <p>
+ * 每个调用方一个令牌桶，用 GCRA 实现：只记一个"理论到达时间"，CAS 更新，不加锁；
+ * 稳定速率是 rate 次/秒，空闲后最多允许连续 burst 次。正在执行的受限调用达到 {@link #PRESSURE_THRESHOLD} 时
+ * 不再允许突发，只按稳定速率放行，先挡住调用最多的进程。被限流的同步调用收到 IllegalStateException；
+ * oneway 调用内核对同一个 binder 本来就一个一个送，不限流。
+ * <p>
+ * core 进程的注册表（getCoreService 等查询）默认开启，见 {@link CoreServiceManager#setRegistryRateLimit(int, int)}；
+ * 服务的调用按 Service.getCallerRateLimit() 开启。被限流的调用方可通过 {@link CoreServiceManager#dump(PrintWriter)} 查看。
+ */
+class CallerRateLimiter {
+
+    /**
+     * 正在执行的受限调用数达到这个值（binder 线程池的一半）就算有压力
+     */
+    static final int PRESSURE_THRESHOLD = 8;
+
+    private static final int MAX_CALLERS = 64;
+
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private static final CopyOnWriteArrayList<CallerRateLimiter> LIMITERS = new CopyOnWriteArrayList<CallerRateLimiter>();
+
+    /**
+     * core 注册表的查询，默认 50 次/秒，允许启动时连续查 100 次
+     */
+    static final CallerRateLimiter REGISTRY = new CallerRateLimiter("core registry", 50, 100, new int[] {
+            ICoreServiceManager.Stub.TRANSACTION_getCoreService,
+            ICoreServiceManager.Stub.TRANSACTION_getCoreServiceByHandle,
+            ICoreServiceManager.Stub.TRANSACTION_getCoreServices,
+            ICoreServiceManager.Stub.TRANSACTION_getOtherManager,
+    });
+
+    private final String mName;
+
+    /**
+     * 受限的 code，升序；null 表示所有 AIDL 方法
+     */
+    private final int[] mCodes;
+
+    /**
+     * 两次调用的最小间隔，0 表示不限流
+     */
+    private volatile long mIntervalNanos;
+
+    /**
+     * 允许比稳定速率提前的时间，(burst - 1) * interval
+     */
+    private volatile long mToleranceNanos;
+
+    private volatile int mRate;
+
+    private volatile int mBurst;
+
+    private final AtomicInteger mInFlight = new AtomicInteger();
+
+    private final AtomicLong mShedUnderPressure = new AtomicLong();
+
+    private final ConcurrentHashMap<Integer, Caller> mCallers = new ConcurrentHashMap<Integer, Caller>();
+
+    private static final class Caller {
+
+        final int pid;
+
+        final int uid;
+
+        /**
+         * 理论到达时间（System.nanoTime），早于现在就说明桶是满的
+         */
+        final AtomicLong tat = new AtomicLong(Long.MIN_VALUE);
+
+        final AtomicLong admitted = new AtomicLong();
+
+        final AtomicLong throttled = new AtomicLong();
+
+        volatile long lastThrottled;
+
+        /**
+         * 上一次是不是被限流的，只在开始被限流时记 trace
+         */
+        volatile boolean throttling;
+
+        Caller(int pid, int uid) {
+            this.pid = pid;
+            this.uid = uid;
+        }
+    }
+
+    /**
+     * @return 服务没有开启限流返回 null
+     */
+    static CallerRateLimiter create(Service service) {
+        int rate = service.getCallerRateLimit();
+        if (rate <= 0) {
+            return null;
+        }
+        return new CallerRateLimiter(service.getServiceId(), rate, rate, null); // 允许一秒的突发
+    }
+
+    private CallerRateLimiter(String name, int rate, int burst, int[] codes) {
+        mName = name;
+        if (null != codes) {
+            codes = codes.clone();
+            Arrays.sort(codes);
+        }
+        mCodes = codes;
+        setLimit(rate, burst);
+        LIMITERS.add(this);
+    }
+
+    /**
+     * @param rate  每个调用方每秒的调用数，小于等于 0 不限流
+     * @param burst 空闲后最多连续调用的次数，至少 1
+     */
+    void setLimit(int rate, int burst) {
+        burst = Math.max(1, burst);
+        long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        mRate = rate;
+        mBurst = burst;
+        mToleranceNanos = interval * (burst - 1);
+        mIntervalNanos = interval;
+    }
+
+    boolean isLimited(int code) {
+        return 0 != mIntervalNanos && (null == mCodes || Arrays.binarySearch(mCodes, code) >= 0);
+    }
+
+    /**
+     * 放行后必须调用 {@link #exit()}
+     *
+     * @return 被限流返回 false
+     */
+    boolean tryAcquire(int pid, int uid) {
+        long now = System.nanoTime();
+        long interval = mIntervalNanos;
+        boolean pressure = mInFlight.get() >= PRESSURE_THRESHOLD;
+        long tolerance = pressure ? 0 : mToleranceNanos;
+        Caller caller = obtain(pid, uid, now);
+        for (; ; ) {
+            long tat = caller.tat.get();
+            long base = Math.max(tat, now);
+            if (base - now > tolerance) {
+                onThrottled(caller, now, pressure);
+                return false;
+            }
+            if (caller.tat.compareAndSet(tat, base + interval)) {
+                break;
+            }
+        }
+        caller.admitted.incrementAndGet();
+        caller.throttling = false;
+        mInFlight.incrementAndGet();
+        return true;
+    }
+
+    void exit() {
+        mInFlight.decrementAndGet();
+    }
+
+    String getName() {
+        return mName;
+    }
+
+    private void onThrottled(Caller caller, long now, boolean pressure) {
+        caller.throttled.incrementAndGet();
+        caller.lastThrottled = now;
+        if (pressure) {
+            mShedUnderPressure.incrementAndGet();
+        }
+        if (!caller.throttling) {
+            caller.throttling = true;
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_REJECT, mName, 0, 0,
+                        "throttled pid=" + caller.pid + " uid=" + caller.uid + (pressure ? " (pressure)" : ""));
+            }
+        }
+    }
+
+    private Caller obtain(int pid, int uid, long now) {
+        Caller caller = mCallers.get(pid);
+        if (null == caller || caller.uid != uid) { // pid 被其他应用复用了就重新计
+            if (mCallers.size() >= MAX_CALLERS) {
+                prune(now);
+            }
+            caller = new Caller(pid, uid);
+            Caller old = mCallers.putIfAbsent(pid, caller);
+            if (null != old) {
+                if (old.uid == uid) {
+                    caller = old;
+                } else {
+                    mCallers.put(pid, caller);
+                }
+            }
+        }
+        return caller;
+    }
+
+    /**
+     * 去掉很久没有调用的（大多是已经死掉的进程）
+     */
+    private void prune(long now) {
+        Iterator<Caller> it = mCallers.values().iterator();
+        while (it.hasNext()) {
+            Caller caller = it.next();
+            if (now - caller.tat.get() > IDLE_NANOS) {
+                it.remove();
+            }
+        }
+    }
+
+    static void dump(PrintWriter writer) {
+        writer.println("Rate limits:");
+        long now = System.nanoTime();
+        for (CallerRateLimiter limiter : LIMITERS) {
+            limiter.dumpLimiter(writer, now);
+        }
+    }
+
+    private void dumpLimiter(PrintWriter writer, long now) {
+        writer.println("  " + mName + ": rate=" + mRate + "/s burst=" + mBurst + " inFlight=" + mInFlight.get()
+                + " shedUnderPressure=" + mShedUnderPressure.get());
+        ArrayList<Caller> callers = new ArrayList<Caller>(mCallers.values());
+        Collections.sort(callers, new Comparator<Caller>() {
+            @Override
+            public int compare(Caller lhs, Caller rhs) {
+                long l = lhs.throttled.get();
+                long r = rhs.throttled.get();
+                return l > r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (Caller caller : callers) {
+            long throttled = caller.throttled.get();
+            if (0 == throttled) { // 只列出被限流过的
+                break;
+            }
+            writer.println("    pid=" + caller.pid + " uid=" + caller.uid + " admitted=" + caller.admitted.get()
+                    + " throttled=" + throttled + " lastThrottled="
+                    + TimeUnit.NANOSECONDS.toMillis(now - caller.lastThrottled) + "ms ago");
+        }
+    }
+}
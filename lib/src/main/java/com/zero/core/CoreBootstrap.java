@@ -0,0 +1,315 @@
+package com.zero.core;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentProviderClient;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.IBinder;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 与 core 进程握手拿 ICoreServiceManager 的几种方式，按顺序尝试，第一个拿到的为准：
+ * <ol>
+ * <li>core 进程启动时主动广播过来的 binder，不需要 IPC</li>
+ * <li>Provider call，SDK_INT&gt;=4.2</li>
+ * <li>Provider query 拿 Cursor 的 extras，SDK_INT&lt;4.2</li>
+ * </ol>
+ * 每种方式都记录调用次数和耗时，见 {@link #dump(PrintWriter)}。
+ */
+class CoreBootstrap {
+
+    static final String ACTION_CORE_STARTED = "com.zero.core.action.CORE_STARTED";
+
+    private static final String PERMISSION_SUFFIX = ".permission.CORE_BOOTSTRAP";
+
+    private static final Uri SERVICE_MANAGER_URI = Uri.parse("content://"
+            + CoreProvider.AUTHORITY + "/"
+            + CoreProvider.PATH_SERVICE_PROVIDER);
+
+    /**
+     * core 进程广播过来的 binder
+     */
+    interface Listener {
+        void onCorePushed(IBinder binder);
+    }
+
+    /**
+     * 一种握手方式
+     */
+    abstract static class Transport {
+
+        private final String mName;
+
+        final AtomicLong attempts = new AtomicLong();
+
+        final AtomicLong successes = new AtomicLong();
+
+        final AtomicLong totalNanos = new AtomicLong();
+
+        final AtomicLong maxNanos = new AtomicLong();
+
+        final AtomicLong lastNanos = new AtomicLong();
+
+        Transport(String name) {
+            mName = name;
+        }
+
+        String getName() {
+            return mName;
+        }
+
+        boolean isSupported() {
+            return true;
+        }
+
+        /**
+         * @return core 的 ICoreServiceManager binder，拿不到返回 null
+         */
+        abstract IBinder fetch(Context context) throws Exception;
+
+        void record(long nanos, boolean success) {
+            attempts.incrementAndGet();
+            if (success) {
+                successes.incrementAndGet();
+            }
+            totalNanos.addAndGet(nanos);
+            lastNanos.set(nanos);
+            long max;
+            do {
+                max = maxNanos.get();
+            } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+        }
+    }
+
+    /**
+     * core 进程启动时广播的 binder，收到后缓存在这里
+     */
+    static class PushedTransport extends Transport {
+
+        private volatile IBinder mPushed;
+
+        PushedTransport() {
+            super("pushed");
+        }
+
+        void setPushed(IBinder binder) {
+            mPushed = binder;
+        }
+
+        @Override
+        IBinder fetch(Context context) {
+            IBinder binder = mPushed;
+            if (null != binder && !binder.isBinderAlive()) { // 本地判断，不走 IPC
+                mPushed = null;
+                return null;
+            }
+            return binder;
+        }
+    }
+
+    /**
+     * ContentResolver.call() 方法拿的是 stable 的 IContentProvider，如果用于跨 app 场景，本 app 若被 forceStop 会导致依赖此 app 的应用一并被杀。<br/><br/>
+     * <b>SDK_INT&gt;=4.2</b>，可以使用 ContentResolver.acquireUnstableContentProviderClient() 获取 unstable 的IContentProvider，并使用其 call 方法（实际上 4.1 也可以使用 acquireUnstableContentProviderClient 方法，但是拿到的 ContentProviderClient 是没有 call 方法的）。
+     */
+    static class ProviderCallTransport extends Transport {
+
+        ProviderCallTransport() {
+            super("provider_call");
+        }
+
+        @Override
+        boolean isSupported() {
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1;
+        }
+
+        @Override
+        IBinder fetch(Context context) throws Exception {
+            ContentProviderClient provider = context.getContentResolver().acquireUnstableContentProviderClient(SERVICE_MANAGER_URI);
+            if (null == provider) {
+                return null;
+            }
+            try {
+                return getBinder(provider.call(CoreProvider.PATH_SERVICE_PROVIDER, null, null));
+            } finally {
+                provider.release();
+            }
+        }
+    }
+
+    /**
+     * <b>SDK_INT&lt;4.2</b>，还是使用 ContentResolver.query() 方法。
+     */
+    static class CursorTransport extends Transport {
+
+        CursorTransport() {
+            super("cursor");
+        }
+
+        /**
+         * query 拿到的是 stable 的连接，对端进程死掉会连带杀死本进程，4.2 以上只用 provider_call
+         */
+        @Override
+        boolean isSupported() {
+            return Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1;
+        }
+
+        @Override
+        IBinder fetch(Context context) throws Exception {
+            ContentResolver resolver = context.getContentResolver();
+            Cursor cursor = null;
+            try {
+                cursor = resolver.query(SERVICE_MANAGER_URI, null, null, null, null);
+                if (null != cursor) {
+                    return getBinder(cursor.getExtras());
+                }
+            } finally {
+                if (cursor != null) {
+                    try {
+                        cursor.close();
+                    } catch (Exception e) {
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final PushedTransport PUSHED = new PushedTransport();
+
+    private static final CopyOnWriteArrayList<Transport> TRANSPORTS = new CopyOnWriteArrayList<Transport>(
+            Arrays.asList(PUSHED, new ProviderCallTransport(), new CursorTransport()));
+
+    private static volatile boolean sReceiverRegistered;
+
+    /**
+     * 替换握手方式，按顺序尝试
+     */
+    static void setTransports(List<Transport> transports) {
+        TRANSPORTS.clear();
+        TRANSPORTS.addAll(transports);
+    }
+
+    /**
+     * 依次尝试各个握手方式
+     *
+     * @return core 的 ICoreServiceManager binder，都失败返回 null
+     */
+    static IBinder fetch() {
+        Context context = AppUtil.getApplication();
+        for (Transport transport : TRANSPORTS) {
+            if (!transport.isSupported()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            IBinder binder = null;
+            try {
+                binder = transport.fetch(context);
+            } catch (Exception e) {
+                CoreTrace.error(null, "[fetch] transport=" + transport.getName(), e);
+            }
+            long cost = System.nanoTime() - start;
+            transport.record(cost, null != binder);
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_HANDSHAKE, null, 0, cost, transport.getName() + (null != binder ? " ok" : " failed"));
+            }
+            if (null != binder) {
+                return binder;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 【非 core 进程】监听 core 进程启动的广播，只接收本应用（同签名）发出的
+     */
+    static void registerReceiver(Context context, final Listener listener) {
+        if (sReceiverRegistered || null == context) {
+            return;
+        }
+        sReceiverRegistered = true;
+        try {
+            context.registerReceiver(new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    IBinder binder = getBinder(intent.getExtras());
+                    if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                        CoreTrace.record(CoreTrace.EVENT_HANDSHAKE, null, 0, 0, "pushed");
+                    }
+                    if (null != binder) {
+                        PUSHED.setPushed(binder);
+                        listener.onCorePushed(binder);
+                    }
+                }
+            }, new IntentFilter(ACTION_CORE_STARTED), getPermission(context), null);
+        } catch (Exception e) {
+            sReceiverRegistered = false;
+            CoreTrace.error(null, "[registerReceiver]", e);
+        }
+    }
+
+    /**
+     * 【core 进程】启动后把 ICoreServiceManager 主动广播给已经在运行的进程
+     */
+    static void publish(Context context, IBinder core) {
+        if (null == context) {
+            return;
+        }
+        Bundle bundle = new Bundle();
+        bundle.putParcelable(CoreProvider.KEY_SERVICE_MANAGER, new ServiceParcel(core));
+        Intent intent = new Intent(ACTION_CORE_STARTED);
+        intent.setPackage(context.getPackageName());
+        intent.putExtras(bundle);
+        try {
+            context.sendBroadcast(intent, getPermission(context));
+        } catch (Exception e) {
+            CoreTrace.error(null, "[publish]", e);
+        }
+    }
+
+    static void dump(PrintWriter writer) {
+        writer.println("Bootstrap transports:");
+        for (Transport transport : TRANSPORTS) {
+            long attempts = transport.attempts.get();
+            writer.print("  ");
+            writer.print(transport.getName());
+            writer.print(transport.isSupported() ? "" : " (unsupported)");
+            writer.print(": attempts=");
+            writer.print(attempts);
+            writer.print(", successes=");
+            writer.print(transport.successes.get());
+            writer.print(", avg(us)=");
+            writer.print(attempts == 0 ? 0 : transport.totalNanos.get() / attempts / 1000);
+            writer.print(", max(us)=");
+            writer.print(transport.maxNanos.get() / 1000);
+            writer.print(", last(us)=");
+            writer.println(transport.lastNanos.get() / 1000);
+        }
+    }
+
+    private static String getPermission(Context context) {
+        return context.getPackageName() + PERMISSION_SUFFIX;
+    }
+
+    /**
+     * 取出 Provider 返回的 binder，{@link ProcessProvider} 也用同样的格式
+     */
+    static IBinder getBinder(Bundle bundle) {
+        if (null == bundle) {
+            return null;
+        }
+        bundle.setClassLoader(ServiceParcel.class.getClassLoader());
+        ServiceParcel serviceParcel = bundle.getParcelable(CoreProvider.KEY_SERVICE_MANAGER);
+        return null != serviceParcel ? serviceParcel.getBinder() : null;
+    }
+}
@@ -10,17 +10,14 @@ import android.os.Bundle;
 import android.os.IBinder;
 import android.os.RemoteException;
 import android.text.TextUtils;
-import android.util.Log;
+
+import java.util.List;
 
 /**
  * Core provider for binder transact.
  */
 public class CoreProvider extends ContentProvider {
 
-    private static final boolean DEBUG = AppEnv.DEBUG;
-
-    private static final String TAG = CoreProvider.class.getSimpleName();
-
     static final String AUTHORITY = "com.zero.core.CoreProvider";
 
     static final String PATH_SERVICE_PROVIDER = "serviceprovide";
@@ -32,6 +29,8 @@ public class CoreProvider extends ContentProvider {
     @Override
     public boolean onCreate() {
         AppUtil.initCoreProcess(true);
+        CoreBootstrap.publish(getContext(), getCoreBinder()); // 已经在运行的进程不用再走 Provider 握手
+        ServiceWarmUp.start();
         return false;
     }
 
@@ -41,12 +40,11 @@ public class CoreProvider extends ContentProvider {
 
     private ICoreServiceManager.Stub mCoreImpl;
 
+    private IBinder mCoreBinder;
+
     private MatrixCursor mCursor;
 
     static {
-        if (DEBUG) {
-            Log.d(TAG, "[static init]：running in process " + AppUtil.getProcessName());
-        }
         URI_MATCHER = new UriMatcher(UriMatcher.NO_MATCH);
 
         URI_MATCHER.addURI(AUTHORITY, PATH_SERVICE_PROVIDER, CODE_SERVICE_PROVIDER);
@@ -56,8 +54,8 @@ public class CoreProvider extends ContentProvider {
     public Bundle call(String method, String arg, Bundle extras) {
 
         if (PATH_SERVICE_PROVIDER.equals(method)) {
-            if (DEBUG) {
-                Log.d(TAG, "[call]：PATH_SERVICE_PROVIDER");
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_HANDSHAKE, null, 0, 0, "call");
             }
             return getCoreBundle();
         } else {
@@ -68,14 +66,11 @@ public class CoreProvider extends ContentProvider {
     @Override
     public Cursor query(Uri uri, String[] projection, String selection,
                         String[] selectionArgs, String sortOrder) {
-		if (DEBUG) {
-            Log.d(TAG, "[query]：uri = " + (uri == null ? "null" : uri.toString()));
-        }
         final int matchCode = URI_MATCHER.match(uri);
 
         if (matchCode == CODE_SERVICE_PROVIDER) {
-        if (DEBUG) {
-                Log.d(TAG, "[query]：CODE_SERVICE_PROVIDER");
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_HANDSHAKE, null, 0, 0, "query");
             }
             return getCoreCursor();
         }
@@ -109,13 +104,11 @@ public class CoreProvider extends ContentProvider {
 
                 @Override
                 public IBinder getCoreService(String id) throws RemoteException {
-                    if (DEBUG) {
-                        Log.d(TAG, "[getCoreBundle] --> serviceId = " + id);
+                    if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                        CoreTrace.record(CoreTrace.EVENT_LOOKUP, id, 0, 0, "core");
                     }
                     if (!AppUtil.runInCoreProcess()) {
-                        if (DEBUG) {
-                            Log.d(TAG, "[getCoreBundle] AppUtil not runInCoreProcess");
-                        }
+                        CoreTrace.error(id, "[getCoreService] not in core process", null);
                         return null;
                     }
 
@@ -128,11 +121,30 @@ public class CoreProvider extends ContentProvider {
                     }
                     Service serviceCreator = ServiceList.getService(id);
                     if (serviceCreator != null) {
-                        return serviceCreator.getService();
+                        return serviceCreator.getServiceBinder();
                     } else {
-                        if (DEBUG) {
-                            Log.d(TAG, "[getCoreBundle] serviceCreator == null");
-                        }
+                        CoreTrace.error(id, "[getCoreService] no such service", null);
+                    }
+                    return null;
+                }
+
+                /**
+                 * 同 getCoreService，句柄是注解索引里的位置，每个进程都一样
+                 */
+                @Override
+                public IBinder getCoreServiceByHandle(int handle) throws RemoteException {
+                    if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                        CoreTrace.record(CoreTrace.EVENT_LOOKUP, null, handle, 0, "core handle");
+                    }
+                    if (!AppUtil.runInCoreProcess()) {
+                        CoreTrace.error(null, "[getCoreServiceByHandle] not in core process", null);
+                        return null;
+                    }
+                    Service serviceCreator = ServiceList.getService(handle);
+                    if (serviceCreator != null) {
+                        return serviceCreator.getServiceBinder();
+                    } else {
+                        CoreTrace.error(null, "[getCoreServiceByHandle] no such handle " + handle, null);
                     }
                     return null;
                 }
@@ -140,34 +152,66 @@ public class CoreProvider extends ContentProvider {
                 @Override
                 public void installOtherManager(String processName, IBinder other) throws RemoteException {
                     ServiceList.putOtherManager(processName, other);
+                    ServiceDirectory.register(processName, other);
                 }
 
                 @Override
                 public IBinder getOtherManager(String processName) throws RemoteException {
                     IBinder manager = ServiceList.getOtherAvailableManager(processName);
                     if (null != manager) {
-                        if (DEBUG) {
-                            Log.d(TAG, "[getCoreBundle] has found OtherAvailableManager in process " + processName);
+                        if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                            CoreTrace.record(CoreTrace.EVENT_LOOKUP, processName, 0, 0, "manager found");
                         }
                         return manager;
                     }
-                    if (DEBUG) {
-                        Log.d(TAG, "[getCoreBundle] no OtherAvailableManager found in process " + processName);
+                    if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                        CoreTrace.record(CoreTrace.EVENT_LOOKUP, processName, 0, 0, "manager not found");
                     }
                     return null;
                 }
+
+                @Override
+                public List<ServiceParcel> getCoreServices(String[] ids) throws RemoteException {
+                    if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                        CoreTrace.record(CoreTrace.EVENT_LOOKUP, null, null == ids ? 0 : ids.length, 0, "batch");
+                    }
+                    if (!AppUtil.runInCoreProcess()) {
+                        CoreTrace.error(null, "[getCoreServices] not in core process", null);
+                        return null;
+                    }
+                    return ServiceList.getImplementedServices(ids);
+                }
+
+                /**
+                 * 先失效 core 进程自己的缓存，再推给其他进程
+                 */
+                @Override
+                public void publishInvalidation(String serviceId, int code, byte[] args) throws RemoteException {
+                    ResultCache.invalidate(serviceId, code, args);
+                    ServiceDirectory.invalidate(serviceId, code, args);
+                }
             };
         }
         return mCoreImpl;
     }
 
+    /**
+     * 交给其他进程的 binder，外面包一层 ServerBinder 接收 trace id，查询按调用方进程限流
+     */
+    private IBinder getCoreBinder() {
+        if (null == mCoreBinder) {
+            mCoreBinder = new ServerBinder(AUTHORITY, getCoreImpl(), null, CallerRateLimiter.REGISTRY);
+        }
+        return mCoreBinder;
+    }
+
     private Bundle getCoreBundle() {
         if (null == mCoreBundle) {
-            ICoreServiceManager.Stub coreImpl = getCoreImpl();
+            IBinder coreBinder = getCoreBinder();
 
             mCoreBundle = new Bundle();
 
-            mCoreBundle.putParcelable(CoreProvider.KEY_SERVICE_MANAGER, new ServiceParcel(coreImpl));
+            mCoreBundle.putParcelable(CoreProvider.KEY_SERVICE_MANAGER, new ServiceParcel(coreBinder));
         }
         return mCoreBundle;
     }
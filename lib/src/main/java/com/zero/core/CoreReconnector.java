@@ -0,0 +1,117 @@
+package com.zero.core;
+
+import android.os.Process;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * core 通道断开后的后台重连，指数退避 + 按进程错开的随机抖动，core 重启时各进程不会同时去打 Provider。
+ * 同一时间只有一个重连任务，连上为止。
+ */
+class CoreReconnector {
+
+    private static final long INITIAL_DELAY_MILLIS = 200;
+
+    private static final long MAX_DELAY_MILLIS = 30 * 1000;
+
+    /**
+     * 执行一次重连，连上返回 true
+     */
+    interface Connector {
+        boolean connect();
+    }
+
+    private final Connector mConnector;
+
+    /**
+     * 以 pid 做种子，不同进程的抖动不一样
+     */
+    private final Random mRandom = new Random(Process.myPid() * 31L + System.nanoTime());
+
+    private ScheduledThreadPoolExecutor mScheduler;
+
+    private ScheduledFuture<?> mPending;
+
+    private int mAttempts;
+
+    private final Runnable mTask = new Runnable() {
+        @Override
+        public void run() {
+            boolean connected = mConnector.connect();
+            synchronized (CoreReconnector.this) {
+                mPending = null;
+                if (connected) {
+                    if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                        CoreTrace.record(CoreTrace.EVENT_RECONNECT, null, mAttempts + 1, 0, "connected");
+                    }
+                    mAttempts = 0;
+                } else {
+                    mAttempts++;
+                    scheduleLocked(nextDelay());
+                }
+            }
+        }
+    };
+
+    CoreReconnector(Connector connector) {
+        mConnector = connector;
+    }
+
+    /**
+     * 通道断开时调用，已经在重连就不重复调度
+     */
+    synchronized void schedule() {
+        if (null == mPending) {
+            scheduleLocked(nextDelay());
+        }
+    }
+
+    /**
+     * 有了新的线索（例如 core 推过来了 binder），跳过剩下的退避时间立即重连
+     */
+    synchronized void scheduleNow() {
+        if (null != mPending) {
+            if (!mPending.cancel(false)) { // 已经在执行了
+                return;
+            }
+        }
+        scheduleLocked(0);
+    }
+
+    synchronized boolean isPending() {
+        return null != mPending;
+    }
+
+    private void scheduleLocked(long delay) {
+        if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+            CoreTrace.record(CoreTrace.EVENT_RECONNECT, null, mAttempts, delay * 1000000, "scheduled");
+        }
+        if (null == mScheduler) {
+            mScheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "CoreReconnect");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        mPending = mScheduler.schedule(mTask, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 退避上限内取 [base/2, base] 的随机值
+     */
+    private long nextDelay() {
+        long base = INITIAL_DELAY_MILLIS << Math.min(mAttempts, 16);
+        if (base > MAX_DELAY_MILLIS) {
+            base = MAX_DELAY_MILLIS;
+        }
+        long half = base / 2;
+        return half + (long) (mRandom.nextDouble() * (half + 1));
+    }
+}
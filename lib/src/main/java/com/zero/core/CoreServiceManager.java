@@ -1,34 +1,49 @@
 package com.zero.core;
 
-import android.content.ContentProviderClient;
-import android.content.ContentResolver;
-import android.database.Cursor;
-import android.net.Uri;
-import android.os.Build;
-import android.os.Bundle;
+import android.os.DeadObjectException;
 import android.os.IBinder;
+import android.os.Handler;
 import android.os.IInterface;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.text.TextUtils;
-import android.util.Log;
 
 import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * core class for user.
  */
 public class CoreServiceManager {
 
-    private static final boolean DEBUG = AppEnv.DEBUG;
+    private static CoreServiceManagerProxy sCoreServiceManagerProxy;
 
-    private static final String TAG = CoreServiceManager.class.getSimpleName();
+    /**
+     * 同一个服务并发 cache miss 时合并成一次 IPC
+     */
+    private static final SingleFlight<IBinder> SERVICE_LOOKUPS = new SingleFlight<IBinder>();
 
-    private static final Uri SERVICE_MANAGER_URI = Uri.parse("content://"
-            + CoreProvider.AUTHORITY + "/"
-            + CoreProvider.PATH_SERVICE_PROVIDER);
+    private static final SingleFlight<IBinder> MANAGER_LOOKUPS = new SingleFlight<IBinder>();
 
-    private static CoreServiceManagerProxy sCoreServiceManagerProxy;
+    private static volatile Executor sMainThreadExecutor;
+
+    private static volatile boolean sPrestartCore;
+
+    private static volatile long sReconnectWaitMillis = 1000;
 
     static void init() {
         /**
@@ -36,107 +51,310 @@ public class CoreServiceManager {
          */
         if (null == sCoreServiceManagerProxy) {
             sCoreServiceManagerProxy = new CoreServiceManagerProxy();
+            if (!AppUtil.runInCoreProcess()) { // core 进程自己发广播，不用听
+                CoreBootstrap.registerReceiver(AppUtil.getApplication(), sCoreServiceManagerProxy);
+            }
+            if (sPrestartCore) {
+                LookupExecutor.get().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        sCoreServiceManagerProxy.getCoreServiceManagerImpl();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * 是否在 {@link AppUtil#init} 时就在后台线程与 core 握手（core 进程没起来会被顺带拉起），默认 false，
+     * 第一次用到 core 服务时才握手。确定马上要用 core 服务的进程可以设为 true，省掉第一次调用时的握手；
+     * 用不到的进程不要打开，否则每个进程都会拉起 core。需要在 AppUtil.init 之前调用。
+     *
+     * @param prestart
+     */
+    public static void setPrestartCore(boolean prestart) {
+        sPrestartCore = prestart;
+    }
+
+    /**
+     * core 进程死掉、后台正在重连时，调用方最多等待多久，超时返回 null（服务拿不到）。默认 1000ms，&lt;=0 表示不等待直接失败。
+     *
+     * @param millis
+     */
+    public static void setReconnectWaitMillis(long millis) {
+        sReconnectWaitMillis = millis;
+    }
+
+    /**
+     * 请求或返回超过这么多字节时改走共享内存（ashmem），parcel 里只带 fd，默认 512KB。
+     * 这条路要多做 marshall、读 ashmem 和 unmarshall，比直接走 binder 慢，只是让放不进 binder 缓冲（整个进程共用约 1MB）
+     * 的数据也能发出去，不要调得太小。带 binder 或 fd 的 parcel 不受影响。
+     *
+     * @param bytes
+     */
+    public static void setLargeTransactionThreshold(int bytes) {
+        SharedMemoryChannel.setThreshold(bytes);
+    }
+
+    /**
+     * 结果缓存每个服务最多占多少字节（key + value），超了按最近最少使用淘汰，默认 64KB
+     *
+     * @param bytes
+     */
+    public static void setResultCacheMaxBytes(int bytes) {
+        ResultCache.setMaxBytes(bytes);
+    }
+
+    /**
+     * 【core 进程】调整注册表查询（getCoreService、getCoreServices、getOtherManager）按调用方进程的限流，
+     * 默认每个进程 50 次/秒、最多连续 100 次，超出的查询在调用方得到 null
+     *
+     * @param callsPerSecond 小于等于 0 关闭限流
+     * @param burst          空闲后最多连续查询的次数
+     */
+    public static void setRegistryRateLimit(int callsPerSecond, int burst) {
+        CallerRateLimiter.REGISTRY.setLimit(callsPerSecond, burst);
+    }
+
+    /**
+     * 写入失效调用的参数，写法和 AIDL 生成的 Proxy 一致（不写 interface token），例如 args.writeString(packageName)
+     */
+    public interface ArgumentsWriter {
+        void writeArguments(Parcel args);
+    }
+
+    /**
+     * 【实现方】服务状态变了，让所有进程丢掉这个服务缓存的全部结果
+     *
+     * @param serviceId
+     */
+    public static void invalidateCache(String serviceId) {
+        publishInvalidation(serviceId, ResultCache.ALL_TRANSACTIONS, null);
+    }
+
+    /**
+     * 【实现方】让所有进程丢掉某个可缓存调用的结果
+     *
+     * @param serviceId
+     * @param code      AIDL 的 transaction code
+     * @param writer    只失效这组参数的结果，null 表示这个 code 的所有结果
+     */
+    public static void invalidateCache(String serviceId, int code, ArgumentsWriter writer) {
+        byte[] args = null;
+        if (null != writer) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                writer.writeArguments(parcel);
+                args = parcel.marshall();
+            } finally {
+                parcel.recycle();
+            }
+        }
+        publishInvalidation(serviceId, code, args);
+    }
+
+    /**
+     * 在 core 进程直接推送，其他进程交给 core 推送
+     */
+    private static void publishInvalidation(String serviceId, int code, byte[] args) {
+        if (TextUtils.isEmpty(serviceId)) {
+            throw new IllegalArgumentException();
+        }
+        ResultCache.invalidate(serviceId, code, args);
+        if (AppUtil.runInCoreProcess()) {
+            ServiceDirectory.invalidate(serviceId, code, args);
+            return;
         }
+        try {
+            sCoreServiceManagerProxy.publishInvalidation(serviceId, code, args);
+        } catch (RemoteException e) {
+            CoreTrace.error(serviceId, "[invalidateCache]", e);
+        }
+    }
+
+    /**
+     * 输出握手等内部状态，可在 Service.dump / Activity.dump 里调用
+     *
+     * @param writer
+     */
+    public static void dump(PrintWriter writer) {
+        writer.println("CoreServiceManager:");
+        CoreServiceManagerProxy proxy = sCoreServiceManagerProxy;
+        writer.println("  connected=" + (null != proxy && null != proxy.mBase));
+        writer.println("  reconnecting=" + (null != proxy && proxy.mReconnector.isPending()));
+        CoreBootstrap.dump(writer);
+        TransactionMetrics.dump(writer);
+        DispatchMetrics.dump(writer);
+        CallerRateLimiter.dump(writer);
+        ResultCache.dump(writer);
+        CoreTrace.dump(writer);
     }
 
     private static class CoreServiceManagerProxy implements
-            ICoreServiceManager, IBinder.DeathRecipient {
+            ICoreServiceManager, CoreBootstrap.Listener, CoreReconnector.Connector {
 
-        private ICoreServiceManager mBase;
+        /**
+         * volatile，读路径不加锁，为 null 时才去握手或等待重连
+         */
+        private volatile ICoreServiceManager mBase;
+
+        /**
+         * 握手串行执行
+         */
+        private final Object mConnectLock = new Object();
+
+        /**
+         * 等待重连的调用方在这里 wait，连上后 notifyAll
+         */
+        private final Object mWaitLock = new Object();
+
+        private final CoreReconnector mReconnector = new CoreReconnector(this);
 
         private IOtherServiceManager.Stub mOtherServiceManagerImpl;
 
+        private IBinder mOtherServiceManagerBinder;
+
+        /**
+         * 不在构造里同步握手，见 {@link CoreServiceManager#init()}
+         */
         CoreServiceManagerProxy() {
-            synchronized (this) {
-                refreshBase();
-            }
         }
 
-        private synchronized ICoreServiceManager getCoreServiceManagerImpl() {
-            if (null == mBase) {
-                refreshBase();
+        /**
+         * 已连上直接返回；core 死掉后正在后台重连的，最多等 {@link #setReconnectWaitMillis} 毫秒；
+         * 从没连上过（冷启动）的，在当前线程握手，失败则交给后台重连
+         */
+        private ICoreServiceManager getCoreServiceManagerImpl() {
+            ICoreServiceManager base = mBase;
+            if (null != base) {
+                return base;
+            }
+            if (mReconnector.isPending()) {
+                return awaitReconnect();
+            }
+            if (!connect(true)) {
+                mReconnector.schedule();
             }
             return mBase;
         }
 
-        private void refreshBase() {
-            if (DEBUG) {
-                Log.d(TAG, "[refreshBase]");
+        private ICoreServiceManager awaitReconnect() {
+            long wait = sReconnectWaitMillis;
+            if (wait <= 0) { // fail fast
+                return mBase;
             }
-            mBase = fetchLocked();
-            if (null != mBase) {
-                try {
-                    mBase.asBinder().linkToDeath(this, 0);
-                    if (!AppUtil.runInCoreProcess()) {
-                        mBase.installOtherManager(AppUtil.getProcessName(), getOtherServiceManagerImpl());
+            synchronized (mWaitLock) {
+                long deadline = SystemClock.uptimeMillis() + wait;
+                while (null == mBase && wait > 0) {
+                    try {
+                        mWaitLock.wait(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
                     }
-                } catch (RemoteException e) {
-                    if (DEBUG) {
-                        Log.e(TAG, "[refreshBase]：RemoteException", e);
+                    wait = deadline - SystemClock.uptimeMillis();
+                }
+                return mBase;
+            }
+        }
+
+        @Override
+        public boolean connect() {
+            return connect(false);
+        }
+
+        /**
+         * 握手并在新的通道上注册一次 installOtherManager
+         *
+         * @param fromCaller 调用方线程发起的，后台已经在重连时直接放弃，交给后台
+         * @return 是否已连上
+         */
+        private boolean connect(boolean fromCaller) {
+            synchronized (mConnectLock) {
+                ICoreServiceManager current = mBase;
+                if (null != current && current.asBinder().isBinderAlive()) {
+                    return true;
+                }
+                if (fromCaller && mReconnector.isPending()) {
+                    return false;
+                }
+                if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                    CoreTrace.record(fromCaller ? CoreTrace.EVENT_HANDSHAKE : CoreTrace.EVENT_RECONNECT, null);
+                }
+                ICoreServiceManager base = fetchLocked();
+                if (null == base) {
+                    return false;
+                }
+                try {
+                    base.asBinder().linkToDeath(new BaseDeathRecipient(base), 0);
+                } catch (RemoteException e) { // 刚拿到就死了
+                    CoreTrace.error(null, "[connect]", e);
+                    return false;
+                }
+                synchronized (mWaitLock) {
+                    mBase = base;
+                    mWaitLock.notifyAll();
+                }
+                if (!AppUtil.runInCoreProcess()) {
+                    try {
+                        base.installOtherManager(AppUtil.getProcessName(), getOtherServiceManagerBinder());
+                    } catch (RemoteException e) {
+                        CoreTrace.error(null, "[connect]", e);
                     }
                 }
+                return true;
             }
         }
 
         /**
-         * 通过ServiceManagerProvider获取服务管理对象
+         * 通过 CoreBootstrap 获取服务管理对象，依次尝试 core 推过来的 binder、Provider call、Provider query
          *
          * @return
          */
         private ICoreServiceManager fetchLocked() {
-            ICoreServiceManager service = null;
+            IBinder binder = CoreBootstrap.fetch();
+            return null != binder ? ICoreServiceManager.Stub.asInterface(new TraceBinder(CoreProvider.AUTHORITY, binder)) : null;
+        }
 
-            try {
-                Bundle bundle = queryProvider(AppUtil.getApplication().getContentResolver(), SERVICE_MANAGER_URI, CoreProvider.PATH_SERVICE_PROVIDER, null, null);
-                if (null != bundle) {
-                    bundle.setClassLoader(ServiceParcel.class.getClassLoader());
-                    ServiceParcel serviceParcel = bundle.getParcelable(CoreProvider.KEY_SERVICE_MANAGER);
-                    if (null != serviceParcel) {
-                        IBinder binder = serviceParcel.getBinder();
-                        service = ICoreServiceManager.Stub.asInterface(binder);
-                    }
-                }
-            } catch (Exception e) {
-                if (DEBUG) {
-                    Log.e(TAG, "[fetchLocked]", e);
-                }
+        /**
+         * core 进程（重新）启动后推过来的 binder，当前连接不可用时跳过退避立即重连，握手会优先用这个 binder，不走 Provider
+         */
+        @Override
+        public void onCorePushed(IBinder binder) {
+            ICoreServiceManager base = mBase;
+            if (null != base && base.asBinder().isBinderAlive()) {
+                return;
             }
-            return service;
+            mReconnector.scheduleNow();
         }
 
         /**
-         * ContentResolver.call() 方法拿的是 stable 的 IContentProvider，如果用于跨 app 场景，本 app 若被 forceStop 会导致依赖此 app 的应用一并被杀。<br/><br/>
-         * <b>SDK_INT&gt;=4.2</b>，可以使用 ContentResolver.acquireUnstableContentProviderClient() 获取 unstable 的IContentProvider，并使用其 call 方法（实际上 4.1 也可以使用 acquireUnstableContentProviderClient 方法，但是拿到的 ContentProviderClient 是没有 call 方法的）。<br/><br/>
-         * <b>SDK_INT&lt;4.2</b>，还是使用 ContentResolver.query() 方法。
-         * @throws RemoteException
+         * 每个通道一个 recipient，旧通道迟到的死亡通知不会把新通道清掉
          */
-        private Bundle queryProvider(ContentResolver resolver, Uri uri, String method, String arg, Bundle extras) throws RemoteException {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-                ContentProviderClient provider = resolver.acquireUnstableContentProviderClient(uri);
-                if (null != provider) {
-                    return provider.call(method, arg, extras);
+        private class BaseDeathRecipient implements IBinder.DeathRecipient {
+
+            private final ICoreServiceManager mDeadBase;
+
+            BaseDeathRecipient(ICoreServiceManager base) {
+                mDeadBase = base;
+            }
+
+            /**
+             * 不在 binder 死亡通知线程握手，交给后台重连
+             */
+            @Override
+            public void binderDied() {
+                if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                    CoreTrace.record(CoreTrace.EVENT_DEATH, null, 0, 0, "core channel");
                 }
-            } else {
-                Cursor cursor = null;
-                try {
-                    cursor = resolver.query(SERVICE_MANAGER_URI, null, null, null, null);
-                    if (null != cursor) {
-                        return cursor.getExtras();
-                    }
-                } catch (Exception e) {
-                    if (DEBUG) {
-                        Log.e(TAG, "", e);
-                    }
-                } finally {
-                    if (cursor != null) {
-                        try {
-                            cursor.close();
-                        } catch (Exception e) {
-                        }
+                synchronized (mWaitLock) {
+                    if (mBase != mDeadBase) {
+                        return;
                     }
+                    mBase = null;
                 }
+                mReconnector.schedule();
             }
-            return null;
         }
 
         @Override
@@ -155,8 +373,46 @@ public class CoreServiceManager {
         public IBinder getCoreService(String serviceId) throws RemoteException {
             ICoreServiceManager service = getCoreServiceManagerImpl();
             if (service != null) {
-                IBinder binder = service.getCoreService(serviceId);
-                return binder;
+                try {
+                    return service.getCoreService(serviceId);
+                } catch (IllegalStateException e) { // 被 core 限流，不能当作没找到
+                    CoreTrace.error(serviceId, "[getCoreService]", e);
+                    throw new LookupThrottledException(e);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 同 {@link #getCoreService(String)}，用注解索引里的句柄查，不传 id 字符串
+         */
+        @Override
+        public IBinder getCoreServiceByHandle(int handle) throws RemoteException {
+            ICoreServiceManager service = getCoreServiceManagerImpl();
+            if (service != null) {
+                try {
+                    return service.getCoreServiceByHandle(handle);
+                } catch (IllegalStateException e) { // 被 core 限流，不能当作没找到
+                    CoreTrace.error(null, "[getCoreServiceByHandle] " + handle, e);
+                    throw new LookupThrottledException(e);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 一次 IPC 批量拿 core 服务的 binder 和 descriptor
+         */
+        @Override
+        public List<ServiceParcel> getCoreServices(String[] ids) throws RemoteException {
+            ICoreServiceManager service = getCoreServiceManagerImpl();
+            if (service != null) {
+                try {
+                    return service.getCoreServices(ids);
+                } catch (IllegalStateException e) { // 被 core 限流
+                    CoreTrace.error(null, "[getCoreServices]", e);
+                    throw new LookupThrottledException(e);
+                }
             }
             return null;
         }
@@ -173,7 +429,13 @@ public class CoreServiceManager {
         public IBinder getOtherManager(String processName) throws RemoteException {
             ICoreServiceManager service = getCoreServiceManagerImpl();
             if (service != null) {
-                IBinder binder = service.getOtherManager(processName);
+                IBinder binder;
+                try {
+                    binder = service.getOtherManager(processName);
+                } catch (IllegalStateException e) { // 被 core 限流，不能当作进程没起来
+                    CoreTrace.error(processName, "[getOtherManager]", e);
+                    throw new LookupThrottledException(e);
+                }
                 if (null != binder) { //以processName做id
                     return binder;
                 } else {
@@ -184,11 +446,21 @@ public class CoreServiceManager {
         }
 
         @Override
-        public synchronized void binderDied() {
-            if (DEBUG) {
-                Log.d(TAG, "[binderDied] service channel died, retried.");
+        public void publishInvalidation(String serviceId, int code, byte[] args) throws RemoteException {
+            ICoreServiceManager service = getCoreServiceManagerImpl();
+            if (service != null) {
+                service.publishInvalidation(serviceId, code, args);
+            }
+        }
+
+        /**
+         * 注册给 core 的 binder，每次重连用同一个
+         */
+        private IBinder getOtherServiceManagerBinder() {
+            if (null == mOtherServiceManagerBinder) {
+                mOtherServiceManagerBinder = new ServerBinder(AppUtil.getProcessName(), getOtherServiceManagerImpl());
             }
-            refreshBase();
+            return mOtherServiceManagerBinder;
         }
 
         private IOtherServiceManager.Stub getOtherServiceManagerImpl() {
@@ -203,15 +475,46 @@ public class CoreServiceManager {
 
                         Service serviceCreator = ServiceList.getService(id);
                         if (serviceCreator != null) {
-                            return serviceCreator.getService();
+                            return serviceCreator.getServiceBinder();
+                        } else {
+                            CoreTrace.error(id, "[getService] no such service", null);
+                        }
+
+                        return null;
+                    }
+
+                    @Override
+                    public List<ServiceParcel> getServices(String[] ids) throws RemoteException {
+                        return ServiceList.getImplementedServices(ids);
+                    }
+
+                    @Override
+                    public IBinder getServiceByHandle(int handle) throws RemoteException {
+                        Service serviceCreator = ServiceList.getService(handle);
+                        if (serviceCreator != null) {
+                            return serviceCreator.getServiceBinder();
                         } else {
-                            if (DEBUG) {
-                                Log.d(TAG, "[getOtherServiceManagerImpl] serviceCreator == null");
-                            }
+                            CoreTrace.error(null, "[getServiceByHandle] no such handle " + handle, null);
                         }
 
                         return null;
                     }
+
+                    /**
+                     * core 推过来的服务目录（全量或增量），binder 为 null 表示已经不存在
+                     */
+                    @Override
+                    public void onDirectoryChanged(List<ServiceParcel> entries) throws RemoteException {
+                        applyDirectory(entries);
+                    }
+
+                    /**
+                     * 实现方经 core 推过来的结果缓存失效
+                     */
+                    @Override
+                    public void invalidateCache(String serviceId, int code, byte[] args) throws RemoteException {
+                        ResultCache.invalidate(serviceId, code, args);
+                    }
                 };
             }
             return mOtherServiceManagerImpl;
@@ -219,16 +522,46 @@ public class CoreServiceManager {
     }
 
     /**
-     * 传过来的Binder对象的Wrapper，binder die 相关处理
+     * 传过来的Binder对象的Wrapper，binder die 相关处理：
+     * 死掉后第一次用到时按原来的路径（core / 其他进程的 ServiceManager）重新找一次，找到后换上新的 binder 继续用，
+     * 声明为幂等的调用遇到 DeadObjectException 会重新找到后重试一次，声明为可缓存的调用先查 {@link ResultCache}。
      *
      * @author chaopei
      */
-    private static class RemoteBinderProxy implements IBinder,
-            IBinder.DeathRecipient {
+    private static class RemoteBinderProxy implements IBinder {
 
-        private IBinder mRemote;
+        private volatile IBinder mRemote;
         private String mServiceId;
 
+        /**
+         * 排好序的幂等 transaction code，null 表示不重试
+         */
+        private final int[] mIdempotentCodes;
+
+        private final TransactionMetrics.ServiceMetrics mMetrics;
+
+        /**
+         * 是否合并 oneway 调用，见 {@link OnewayBatcher}
+         */
+        private final boolean mBatchOneway;
+
+        /**
+         * 跟着当前 remote 走，remote 换了就换一个
+         */
+        private volatile OnewayBatcher mBatcher;
+
+        /**
+         * 排好序的可缓存 transaction code，null 表示不缓存
+         */
+        private final int[] mCacheableCodes;
+
+        private final ResultCache mCache;
+
+        /**
+         * 副本所在的进程名，死掉后只在这个进程里重新找；null 表示按路由找
+         */
+        private final String mReplicaProcess;
+
         /**
          * 工厂方法，创建代理，给用户的接口都需要用此接口包装一下
          */
@@ -239,23 +572,113 @@ public class CoreServiceManager {
                 descriptor = binder.getInterfaceDescriptor();
             } catch (RemoteException e) {
             }
+            return createInterface(serviceId, binder, descriptor);
+        }
+
+        /**
+         * descriptor 已知时（例如批量接口一并传过来）用这个，省掉一次 getInterfaceDescriptor 的 IPC
+         */
+        public static IBinder createInterface(String serviceId, IBinder binder, String descriptor) {
             android.os.IInterface iin = binder.queryLocalInterface(descriptor);
             if (((iin != null) && AppUtil.runInCoreProcess())) {
                 return binder;
             }
-            return new RemoteBinderProxy(serviceId, binder);
+            return new RemoteBinderProxy(serviceId, binder, descriptor, null);
         }
 
-        private RemoteBinderProxy(String id, IBinder binder) {
-            mRemote = binder;
+        /**
+         * 复制服务的一个副本，交给 {@link ReplicatedBinderProxy}，不放进 cache
+         */
+        static RemoteBinderProxy createReplica(String serviceId, String processName, IBinder binder) {
+            String descriptor = null;
+            try {
+                descriptor = binder.getInterfaceDescriptor();
+            } catch (RemoteException e) {
+            }
+            return new RemoteBinderProxy(serviceId, binder, descriptor, processName);
+        }
+
+        private RemoteBinderProxy(String id, IBinder binder, String descriptor, String replicaProcess) {
             mServiceId = id;
+            mReplicaProcess = replicaProcess;
+            mMetrics = TransactionMetrics.obtain(id);
+            Service service = ServiceList.getService(id);
+            int[] codes = null != service ? service.getIdempotentTransactions() : null;
+            if (null != codes && codes.length > 0) {
+                codes = codes.clone();
+                Arrays.sort(codes);
+                mIdempotentCodes = codes;
+            } else {
+                mIdempotentCodes = null;
+            }
+            mBatchOneway = null != service && service.isOnewayBatchingEnabled();
+            codes = null != service && null != descriptor ? service.getCacheableTransactions() : null; // 没有 descriptor 算不出 key
+            if (null != codes && codes.length > 0) {
+                codes = codes.clone();
+                Arrays.sort(codes);
+                mCacheableCodes = codes;
+                mCache = ResultCache.obtain(id, descriptor);
+            } else {
+                mCacheableCodes = null;
+                mCache = null;
+            }
+            attach(binder);
+        }
+
+        /**
+         * 每个 binder 一个 recipient，换上新 binder 后旧 binder 迟到的死亡通知不会影响新的
+         */
+        private class RemoteDeathRecipient implements IBinder.DeathRecipient {
+
+            private final IBinder mDeadRemote;
+
+            RemoteDeathRecipient(IBinder remote) {
+                mDeadRemote = remote;
+            }
+
+            @Override
+            public void binderDied() {
+                if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                    CoreTrace.record(CoreTrace.EVENT_DEATH, mServiceId);
+                }
+                detach(mDeadRemote);
+            }
+        }
+
+        private boolean attach(IBinder binder) {
             try {
-                mRemote.linkToDeath(this, 0);
+                binder.linkToDeath(new RemoteDeathRecipient(binder), 0);
             } catch (RemoteException e) {
-                if (DEBUG) {
-                    Log.e(TAG, "[ModuleChannelWrapper constructor]：RemoteException", e);
+                CoreTrace.error(mServiceId, "[attach]", e);
+                return false;
+            }
+            mRemote = binder;
+            return true;
+        }
+
+        /**
+         * remote 死掉时清掉，已经换成别的 binder 就不动
+         */
+        private void detach(IBinder dead) {
+            synchronized (this) {
+                if (mRemote != dead) {
+                    return;
                 }
+                mRemote = null;
+            }
+            if (null != mCache) { // 对端重启后状态可能不一样了
+                mCache.invalidate(ResultCache.ALL_TRANSACTIONS, null);
             }
+            if (ServiceList.getCacheBinder(mServiceId) == this) {
+                ServiceList.removeCacheBinder(mServiceId);
+            }
+        }
+
+        /**
+         * 当前 remote 是否活着，不会触发重新查找
+         */
+        boolean isAttached() {
+            return null != mRemote;
         }
 
         private IBinder getRemoteBinder() throws RemoteException {
@@ -263,11 +686,43 @@ public class CoreServiceManager {
             if (remote != null) {
                 return remote;
             }
-            remote = sCoreServiceManagerProxy.getCoreService(mServiceId);
-            if (remote == null) {
-                throw new RemoteException();
+            synchronized (this) { // 并发调用只重新找一次
+                remote = mRemote;
+                if (null == remote) {
+                    remote = resolve();
+                    if (null == remote || !attach(remote)) {
+                        throw new DeadObjectException();
+                    }
+                    if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                        CoreTrace.record(CoreTrace.EVENT_RECONNECT, mServiceId);
+                    }
+                }
+                return remote;
+            }
+        }
+
+        /**
+         * 按原来的路径重新找：core 服务找 core，其他进程的服务找对应进程的 ServiceManager，没有对应 Service 的是进程名（ServiceManager 本身）
+         */
+        private IBinder resolve() throws RemoteException {
+            if (null != mReplicaProcess) {
+                IOtherServiceManager manager = getOtherServiceManger(mReplicaProcess);
+                return null != manager ? manager.getService(mServiceId) : null;
+            }
+            Service service = ServiceList.getService(mServiceId);
+            ServiceList.Slot slot = null != service ? ServiceList.getSlot(service.getHandle()) : null;
+            if (null == slot) {
+                return sCoreServiceManagerProxy.getOtherManager(mServiceId);
+            }
+            if (ServiceList.ROUTE_PEER != ServiceList.getRoute(slot)) {
+                return slot.indexed ? sCoreServiceManagerProxy.getCoreServiceByHandle(slot.handle)
+                        : sCoreServiceManagerProxy.getCoreService(mServiceId);
             }
-            return remote;
+            IOtherServiceManager manager = getOtherServiceManger(slot.peerProcess);
+            if (null == manager) {
+                return null;
+            }
+            return slot.indexed ? manager.getServiceByHandle(slot.handle) : manager.getService(mServiceId);
         }
 
         @Override
@@ -303,25 +758,144 @@ public class CoreServiceManager {
             return null;
         }
 
+        /**
+         * 先输出本进程对这个服务的调用统计，再交给对端 dump
+         */
         @Override
         public void dump(FileDescriptor fd, String[] args)
                 throws RemoteException {
+            dumpMetrics(fd);
             getRemoteBinder().dump(fd, args);
         }
 
         @Override
         public boolean transact(int code, Parcel data, Parcel reply, int flags)
                 throws RemoteException {
-            return getRemoteBinder().transact(code, data, reply, flags);
+            if (null != mCacheableCodes && null != reply && (flags & FLAG_ONEWAY) == 0
+                    && Arrays.binarySearch(mCacheableCodes, code) >= 0) {
+                return transactCached(code, data, reply, flags);
+            }
+            return transactTraced(code, data, reply, flags);
         }
 
-        @Override
-        public void linkToDeath(DeathRecipient recipient, int flags)
+        /**
+         * 在追加 trace id 之前算 key，命中时直接把缓存的字节还原成 reply，不走 IPC 也不分配对象
+         */
+        private boolean transactCached(int code, Parcel data, Parcel reply, int flags)
                 throws RemoteException {
-            getRemoteBinder().linkToDeath(recipient, flags);
-        }
-
-        @Override
+            ResultCache.Key key = mCache.lookupKey(code, data);
+            if (null == key) {
+                return transactTraced(code, data, reply, flags);
+            }
+            byte[] cached = mCache.get(key);
+            if (null != cached) {
+                reply.unmarshall(cached, 0, cached.length);
+                reply.setDataPosition(0);
+                if (CoreTrace.isEnabled(CoreTrace.LEVEL_VERBOSE)) {
+                    CoreTrace.record(CoreTrace.EVENT_CACHE_HIT, mServiceId, code, 0, "result");
+                }
+                return true;
+            }
+            key = key.copy(); // 等返回时线程可能处理过重入的调用，查找 key 已经被改掉了
+            int generation = mCache.getGeneration();
+            boolean result = transactTraced(code, data, reply, flags);
+            if (result) {
+                mCache.put(key, reply, generation);
+            }
+            return result;
+        }
+
+        private boolean transactTraced(int code, Parcel data, Parcel reply, int flags)
+                throws RemoteException {
+            if (!CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                return transactMeasured(code, data, reply, flags);
+            }
+            long prev = CoreTrace.begin();
+            long start = System.nanoTime();
+            try {
+                CoreTrace.writeTrailer(data, CoreTrace.currentTraceId());
+                return transactMeasured(code, data, reply, flags);
+            } finally {
+                if (CoreTrace.isEnabled(CoreTrace.LEVEL_VERBOSE)) {
+                    CoreTrace.record(CoreTrace.EVENT_TRANSACT, mServiceId, code, System.nanoTime() - start, null);
+                }
+                CoreTrace.exit(prev);
+            }
+        }
+
+        private boolean transactMeasured(int code, Parcel data, Parcel reply, int flags)
+                throws RemoteException {
+            if (!TransactionMetrics.isEnabled()) {
+                return transactInternal(code, data, reply, flags);
+            }
+            int requestBytes = data.dataSize();
+            boolean failed = true;
+            long start = System.nanoTime();
+            try {
+                boolean result = transactInternal(code, data, reply, flags);
+                failed = false;
+                return result;
+            } finally {
+                mMetrics.record(code, System.nanoTime() - start, requestBytes,
+                        null != reply ? reply.dataSize() : 0, failed);
+            }
+        }
+
+        private boolean transactInternal(int code, Parcel data, Parcel reply, int flags)
+                throws RemoteException {
+            IBinder remote = getRemoteBinder();
+            if (mBatchOneway) {
+                if ((flags & FLAG_ONEWAY) != 0 && !SharedMemoryChannel.isLarge(data)) {
+                    if (getBatcher(remote).enqueue(code, data)) {
+                        return true;
+                    }
+                } else {
+                    OnewayBatcher batcher = mBatcher;
+                    if (null != batcher) { // 同步调用前先把攒着的 oneway 发出去
+                        batcher.flush();
+                    }
+                }
+            }
+            try {
+                return SharedMemoryChannel.transact(remote, code, data, reply, flags);
+            } catch (DeadObjectException e) {
+                if (null == mIdempotentCodes || Arrays.binarySearch(mIdempotentCodes, code) < 0) {
+                    throw e;
+                }
+                if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                    CoreTrace.record(CoreTrace.EVENT_RECONNECT, mServiceId, code, 0, "retry");
+                }
+                detach(remote); // 死亡通知可能还没到
+                data.setDataPosition(0);
+                if (null != reply) {
+                    reply.setDataSize(0);
+                    reply.setDataPosition(0);
+                }
+                return SharedMemoryChannel.transact(getRemoteBinder(), code, data, reply, flags);
+            }
+        }
+
+        private OnewayBatcher getBatcher(IBinder remote) {
+            OnewayBatcher batcher = mBatcher;
+            if (null == batcher || batcher.getRemote() != remote) {
+                synchronized (this) {
+                    batcher = mBatcher;
+                    if (null == batcher || batcher.getRemote() != remote) {
+                        batcher = new OnewayBatcher(mServiceId, remote);
+                        mBatcher = batcher;
+                    }
+                }
+            }
+            return batcher;
+        }
+
+        @Override
+        public void linkToDeath(DeathRecipient recipient, int flags)
+                throws RemoteException {
+            getRemoteBinder().linkToDeath(recipient, flags);
+        }
+
+        @Override
         public boolean unlinkToDeath(DeathRecipient recipient, int flags) {
             try {
                 return getRemoteBinder().unlinkToDeath(recipient, flags);
@@ -330,22 +904,296 @@ public class CoreServiceManager {
             return false;
         }
 
+        /**
+         * 只输出本进程的调用统计，不走 IPC
+         */
+        public void dumpAsync(FileDescriptor fd, String[] args)
+                throws RemoteException {
+            dumpMetrics(fd);
+        }
+
+        /**
+         * fd 是调用方的，只 flush 不 close
+         */
+        private void dumpMetrics(FileDescriptor fd) {
+            PrintWriter writer = new PrintWriter(new FileOutputStream(fd));
+            writer.println("Transaction metrics:");
+            mMetrics.dump(writer);
+            writer.flush();
+        }
+
+    }
+
+    /**
+     * 复制服务（见 Service.getReplicaProcessSuffixes）的路由代理：每次调用交给未完成调用最少的存活副本，
+     * 一样多时轮流；副本死掉后不再选它，幂等调用遇到 DeadObjectException 换一个副本重试。
+     * 死掉或没起来的副本每隔 {@link #RETRY_INTERVAL_MILLIS} 才重新找一次（进程重新注册后 core 会推送，找的时候不走 IPC）：
+     * 还有活着的副本时在 lookup 线程池里找，调用不等；一个都没有时在调用线程上找。
+     */
+    private static class ReplicatedBinderProxy implements IBinder {
+
+        private static final long RETRY_INTERVAL_MILLIS = 1000;
+
+        private final String mServiceId;
+
+        private final Replica[] mReplicas;
+
+        private final int[] mIdempotentCodes;
+
+        /**
+         * 选副本的起点，未完成调用一样多时轮流
+         */
+        private final AtomicInteger mNext = new AtomicInteger();
+
+        private static class Replica {
+
+            final String process;
+
+            volatile RemoteBinderProxy proxy;
+
+            /**
+             * 正在这个副本上执行的调用数
+             */
+            final AtomicInteger outstanding = new AtomicInteger();
+
+            volatile long nextRetry;
+
+            /**
+             * 已经交给 lookup 线程池重新找，还没结束
+             */
+            final AtomicBoolean reconnecting = new AtomicBoolean();
+
+            Replica(String process) {
+                this.process = process;
+            }
+
+            boolean isAlive() {
+                RemoteBinderProxy p = proxy;
+                return null != p && p.isAttached();
+            }
+        }
+
+        /**
+         * @return 一个副本都找不到返回 null
+         */
+        static ReplicatedBinderProxy create(String serviceId, String[] processes) {
+            ReplicatedBinderProxy proxy = new ReplicatedBinderProxy(serviceId, processes);
+            boolean any = false;
+            for (Replica replica : proxy.mReplicas) {
+                any |= proxy.connect(replica);
+            }
+            return any ? proxy : null;
+        }
+
+        private ReplicatedBinderProxy(String serviceId, String[] processes) {
+            mServiceId = serviceId;
+            mReplicas = new Replica[processes.length];
+            for (int i = 0; i < processes.length; i++) {
+                mReplicas[i] = new Replica(processes[i]);
+            }
+            Service service = ServiceList.getService(serviceId);
+            int[] codes = null != service ? service.getIdempotentTransactions() : null;
+            if (null != codes && codes.length > 0) {
+                codes = codes.clone();
+                Arrays.sort(codes);
+                mIdempotentCodes = codes;
+            } else {
+                mIdempotentCodes = null;
+            }
+        }
+
+        /**
+         * 找到副本进程里的服务，已经有代理的让它自己重新找
+         */
+        private boolean connect(Replica replica) {
+            synchronized (replica) { // 后台和调用线程同时找时只创建一个代理
+                if (replica.isAlive()) {
+                    return true;
+                }
+                replica.nextRetry = SystemClock.elapsedRealtime() + RETRY_INTERVAL_MILLIS;
+                try {
+                    RemoteBinderProxy proxy = replica.proxy;
+                    if (null != proxy) {
+                        proxy.getRemoteBinder();
+                        return true;
+                    }
+                    IOtherServiceManager manager = getOtherServiceManger(replica.process);
+                    IBinder binder = null != manager ? manager.getService(mServiceId) : null;
+                    if (null == binder) {
+                        return false;
+                    }
+                    replica.proxy = RemoteBinderProxy.createReplica(mServiceId, replica.process, binder);
+                    if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                        CoreTrace.record(CoreTrace.EVENT_RECONNECT, mServiceId, 0, 0, "replica " + replica.process);
+                    }
+                    return true;
+                } catch (RemoteException e) {
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * 到时间的死副本交给 lookup 线程池重新找，重启过的副本重新加入轮转
+         */
+        private void reconnectLater(Replica exclude, long now) {
+            for (final Replica replica : mReplicas) {
+                if (replica == exclude || replica.isAlive() || now < replica.nextRetry
+                        || !replica.reconnecting.compareAndSet(false, true)) {
+                    continue;
+                }
+                LookupExecutor.get().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            connect(replica);
+                        } finally {
+                            replica.reconnecting.set(false);
+                        }
+                    }
+                });
+            }
+        }
+
+        /**
+         * @param exclude 刚失败的副本，不再选
+         */
+        private Replica pick(Replica exclude) throws RemoteException {
+            Replica[] replicas = mReplicas;
+            int count = replicas.length;
+            int start = (mNext.getAndIncrement() & Integer.MAX_VALUE) % count;
+            Replica best = null;
+            int bestOutstanding = Integer.MAX_VALUE;
+            long now = 0;
+            boolean due = false;
+            for (int i = 0; i < count; i++) {
+                Replica replica = replicas[(start + i) % count];
+                if (replica == exclude) {
+                    continue;
+                }
+                if (!replica.isAlive()) {
+                    if (!due) { // 只有副本死掉时才读时钟
+                        now = SystemClock.elapsedRealtime();
+                        due = now >= replica.nextRetry;
+                    }
+                    continue;
+                }
+                int outstanding = replica.outstanding.get();
+                if (outstanding < bestOutstanding) {
+                    best = replica;
+                    bestOutstanding = outstanding;
+                }
+            }
+            if (null != best) {
+                if (due) {
+                    reconnectLater(exclude, now);
+                }
+                return best;
+            }
+            now = SystemClock.elapsedRealtime();
+            for (int i = 0; i < count; i++) { // 没有活着的，到时间的重新找一次
+                Replica replica = replicas[(start + i) % count];
+                if (replica != exclude && now >= replica.nextRetry && connect(replica)) {
+                    return replica;
+                }
+            }
+            throw new DeadObjectException();
+        }
+
         @Override
-        public void binderDied() {
-            if (DEBUG) {
-                Log.d(TAG, "[binderDied]");
+        public boolean transact(int code, Parcel data, Parcel reply, int flags)
+                throws RemoteException {
+            int dataSize = data.dataSize();
+            Replica replica = pick(null);
+            try {
+                return transact(replica, code, data, reply, flags);
+            } catch (DeadObjectException e) {
+                if (null == mIdempotentCodes || Arrays.binarySearch(mIdempotentCodes, code) < 0) {
+                    throw e;
+                }
+                if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                    CoreTrace.record(CoreTrace.EVENT_RECONNECT, mServiceId, code, 0, "failover from " + replica.process);
+                }
+                data.setDataSize(dataSize); // 去掉上一次追加的 trace id
+                data.setDataPosition(0);
+                if (null != reply) {
+                    reply.setDataSize(0);
+                    reply.setDataPosition(0);
+                }
+                return transact(pick(replica), code, data, reply, flags);
             }
-            mRemote = null;
-            ServiceList.removeCacheBinder(mServiceId);
         }
 
-        public void dumpAsync(FileDescriptor fd, String[] args)
+        private static boolean transact(Replica replica, int code, Parcel data, Parcel reply, int flags)
                 throws RemoteException {
-            if (DEBUG) {
-                Log.d(TAG, "[dumpAsync]");
+            replica.outstanding.incrementAndGet();
+            try {
+                return replica.proxy.transact(code, data, reply, flags);
+            } finally {
+                replica.outstanding.decrementAndGet();
+            }
+        }
+
+        @Override
+        public String getInterfaceDescriptor() throws RemoteException {
+            return pick(null).proxy.getInterfaceDescriptor();
+        }
+
+        @Override
+        public boolean pingBinder() {
+            try {
+                return pick(null).proxy.pingBinder();
+            } catch (RemoteException e) {
+            }
+            return false;
+        }
+
+        /**
+         * 有一个副本活着就算活着
+         */
+        @Override
+        public boolean isBinderAlive() {
+            for (Replica replica : mReplicas) {
+                if (replica.isAlive()) {
+                    return true;
+                }
             }
+            return false;
+        }
+
+        @Override
+        public IInterface queryLocalInterface(String descriptor) {
+            return null;
+        }
+
+        @Override
+        public void dump(FileDescriptor fd, String[] args) throws RemoteException {
+            pick(null).proxy.dump(fd, args);
+        }
+
+        public void dumpAsync(FileDescriptor fd, String[] args) throws RemoteException {
+            pick(null).proxy.dumpAsync(fd, args);
         }
 
+        /**
+         * 只能挂在当前选中的副本上，它死掉时通知（其他副本可能还活着）
+         */
+        @Override
+        public void linkToDeath(DeathRecipient recipient, int flags) throws RemoteException {
+            pick(null).proxy.linkToDeath(recipient, flags);
+        }
+
+        @Override
+        public boolean unlinkToDeath(DeathRecipient recipient, int flags) {
+            boolean result = false;
+            for (Replica replica : mReplicas) {
+                RemoteBinderProxy proxy = replica.proxy;
+                if (null != proxy) {
+                    result |= proxy.unlinkToDeath(recipient, flags);
+                }
+            }
+            return result;
+        }
     }
 
 /////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -357,98 +1205,459 @@ public class CoreServiceManager {
      * @return
      */
     public static IInterface getService(String id) {
+        IInterface cached = ServiceList.getCacheInterface(id);
+        if (null != cached) { // 命中时不分配对象、不反射，trace 关闭时只多一次 volatile 读
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_VERBOSE)) {
+                CoreTrace.record(CoreTrace.EVENT_CACHE_HIT, id);
+            }
+            return cached;
+        }
         // 调用前一定会事先调用 Service.install 方法，每个进程都会预先执行一次。
         Service copy = ServiceList.getService(id);
         if (null == copy) {
-            if (DEBUG) {
-                Log.e(TAG, "[getService]：no such service.");
-            }
+            CoreTrace.error(id, "[getService] no such service", null);
             return null;
         }
-        if (copy.isCurrImplementProcess()) {
-            if (DEBUG) {
-                Log.d(TAG, "[getService]：Run in impl process, return directly.");
+        ServiceList.Slot slot = ServiceList.getSlot(copy.getHandle());
+        if (null == slot) { // 防御：句柄还没写到这个 Service 上时按 id 找
+            slot = ServiceList.getSlot(id);
+            if (null == slot) {
+                CoreTrace.error(id, "[getService] no handle", null);
+                return null;
             }
-            return copy.asInterface(copy.getService());
         }
+        return getService(slot);
+    }
 
+    /**
+     * 同 {@link #getService(String)}，用 {@link Service#getHandle()} 拿到的句柄查，命中时只是一次数组下标访问。
+     * 注解索引里还没加载的服务在第一次查时加载
+     *
+     * @param handle
+     * @return
+     */
+    public static IInterface getService(int handle) {
+        ServiceList.Slot slot = ServiceList.getSlot(handle);
+        if (null == slot) {
+            Service copy = ServiceList.getService(handle);
+            slot = null != copy ? ServiceList.getSlot(copy.getHandle()) : null;
+            if (null == slot) {
+                CoreTrace.error(null, "[getService] no such handle " + handle, null);
+                return null;
+            }
+        }
+        IInterface cached = slot.iin;
+        if (null != cached) {
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_VERBOSE)) {
+                CoreTrace.record(CoreTrace.EVENT_CACHE_HIT, null, handle, 0, "handle");
+            }
+            return cached;
+        }
+        return getService(slot);
+    }
 
-        IBinder binder = ServiceList.getCacheBinder(id);
+    /**
+     * cache 没命中时按路由找
+     */
+    private static IInterface getService(ServiceList.Slot slot) {
+        Service copy = slot.service;
+        String id = copy.getServiceId();
+        if (ServiceList.ROUTE_LOCAL == ServiceList.getRoute(slot)) {
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_VERBOSE)) {
+                CoreTrace.record(CoreTrace.EVENT_LOOKUP, id, 0, 0, "local");
+            }
+            IInterface local = copy.asInterface(copy.getService());
+            if (null != local) {
+                slot.iin = local;
+            }
+            return local;
+        }
+        if (!CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+            return getRemoteService(id, slot);
+        }
+        long prev = CoreTrace.begin(); // 握手、查询的 IPC 都带上同一个 trace id
+        try {
+            return getRemoteService(id, slot);
+        } finally {
+            CoreTrace.exit(prev);
+        }
+    }
+
+    /**
+     * 同 {@link #getService(String)}，服务所在的非 core 进程没有运行时通过该进程的 {@link ProcessProvider} 拉起，
+     * 进程向 core 注册后立即返回，最多等 timeoutMillis 毫秒。没有声明 ProcessProvider 的进程不会被拉起。
+     * <p>
+     * 会阻塞调用线程，不要在主线程调用。
+     *
+     * @param id
+     * @param timeoutMillis &lt;=0 时同 {@link #getService(String)}
+     * @return
+     */
+    public static IInterface getService(String id, long timeoutMillis) {
+        IInterface service = getService(id);
+        if (null != service || timeoutMillis <= 0) {
+            return service;
+        }
+        Service copy = ServiceList.getService(id);
+        ServiceList.Slot slot = null != copy ? ServiceList.getSlot(copy.getHandle()) : null;
+        if (null == slot || ServiceList.ROUTE_PEER != ServiceList.getRoute(slot)) { // core 进程 getService 时已经会被拉起
+            return null;
+        }
+        String processName = slot.peerProcess;
+        if (null != ServiceList.getCacheBinder(processName)) { // 进程在，只是服务拿不到，拉起也没用
+            return null;
+        }
+        long deadline = SystemClock.elapsedRealtime() + timeoutMillis;
+        ProcessLauncher.launch(processName, copy.getProcessSuffix());
+        if (!ProcessLauncher.await(processName, deadline)) {
+            return null;
+        }
+        return getService(id);
+    }
+
+    /**
+     * 【被拉起的进程】ProcessProvider 调用，确保已经向 core 注册
+     *
+     * @return 本进程的 ServiceManager，还没有 AppUtil.init 返回 null
+     */
+    static IBinder registerProcess() {
+        CoreServiceManagerProxy proxy = sCoreServiceManagerProxy;
+        if (null == proxy || null == proxy.getCoreServiceManagerImpl()) {
+            return null;
+        }
+        return proxy.getOtherServiceManagerBinder();
+    }
+
+    /**
+     * 拉起的进程把自己的 ServiceManager 直接返回过来了，不用等 core 推送
+     */
+    static void onProcessLaunched(String processName, IBinder manager) {
+        if (null == ServiceList.getCacheBinder(processName)) {
+            ServiceList.putCacheBinder(processName, RemoteBinderProxy.createInterface(processName, manager));
+        }
+        ServiceList.clearNegativeCache();
+        ProcessLauncher.notifyAvailable();
+    }
+
+    private static IInterface getRemoteService(String id, final ServiceList.Slot slot) {
+        IBinder binder = slot.binder;
         if (null == binder) {
-            if (DEBUG) {
-                Log.d(TAG, "[getService]：binder has no cache");
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_CACHE_MISS, id);
+            }
+            if (ServiceList.isNegativeCached(id)) {
+                if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                    CoreTrace.record(CoreTrace.EVENT_CACHE_MISS, id, 0, 0, "negative");
+                }
+                return null;
             }
             try {
-                if (!copy.isImplementCoreProcess()) { // 非core接口
-                    String processName = AppUtil.getPackageName() + copy.getProcessSuffix();
-                    if (DEBUG) {
-                        Log.d(TAG, "[getService]：not core impl, process=" + processName);
-                    }
-                    IOtherServiceManager manager = getOtherServiceManger(processName);
-                    if (null != manager) {
-                        binder = manager.getService(id);
-                    }
-                } else { //core接口
-                    if (DEBUG) {
-                        Log.d(TAG, "[getService]：core impl");
+                binder = SERVICE_LOOKUPS.execute(id, new SingleFlight.Call<IBinder>() {
+                    @Override
+                    public IBinder call() throws RemoteException {
+                        return fetchServiceBinder(slot);
                     }
-                    binder = sCoreServiceManagerProxy.getCoreService(id);
-                }
-                if (null != binder) {
-                    ServiceList.putCacheBinder(id, RemoteBinderProxy.createInterface(id, binder));
-                }
+                });
             } catch (RemoteException e) {
-                if (DEBUG) {
-                    Log.e(TAG, "[getService]：RemoteException", e);
-                }
+                CoreTrace.error(id, "[getService]", e);
             }
         } else {
-            if (DEBUG) {
-                Log.d(TAG, "[getService]：binder has cache");
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_VERBOSE)) {
+                CoreTrace.record(CoreTrace.EVENT_CACHE_HIT, id);
             }
         }
         if (null == binder) {
-            if (DEBUG) {
-                Log.e(TAG, "[getService]：binder is null");
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_LOOKUP, id, 0, 0, "not found");
             }
             return null;
         }
-        if (DEBUG) {
-            Log.d(TAG, "[getService]：binder returned");
+        IInterface iin = slot.service.asInterface(binder);
+        if (null != iin && binder == slot.binder) { // binder 已经 die 被移出 cache 的就不缓存接口了
+            slot.iin = iin;
+        }
+        return iin;
+    }
+
+    /**
+     * 异步 getService 的回调
+     */
+    public interface ServiceCallback {
+        /**
+         * @param id
+         * @param service 拿不到（包括查询抛出异常）时为 null
+         */
+        void onServiceResult(String id, IInterface service);
+    }
+
+    /**
+     * 异步获取服务，查询在内部的 lookup 线程池执行，不会阻塞调用线程（包括 Provider 握手、拉起 core 进程等耗时操作）。
+     * 已经有 cache 时不切换到 lookup 线程，直接交给 executor。
+     *
+     * @param id
+     * @param executor 回调执行的线程，例如 {@link #mainThreadExecutor()}；为 null 则在 lookup 线程直接回调
+     * @param callback
+     */
+    public static void getServiceAsync(final String id, final Executor executor, final ServiceCallback callback) {
+        IInterface cached = ServiceList.getCacheInterface(id);
+        if (null != cached) {
+            deliver(id, cached, executor, callback);
+            return;
+        }
+        LookupExecutor.get().execute(new Runnable() {
+            @Override
+            public void run() {
+                IInterface service = null;
+                try {
+                    service = getService(id);
+                } catch (RuntimeException e) { // 例如 ensureInRightProcess，回调仍然要收到 null
+                    CoreTrace.error(id, "[getServiceAsync]", e);
+                }
+                deliver(id, service, executor, callback);
+            }
+        });
+    }
+
+    /**
+     * 异步获取服务，返回 Future，查询在内部的 lookup 线程池执行
+     *
+     * @param id
+     * @return
+     */
+    public static Future<IInterface> getServiceAsync(final String id) {
+        FutureTask<IInterface> task = new FutureTask<IInterface>(new Callable<IInterface>() {
+            @Override
+            public IInterface call() throws Exception {
+                return getService(id);
+            }
+        });
+        if (null != ServiceList.getCacheInterface(id)) {
+            task.run(); // 有 cache，直接完成
+        } else {
+            LookupExecutor.get().execute(task);
+        }
+        return task;
+    }
+
+    /**
+     * 在主线程执行的 Executor，方便 getServiceAsync 回调到 UI 线程
+     */
+    public static Executor mainThreadExecutor() {
+        Executor executor = sMainThreadExecutor;
+        if (null == executor) {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            executor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    handler.post(command);
+                }
+            };
+            sMainThreadExecutor = executor;
         }
-        return ServiceList.getInterface(id, binder);
+        return executor;
     }
 
-    public static IOtherServiceManager getOtherServiceManger(String processName) {
+    private static void deliver(final String id, final IInterface service, Executor executor, final ServiceCallback callback) {
+        if (null == callback) {
+            return;
+        }
+        if (null == executor) {
+            callback.onServiceResult(id, service);
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onServiceResult(id, service);
+            }
+        });
+    }
+
+    /**
+     * 真正走 IPC 拿服务 binder，同一个 id 同时只会有一个线程执行到这里（见 SERVICE_LOOKUPS）
+     */
+    private static IBinder fetchServiceBinder(ServiceList.Slot slot) throws RemoteException {
+        String id = slot.service.getServiceId();
+        IBinder binder = slot.binder;
+        if (null != binder) { // 上一轮查询刚刚放进 cache
+            return binder;
+        }
+        int route = ServiceList.getRoute(slot);
+        if (ServiceList.ROUTE_REPLICATED == route) { // 路由代理自己处理副本死亡，一直留在 cache 里
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_LOOKUP, id, slot.replicaProcesses.length, 0, "replicated");
+            }
+            binder = ReplicatedBinderProxy.create(id, slot.replicaProcesses);
+            if (null != binder) {
+                slot.binder = binder;
+            }
+            return binder;
+        }
+        if (ServiceList.ROUTE_PEER == route) { // 非core接口
+            String processName = slot.peerProcess;
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_LOOKUP, id, 0, 0, processName);
+            }
+            IOtherServiceManager manager = getOtherServiceManger(processName);
+            if (null != manager) {
+                binder = slot.indexed ? manager.getServiceByHandle(slot.handle) : manager.getService(id);
+                if (null == binder) {
+                    ServiceList.putNegativeCache(id);
+                }
+            }
+        } else { //core接口
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_LOOKUP, id, 0, 0, "core");
+            }
+            binder = slot.indexed ? sCoreServiceManagerProxy.getCoreServiceByHandle(slot.handle)
+                    : sCoreServiceManagerProxy.getCoreService(id);
+        }
+        if (null != binder) {
+            binder = RemoteBinderProxy.createInterface(id, binder);
+            slot.binder = binder;
+        }
+        return binder;
+    }
+
+    /**
+     * 批量预取服务 binder 到 cache，core 服务一次 IPC 全部拿到，其他进程的服务按进程各一次 IPC，
+     * 适合进程启动时一次性准备好后面要用的服务
+     *
+     * @param ids
+     */
+    public static void prefetch(String... ids) {
+        if (null == ids || ids.length == 0) {
+            return;
+        }
+        ArrayList<String> coreIds = new ArrayList<String>();
+        HashMap<String, ArrayList<String>> otherIds = new HashMap<String, ArrayList<String>>();
+        for (String id : ids) {
+            Service copy = ServiceList.getService(id);
+            ServiceList.Slot slot = null != copy ? ServiceList.getSlot(copy.getHandle()) : null;
+            if (null == slot || null != slot.binder) {
+                continue;
+            }
+            int route = ServiceList.getRoute(slot);
+            if (ServiceList.ROUTE_CORE == route) {
+                coreIds.add(id);
+            } else if (ServiceList.ROUTE_PEER == route) {
+                String processName = slot.peerProcess;
+                ArrayList<String> list = otherIds.get(processName);
+                if (null == list) {
+                    list = new ArrayList<String>();
+                    otherIds.put(processName, list);
+                }
+                list.add(id);
+            }
+        }
+        if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+            CoreTrace.record(CoreTrace.EVENT_LOOKUP, null, 0, 0, "prefetch core=" + coreIds.size() + ", other processes=" + otherIds.size());
+        }
+        if (!coreIds.isEmpty()) {
+            try {
+                putCacheBinders(sCoreServiceManagerProxy.getCoreServices(coreIds.toArray(new String[coreIds.size()])));
+            } catch (RemoteException e) {
+                CoreTrace.error(null, "[prefetch]", e);
+            }
+        }
+        for (Map.Entry<String, ArrayList<String>> entry : otherIds.entrySet()) {
+            IOtherServiceManager manager = getOtherServiceManger(entry.getKey());
+            if (null == manager) {
+                continue;
+            }
+            ArrayList<String> list = entry.getValue();
+            try {
+                putCacheBinders(manager.getServices(list.toArray(new String[list.size()])));
+            } catch (RemoteException e) {
+                CoreTrace.error(entry.getKey(), "[prefetch]", e);
+            }
+        }
+    }
+
+    private static void applyDirectory(List<ServiceParcel> entries) {
+        if (null == entries) {
+            return;
+        }
+        for (ServiceParcel entry : entries) {
+            String id = entry.getServiceId();
+            if (null == id) {
+                continue;
+            }
+            if (null == entry.getBinder()) {
+                if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                    CoreTrace.record(CoreTrace.EVENT_DIRECTORY, id, 0, 0, "removed");
+                }
+                ServiceList.removeCacheBinder(id);
+            } else {
+                ServiceList.clearNegativeCache(); // 新进程注册或新服务可用，之前查不到的都要重新查
+                if (null == ServiceList.getCacheBinder(id)) { // 已有的 cache 是活的（死了会被移除），不用替换
+                    if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                        CoreTrace.record(CoreTrace.EVENT_DIRECTORY, id, 0, 0, "added");
+                    }
+                    ServiceList.putCacheBinder(id, RemoteBinderProxy.createInterface(id, entry.getBinder(), entry.getDescriptor()));
+                }
+                ProcessLauncher.notifyAvailable(); // 可能有 getService 在等这个进程
+            }
+        }
+    }
+
+    private static void putCacheBinders(List<ServiceParcel> parcels) {
+        if (null == parcels) {
+            return;
+        }
+        for (ServiceParcel parcel : parcels) {
+            if (null == parcel || null == parcel.getBinder()) {
+                continue;
+            }
+            String id = parcel.getServiceId();
+            ServiceList.putCacheBinder(id, RemoteBinderProxy.createInterface(id, parcel.getBinder(), parcel.getDescriptor()));
+        }
+    }
+
+    public static IOtherServiceManager getOtherServiceManger(final String processName) {
         IBinder binder = ServiceList.getCacheBinder(processName);
         if (null == binder) {
-            if (DEBUG) {
-                Log.d(TAG, "[getOtherServiceManger]：binder has no cache");
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_CACHE_MISS, processName);
             }
-            try {
-                binder = sCoreServiceManagerProxy.getOtherManager(processName);
-                if (null != binder) {
-                    ServiceList.putCacheBinder(processName, RemoteBinderProxy.createInterface(processName, binder));
+            if (ServiceList.isNegativeCached(processName)) { // 进程没起来，短时间内不再去 core 查
+                if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                    CoreTrace.record(CoreTrace.EVENT_CACHE_MISS, processName, 0, 0, "negative");
                 }
+                return null;
+            }
+            try {
+                binder = MANAGER_LOOKUPS.execute(processName, new SingleFlight.Call<IBinder>() {
+                    @Override
+                    public IBinder call() throws RemoteException {
+                        IBinder manager = ServiceList.getCacheBinder(processName);
+                        if (null != manager) {
+                            return manager;
+                        }
+                        manager = sCoreServiceManagerProxy.getOtherManager(processName); // 被限流时抛出，不写负缓存
+                        if (null != manager) {
+                            manager = RemoteBinderProxy.createInterface(processName, manager);
+                            ServiceList.putCacheBinder(processName, manager);
+                        } else {
+                            ServiceList.putNegativeCache(processName);
+                        }
+                        return manager;
+                    }
+                });
             } catch (RemoteException e) {
-                if (DEBUG) {
-                    Log.e(TAG, "[getOtherServiceManger]：RemoteException", e);
-                }
+                CoreTrace.error(processName, "[getOtherServiceManger]", e);
             }
         } else {
-            if (DEBUG) {
-                Log.d(TAG, "[getOtherServiceManger]：binder has cache");
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_VERBOSE)) {
+                CoreTrace.record(CoreTrace.EVENT_CACHE_HIT, processName);
             }
         }
         if (null == binder) {
-            if (DEBUG) {
-                Log.e(TAG, "[getOtherServiceManger]：binder is null");
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_LOOKUP, processName, 0, 0, "not found");
             }
             return null;
         }
-        if (DEBUG) {
-            Log.d(TAG, "[getOtherServiceManger]：binder returned");
-        }
         return IOtherServiceManager.Stub.asInterface(binder);
     }
 
@@ -0,0 +1,281 @@
+package com.zero.core;
+
+import android.os.Parcel;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 运行时可开关的 trace，取代到处 Log.d：事件写进进程内的无锁环形缓冲，dump 时输出。
+ * <p>
+ * 开启（{@link #LEVEL_INFO} 及以上）后，跨进程调用会在 parcel 末尾带上 trace id，
+ * 对端的 {@link ServerBinder} 取出后作为当前线程的 trace id，对端再发起的调用沿用同一个 id，
+ * 把各进程 dump 出来按 trace id 过滤就能串起一次请求（客户端 -> CoreProvider -> 实现进程）。
+ * <p>
+ * 关闭时每个埋点只有一次 volatile 读。
+ */
+public class CoreTrace {
+
+    private static final String TAG = "CoreTrace";
+
+    public static final int LEVEL_OFF = 0;
+
+    public static final int LEVEL_ERROR = 1;
+
+    /**
+     * 查询、握手、死亡、重连等，并开始跨进程传递 trace id
+     */
+    public static final int LEVEL_INFO = 2;
+
+    /**
+     * 再加上 cache 命中和每一次 transact
+     */
+    public static final int LEVEL_VERBOSE = 3;
+
+    public static final int EVENT_LOOKUP = 1;
+    public static final int EVENT_CACHE_HIT = 2;
+    public static final int EVENT_CACHE_MISS = 3;
+    public static final int EVENT_HANDSHAKE = 4;
+    public static final int EVENT_TRANSACT = 5;
+    public static final int EVENT_TRANSACT_IN = 6;
+    public static final int EVENT_DEATH = 7;
+    public static final int EVENT_RECONNECT = 8;
+    public static final int EVENT_DIRECTORY = 9;
+    public static final int EVENT_ERROR = 10;
+    public static final int EVENT_INVALIDATE = 11;
+    public static final int EVENT_WARM_UP = 12;
+    public static final int EVENT_LAUNCH = 13;
+    public static final int EVENT_REJECT = 14;
+
+    private static final String[] EVENT_NAMES = {
+            "?", "lookup", "cache_hit", "cache_miss", "handshake", "transact", "transact_in",
+            "death", "reconnect", "directory", "error", "invalidate", "warm_up", "launch", "reject"
+    };
+
+    private static final int CAPACITY = 512; // 2 的幂
+
+    /**
+     * parcel 末尾的 trace 标记，后面跟 8 字节 trace id
+     */
+    private static final long TRAILER_MAGIC = 0x5A43535452414345L;
+
+    private static final int TRAILER_SIZE = 16;
+
+    private static volatile int sLevel = LEVEL_ERROR;
+
+    private static volatile boolean sLogcat;
+
+    private static final AtomicReferenceArray<Event> EVENTS = new AtomicReferenceArray<Event>(CAPACITY);
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private static final AtomicInteger TRACE_IDS = new AtomicInteger();
+
+    /**
+     * 当前线程的 trace id，long[1] 避免装箱
+     */
+    private static final ThreadLocal<long[]> CURRENT = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    /**
+     * 一条 trace 事件
+     */
+    public static final class Event {
+
+        public final long sequence;
+        public final long uptimeNanos;
+        public final int pid;
+        public final long tid;
+        public final long traceId;
+        public final int type;
+        public final String serviceId;
+        /**
+         * 依事件而定：transact 是 code
+         */
+        public final long arg;
+        public final long costNanos;
+        public final String message;
+
+        Event(long sequence, long traceId, int type, String serviceId, long arg, long costNanos, String message) {
+            this.sequence = sequence;
+            this.uptimeNanos = System.nanoTime();
+            this.pid = Process.myPid();
+            this.tid = Thread.currentThread().getId();
+            this.traceId = traceId;
+            this.type = type;
+            this.serviceId = serviceId;
+            this.arg = arg;
+            this.costNanos = costNanos;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append('#').append(sequence)
+                    .append(" t=").append(uptimeNanos / 1000000)
+                    .append(" pid=").append(pid)
+                    .append(" tid=").append(tid)
+                    .append(" trace=").append(Long.toHexString(traceId))
+                    .append(' ').append(type < EVENT_NAMES.length ? EVENT_NAMES[type] : String.valueOf(type));
+            if (null != serviceId) {
+                sb.append(" id=").append(serviceId);
+            }
+            if (0 != arg) {
+                sb.append(" arg=").append(arg);
+            }
+            if (0 != costNanos) {
+                sb.append(" cost(us)=").append(costNanos / 1000);
+            }
+            if (null != message) {
+                sb.append(' ').append(message);
+            }
+            return sb.toString();
+        }
+    }
+
+    public static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    public static int getLevel() {
+        return sLevel;
+    }
+
+    /**
+     * 事件同时输出到 logcat，开发时用
+     */
+    public static void setLogcatEnabled(boolean enabled) {
+        sLogcat = enabled;
+    }
+
+    public static boolean isEnabled(int level) {
+        return level <= sLevel;
+    }
+
+    public static void record(int type, String serviceId) {
+        record(type, serviceId, 0, 0, null);
+    }
+
+    public static void record(int type, String serviceId, long arg, long costNanos, String message) {
+        Event event = new Event(SEQUENCE.getAndIncrement(), currentTraceId(), type, serviceId, arg, costNanos, message);
+        EVENTS.set((int) (event.sequence & (CAPACITY - 1)), event);
+        if (sLogcat) {
+            Log.d(TAG, event.toString());
+        }
+    }
+
+    public static void error(String serviceId, String message, Throwable e) {
+        if (isEnabled(LEVEL_ERROR)) {
+            record(EVENT_ERROR, serviceId, 0, 0, null == e ? message : message + ": " + e);
+        }
+    }
+
+    /**
+     * @return 缓冲里还在的事件，按先后排序
+     */
+    public static List<Event> getEvents() {
+        ArrayList<Event> result = new ArrayList<Event>(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            Event event = EVENTS.get(i);
+            if (null != event) {
+                result.add(event);
+            }
+        }
+        Collections.sort(result, new Comparator<Event>() {
+            @Override
+            public int compare(Event lhs, Event rhs) {
+                return lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1);
+            }
+        });
+        return result;
+    }
+
+    public static void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            EVENTS.set(i, null);
+        }
+    }
+
+    public static void dump(PrintWriter writer) {
+        writer.println("Trace (level=" + sLevel + "):");
+        for (Event event : getEvents()) {
+            writer.print("  ");
+            writer.println(event.toString());
+        }
+    }
+
+    /**
+     * @return 当前线程的 trace id，没有返回 0
+     */
+    public static long currentTraceId() {
+        return CURRENT.get()[0];
+    }
+
+    /**
+     * 当前线程没有 trace id 时新开一个：高 32 位是 pid，低 32 位是进程内递增序号
+     *
+     * @return 之前的 trace id，交给 {@link #exit(long)} 恢复
+     */
+    static long begin() {
+        long[] current = CURRENT.get();
+        long prev = current[0];
+        if (0 == prev) {
+            current[0] = ((long) Process.myPid() << 32) | (TRACE_IDS.incrementAndGet() & 0xffffffffL);
+        }
+        return prev;
+    }
+
+    static long enter(long traceId) {
+        long[] current = CURRENT.get();
+        long prev = current[0];
+        current[0] = traceId;
+        return prev;
+    }
+
+    static void exit(long prev) {
+        CURRENT.get()[0] = prev;
+    }
+
+    /**
+     * 【调用方】在 parcel 末尾追加当前 trace id，对端没有 ServerBinder 时 Stub 也会忽略多出来的数据
+     */
+    static void writeTrailer(Parcel data, long traceId) {
+        data.setDataPosition(data.dataSize());
+        data.writeLong(TRAILER_MAGIC);
+        data.writeLong(traceId);
+    }
+
+    /**
+     * 【实现方】取出并去掉 parcel 末尾的 trace id
+     *
+     * @return 没有返回 0
+     */
+    static long readTrailer(Parcel data) {
+        int size = data.dataSize();
+        if (size < TRAILER_SIZE) {
+            return 0;
+        }
+        int position = data.dataPosition();
+        data.setDataPosition(size - TRAILER_SIZE);
+        long traceId = 0;
+        if (data.readLong() == TRAILER_MAGIC) {
+            traceId = data.readLong();
+            data.setDataSize(size - TRAILER_SIZE);
+        }
+        data.setDataPosition(position);
+        return traceId;
+    }
+}
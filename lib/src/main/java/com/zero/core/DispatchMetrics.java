@@ -0,0 +1,175 @@
+package com.zero.core;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 服务端调度（见 ServerDispatcher）的统计，按服务 id 记录执行、排队、拒绝的次数，排队深度和等待时间。
+ * 只有限制了并发或指定了线程的服务才有。
+ * <p>
+ * 可通过 {@link CoreServiceManager#dump(PrintWriter)} 输出。
+ */
+public final class DispatchMetrics {
+
+    private static final ConcurrentHashMap<String, DispatchMetrics> SERVICES = new ConcurrentHashMap<String, DispatchMetrics>();
+
+    /**
+     * @param id
+     * @return 服务没有调度层或还没有创建返回 null
+     */
+    public static DispatchMetrics getDispatchMetrics(String id) {
+        return SERVICES.get(id);
+    }
+
+    public static List<DispatchMetrics> getAllDispatchMetrics() {
+        ArrayList<DispatchMetrics> result = new ArrayList<DispatchMetrics>(SERVICES.values());
+        Collections.sort(result, new Comparator<DispatchMetrics>() {
+            @Override
+            public int compare(DispatchMetrics lhs, DispatchMetrics rhs) {
+                return lhs.getServiceId().compareTo(rhs.getServiceId());
+            }
+        });
+        return result;
+    }
+
+    static DispatchMetrics obtain(String id) {
+        DispatchMetrics metrics = SERVICES.get(id);
+        if (null == metrics) {
+            metrics = new DispatchMetrics(id);
+            DispatchMetrics old = SERVICES.putIfAbsent(id, metrics);
+            if (null != old) {
+                metrics = old;
+            }
+        }
+        return metrics;
+    }
+
+    public static void dump(PrintWriter writer) {
+        writer.println("Dispatch metrics:");
+        for (DispatchMetrics metrics : getAllDispatchMetrics()) {
+            metrics.dumpService(writer);
+        }
+    }
+
+    private final String mServiceId;
+
+    private final AtomicLong mDispatched = new AtomicLong();
+
+    private final AtomicLong mQueued = new AtomicLong();
+
+    private final AtomicLong mRejected = new AtomicLong();
+
+    private final AtomicLong mTotalWaitNanos = new AtomicLong();
+
+    private final AtomicLong mMaxWaitNanos = new AtomicLong();
+
+    private final AtomicInteger mQueueDepth = new AtomicInteger();
+
+    private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+
+    private DispatchMetrics(String id) {
+        mServiceId = id;
+    }
+
+    void recordDispatched(long waitNanos) {
+        mDispatched.incrementAndGet();
+        mTotalWaitNanos.addAndGet(waitNanos);
+        long current;
+        do {
+            current = mMaxWaitNanos.get();
+        } while (waitNanos > current && !mMaxWaitNanos.compareAndSet(current, waitNanos));
+    }
+
+    void recordRejected() {
+        mRejected.incrementAndGet();
+    }
+
+    /**
+     * @param depth 加入后的排队数
+     */
+    void onQueued(int depth) {
+        mQueued.incrementAndGet();
+        mQueueDepth.incrementAndGet();
+        int current;
+        do {
+            current = mMaxQueueDepth.get();
+        } while (depth > current && !mMaxQueueDepth.compareAndSet(current, depth));
+    }
+
+    void onDequeued() {
+        mQueueDepth.decrementAndGet();
+    }
+
+    public String getServiceId() {
+        return mServiceId;
+    }
+
+    /**
+     * @return 拿到许可执行的调用数，包括排过队的
+     */
+    public long getDispatched() {
+        return mDispatched.get();
+    }
+
+    /**
+     * @return 排过队的调用数
+     */
+    public long getQueued() {
+        return mQueued.get();
+    }
+
+    /**
+     * @return 排队已满被拒绝的调用数
+     */
+    public long getRejected() {
+        return mRejected.get();
+    }
+
+    /**
+     * @return 所有执行过的调用等许可的总时间
+     */
+    public long getTotalWaitNanos() {
+        return mTotalWaitNanos.get();
+    }
+
+    public long getMaxWaitNanos() {
+        return mMaxWaitNanos.get();
+    }
+
+    /**
+     * @return 当前排队数
+     */
+    public int getQueueDepth() {
+        return mQueueDepth.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return mMaxQueueDepth.get();
+    }
+
+    private void dumpService(PrintWriter writer) {
+        long dispatched = getDispatched();
+        writer.print("  ");
+        writer.print(mServiceId);
+        writer.print(": dispatched=");
+        writer.print(dispatched);
+        writer.print(" queued=");
+        writer.print(getQueued());
+        writer.print(" rejected=");
+        writer.print(getRejected());
+        writer.print(" depth(now/max)=");
+        writer.print(getQueueDepth());
+        writer.print("/");
+        writer.print(getMaxQueueDepth());
+        writer.print(" wait(avg/max us)=");
+        writer.print(dispatched == 0 ? 0 : getTotalWaitNanos() / dispatched / 1000);
+        writer.print("/");
+        writer.println(getMaxWaitNanos() / 1000);
+    }
+}
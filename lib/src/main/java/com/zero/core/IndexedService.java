@@ -0,0 +1,100 @@
+package com.zero.core;
+
+import android.os.IBinder;
+import android.os.IInterface;
+import android.os.Looper;
+
+/**
+ * 从 {@link ServiceIndex} 懒加载出来的 Service，相当于 &#64;CoreService 版本的 INSTALLER
+ */
+class IndexedService extends Service {
+
+    private final ServiceIndex mIndex;
+
+    private final int mPosition;
+
+    private final String mServiceId;
+
+    private final String mProcessSuffix;
+
+    IndexedService(ServiceIndex index, int position, Class<?> clazz) {
+        super(clazz);
+        mIndex = index;
+        mPosition = position;
+        mServiceId = index.getServiceId(position);
+        mProcessSuffix = index.getProcessSuffix(position);
+    }
+
+    /**
+     * 生成的索引里直接调用 Stub.asInterface，不用反射
+     */
+    @Override
+    protected InterfaceFactory createInterfaceFactory() {
+        return new InterfaceFactory() {
+            @Override
+            public IInterface asInterface(IBinder binder) {
+                return mIndex.asInterface(mPosition, binder);
+            }
+        };
+    }
+
+    @Override
+    protected int[] getIdempotentTransactions() {
+        return mIndex.getIdempotentTransactions(mPosition);
+    }
+
+    @Override
+    protected int[] getCacheableTransactions() {
+        return mIndex.getCacheableTransactions(mPosition);
+    }
+
+    @Override
+    protected String[] getReplicaProcessSuffixes() {
+        return mIndex.getReplicaProcessSuffixes(mPosition);
+    }
+
+    @Override
+    protected int getWarmUpPolicy() {
+        return mIndex.getWarmUpPolicy(mPosition);
+    }
+
+    @Override
+    protected String[] getDependencies() {
+        return mIndex.getDependencies(mPosition);
+    }
+
+    @Override
+    protected boolean isOnewayBatchingEnabled() {
+        return mIndex.isOnewayBatchingEnabled(mPosition);
+    }
+
+    @Override
+    protected int getMaxConcurrentCalls() {
+        return mIndex.getMaxConcurrentCalls(mPosition);
+    }
+
+    @Override
+    protected int getMaxQueuedCalls() {
+        return mIndex.getMaxQueuedCalls(mPosition);
+    }
+
+    @Override
+    protected int getCallerRateLimit() {
+        return mIndex.getCallerRateLimit(mPosition);
+    }
+
+    @Override
+    protected Looper getDispatchLooper() {
+        return mIndex.hasDispatchThread(mPosition) ? ServerDispatcher.newDispatchLooper(getServiceId()) : null;
+    }
+
+    @Override
+    public String getServiceId() {
+        return mServiceId;
+    }
+
+    @Override
+    public String getProcessSuffix() {
+        return mProcessSuffix;
+    }
+}
@@ -0,0 +1,56 @@
+package com.zero.core;
+
+import android.os.Process;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步 getService 和后台重新找副本用的线程池，空闲时线程会回收，不占常驻线程
+ */
+class LookupExecutor {
+
+    private static final int MAX_THREADS = 4;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static volatile ThreadPoolExecutor sExecutor;
+
+    static ThreadPoolExecutor get() {
+        ThreadPoolExecutor executor = sExecutor;
+        if (null == executor) {
+            synchronized (LookupExecutor.class) {
+                executor = sExecutor;
+                if (null == executor) {
+                    executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new LookupThreadFactory());
+                    executor.allowCoreThreadTimeOut(true);
+                    sExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static class LookupThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    // 主要是 UI 线程在等结果（getServiceAsync + mainThreadExecutor），不能放进后台调度组
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+                    r.run();
+                }
+            }, "CoreServiceLookup-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
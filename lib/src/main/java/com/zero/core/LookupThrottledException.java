@@ -0,0 +1,16 @@
+package com.zero.core;
+
+import android.os.RemoteException;
+
+/**
+ * 向 core 查询时被限流（见 {@link CallerRateLimiter#REGISTRY}）。和“没找到”区分开，被限流的查询不写负缓存，
+ * 否则一次限流会让活着的进程、存在的服务在负缓存的有效期内都查不到。
+ */
+class LookupThrottledException extends RemoteException {
+
+    private static final long serialVersionUID = 1L;
+
+    LookupThrottledException(IllegalStateException cause) {
+        initCause(cause);
+    }
+}
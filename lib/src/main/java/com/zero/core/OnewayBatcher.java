@@ -0,0 +1,180 @@
+package com.zero.core;
+
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.RemoteException;
+
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 【调用方】把短时间内发往同一个 binder 的 oneway 调用攒成一次 transaction，
+ * 对端 {@link ServerBinder} 收到 {@link #BATCH_TRANSACTION} 后按顺序逐个分发给 Stub。
+ * <p>
+ * 攒满 {@link #MAX_BATCH_CALLS} 个或 {@link #MAX_BATCH_BYTES} 字节立即发送，否则等 {@link #BATCH_WINDOW_MILLIS}；
+ * 有同步调用时先把攒着的发出去，保证同一个调用方看到的顺序不变。
+ * 带 binder / fd 的 parcel 不能 marshall，先发掉攒着的再单独发。
+ */
+class OnewayBatcher {
+
+    /**
+     * 批量 transaction 的 code，仿照系统保留 code（'_PNG'、'_DMP'）的写法，AIDL 生成的 code 不会和它重复
+     */
+    static final int BATCH_TRANSACTION = ('_' << 24) | ('C' << 16) | ('S' << 8) | 'B';
+
+    static final long BATCH_WINDOW_MILLIS = 5;
+
+    static final int MAX_BATCH_CALLS = 64;
+
+    /**
+     * 远小于 binder 的异步缓冲（约 512KB），不会因为一次批量把对端的缓冲占满
+     */
+    static final int MAX_BATCH_BYTES = 64 * 1024;
+
+    private static ScheduledThreadPoolExecutor sScheduler;
+
+    private final String mServiceId;
+
+    private final IBinder mRemote;
+
+    private final ArrayList<Call> mPending = new ArrayList<Call>();
+
+    private int mPendingBytes;
+
+    private boolean mScheduled;
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (OnewayBatcher.this) {
+                mScheduled = false;
+                try {
+                    flushLocked();
+                } catch (RemoteException e) { // oneway 本来就不保证送达
+                    CoreTrace.error(mServiceId, "[flush]", e);
+                }
+            }
+        }
+    };
+
+    private static class Call {
+        final int code;
+        final byte[] data;
+
+        Call(int code, byte[] data) {
+            this.code = code;
+            this.data = data;
+        }
+    }
+
+    OnewayBatcher(String serviceId, IBinder remote) {
+        mServiceId = serviceId;
+        mRemote = remote;
+    }
+
+    IBinder getRemote() {
+        return mRemote;
+    }
+
+    /**
+     * @return 放进队列返回 true；parcel 里有 binder / fd 返回 false，此时已经先把队列发掉了，调用方自己发
+     */
+    synchronized boolean enqueue(int code, Parcel data) throws RemoteException {
+        byte[] bytes;
+        try {
+            bytes = data.marshall();
+        } catch (RuntimeException e) { // 带 binder 或 fd
+            flushLocked();
+            return false;
+        }
+        mPending.add(new Call(code, bytes));
+        mPendingBytes += bytes.length;
+        if (mPending.size() >= MAX_BATCH_CALLS || mPendingBytes >= MAX_BATCH_BYTES) {
+            flushLocked();
+        } else if (!mScheduled) {
+            mScheduled = true;
+            getScheduler().schedule(mFlushTask, BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    /**
+     * 同步调用前调用，把攒着的先发出去
+     */
+    synchronized void flush() throws RemoteException {
+        flushLocked();
+    }
+
+    private void flushLocked() throws RemoteException {
+        int count = mPending.size();
+        if (0 == count) {
+            return;
+        }
+        Parcel batch = Parcel.obtain();
+        try {
+            if (1 == count) { // 只有一个就原样发，对端不需要拆
+                Call call = mPending.get(0);
+                batch.unmarshall(call.data, 0, call.data.length);
+                batch.setDataPosition(0);
+                mRemote.transact(call.code, batch, null, IBinder.FLAG_ONEWAY);
+            } else {
+                batch.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    Call call = mPending.get(i);
+                    batch.writeInt(call.code);
+                    batch.writeByteArray(call.data);
+                }
+                mRemote.transact(BATCH_TRANSACTION, batch, null, IBinder.FLAG_ONEWAY);
+            }
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_VERBOSE)) {
+                CoreTrace.record(CoreTrace.EVENT_TRANSACT, mServiceId, BATCH_TRANSACTION, 0, "batch of " + count);
+            }
+        } finally {
+            batch.recycle();
+            mPending.clear();
+            mPendingBytes = 0;
+        }
+    }
+
+    /**
+     * 【实现方】拆开批量 transaction，按顺序交给 dispatcher
+     */
+    static void unpack(Parcel batch, ServerBinder dispatcher) throws RemoteException {
+        int count = batch.readInt();
+        for (int i = 0; i < count; i++) {
+            int code = batch.readInt();
+            byte[] bytes = batch.createByteArray();
+            if (null == bytes) {
+                continue;
+            }
+            Parcel data = Parcel.obtain();
+            try {
+                data.unmarshall(bytes, 0, bytes.length);
+                data.setDataPosition(0);
+                dispatcher.dispatch(code, data, null, IBinder.FLAG_ONEWAY);
+            } catch (RemoteException e) { // 一个调用出错不影响后面的
+                CoreTrace.error(null, "[unpack] code=" + code, e);
+            } catch (RuntimeException e) {
+                CoreTrace.error(null, "[unpack] code=" + code, e);
+            } finally {
+                data.recycle();
+            }
+        }
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor getScheduler() {
+        if (null == sScheduler) {
+            sScheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "CoreOnewayBatch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sScheduler;
+    }
+}
@@ -0,0 +1,107 @@
+package com.zero.core;
+
+import android.content.ContentProviderClient;
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Build;
+import android.os.IBinder;
+import android.os.SystemClock;
+
+import java.util.HashSet;
+
+/**
+ * 按需拉起非 core 进程：访问该进程声明的 {@link ProcessProvider}，系统会先启动进程，call 返回时进程已经向 core 注册。
+ * <p>
+ * 同一个进程同时只拉一次，在 {@link LookupExecutor} 上执行；调用方各自按自己的 deadline 等，
+ * 进程的 ServiceManager 一出现（launch 返回或 core 推过来，先到先算）就唤醒。
+ */
+class ProcessLauncher {
+
+    private static final Object LOCK = new Object();
+
+    /**
+     * 正在拉起的进程名
+     */
+    private static final HashSet<String> LAUNCHING = new HashSet<String>();
+
+    static void launch(final String processName, final String processSuffix) {
+        synchronized (LOCK) {
+            if (!LAUNCHING.add(processName)) {
+                return;
+            }
+        }
+        LookupExecutor.get().execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                IBinder manager = null;
+                try {
+                    manager = call(ProcessProvider.getAuthority(processSuffix));
+                } catch (Exception e) { // 没有声明 ProcessProvider 或进程启动失败
+                    CoreTrace.error(processName, "[launch]", e);
+                }
+                if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                    CoreTrace.record(CoreTrace.EVENT_LAUNCH, processName, 0, System.nanoTime() - start,
+                            null != manager ? "registered" : "failed");
+                }
+                if (null != manager) {
+                    CoreServiceManager.onProcessLaunched(processName, manager);
+                }
+                synchronized (LOCK) {
+                    LAUNCHING.remove(processName);
+                    LOCK.notifyAll();
+                }
+            }
+        });
+    }
+
+    /**
+     * 进程的 ServiceManager 放进 cache 后调用
+     */
+    static void notifyAvailable() {
+        synchronized (LOCK) {
+            LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * 等进程的 ServiceManager 出现在 cache 里
+     *
+     * @param deadline elapsedRealtime
+     * @return 超时或这一轮拉起失败返回 false
+     */
+    static boolean await(String processName, long deadline) {
+        synchronized (LOCK) {
+            while (null == ServiceList.getCacheBinder(processName)) {
+                long remaining = deadline - SystemClock.elapsedRealtime();
+                if (remaining <= 0 || !LAUNCHING.contains(processName)) {
+                    return false;
+                }
+                try {
+                    LOCK.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static IBinder call(String authority) throws Exception {
+        ContentResolver resolver = AppUtil.getApplication().getContentResolver();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) { // 对端启动时崩溃不会连累调用方
+            ContentProviderClient provider = resolver.acquireUnstableContentProviderClient(authority);
+            if (null == provider) {
+                return null;
+            }
+            try {
+                return CoreBootstrap.getBinder(provider.call(ProcessProvider.METHOD_LAUNCH, null, null));
+            } finally {
+                provider.release();
+            }
+        }
+        return CoreBootstrap.getBinder(resolver.call(Uri.parse("content://" + authority),
+                ProcessProvider.METHOD_LAUNCH, null, null));
+    }
+}
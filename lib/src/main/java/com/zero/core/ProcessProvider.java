@@ -0,0 +1,84 @@
+package com.zero.core;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.IBinder;
+
+/**
+ * 拉起非 core 进程用的 Provider，在每个需要按需拉起的进程声明一个（android:process 写该进程），
+ * authority 见 {@link #getAuthority(String)}，例如 ":float" 进程是 com.zero.core.process.float：
+ * <pre>
+ * &lt;provider
+ *     android:name="com.zero.core.ProcessProvider"
+ *     android:authorities="com.zero.core.process.float"
+ *     android:exported="false"
+ *     android:process=":float" /&gt;
+ * </pre>
+ * 调用方 {@link CoreServiceManager#getService(String, long)} 访问它时系统会先把进程拉起来，
+ * call 返回前本进程已经向 core 注册好，顺带把本进程的 ServiceManager 返回给调用方。
+ */
+public class ProcessProvider extends ContentProvider {
+
+    static final String AUTHORITY_PREFIX = "com.zero.core.process";
+
+    static final String METHOD_LAUNCH = "launch";
+
+    /**
+     * @param processSuffix 同 Service.getProcessSuffix()，主进程是空字符串
+     */
+    static String getAuthority(String processSuffix) {
+        return AUTHORITY_PREFIX + processSuffix.replace(':', '.');
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (!METHOD_LAUNCH.equals(method)) {
+            return null;
+        }
+        if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+            CoreTrace.record(CoreTrace.EVENT_LAUNCH, AppUtil.getProcessName(), 0, 0, "launched");
+        }
+        IBinder manager = CoreServiceManager.registerProcess();
+        if (null == manager) {
+            return null;
+        }
+        Bundle bundle = new Bundle();
+        bundle.putParcelable(CoreProvider.KEY_SERVICE_MANAGER, new ServiceParcel(manager));
+        return bundle;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection,
+                        String[] selectionArgs, String sortOrder) {
+        return null;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection,
+                      String[] selectionArgs) {
+        return 0;
+    }
+}
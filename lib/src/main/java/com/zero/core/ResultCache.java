@@ -0,0 +1,303 @@
+package com.zero.core;
+
+import android.os.Parcel;
+
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 【调用方】可缓存调用（见 Service.getCacheableTransactions）的结果缓存，按 serviceId 共享，代理换了也还在。
+ * <p>
+ * key 是 transaction code 加上请求参数（去掉 interface token 头，头里的 StrictMode 策略每个线程可能不一样），
+ * 参数按 int 逐个读出来，查找时用线程私有的 key 和缓冲，命中时不分配对象；
+ * value 是 reply 的字节；按总字节数 LRU 淘汰，参数或结果太大、结果是异常或带 fd 的都不缓存。
+ * 参数里的 binder 只按本进程看到的句柄比较，可缓存的方法最好不要带 binder 参数。
+ * 实现方状态变了调用 {@link CoreServiceManager#invalidateCache}，经 core 推给所有进程；
+ * 推送是异步的，失效到达之前读到的仍是旧值。
+ */
+class ResultCache {
+
+    /**
+     * 失效整个服务时用的 code，AIDL 的 code 从 IBinder.FIRST_CALL_TRANSACTION（1）开始
+     */
+    static final int ALL_TRANSACTIONS = 0;
+
+    private static final int MAX_KEY_WORDS = 256;
+
+    private static final int MAX_VALUE_BYTES = 16 * 1024;
+
+    private static volatile int sMaxBytes = 64 * 1024;
+
+    private static final LinkedHashMap<String, ResultCache> CACHES = new LinkedHashMap<String, ResultCache>();
+
+    /**
+     * 查找用的 key，每个线程一个，反复填充
+     */
+    private static final ThreadLocal<Key> LOOKUP_KEY = new ThreadLocal<Key>() {
+        @Override
+        protected Key initialValue() {
+            return new Key(0, new int[MAX_KEY_WORDS], 0);
+        }
+    };
+
+    /**
+     * 放进 map 的 key 是 {@link #copy()} 出来的，words 长度正好是 length，不再修改
+     */
+    static final class Key {
+        int code;
+        int[] words;
+        int length;
+        private int mHash;
+
+        Key(int code, int[] words, int length) {
+            set(code, words, length);
+        }
+
+        private void set(int code, int[] words, int length) {
+            this.code = code;
+            this.words = words;
+            this.length = length;
+            int hash = code;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + words[i];
+            }
+            mHash = hash;
+        }
+
+        Key copy() {
+            return new Key(code, Arrays.copyOf(words, length), length);
+        }
+
+        int bytes() {
+            return length * 4;
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            if (code != other.code || length != other.length || mHash != other.mHash) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (words[i] != other.words[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final String mServiceId;
+
+    /**
+     * interface token 头的长度，同一台设备上只和 descriptor 有关
+     */
+    private final int mHeaderSize;
+
+    /**
+     * 访问顺序，最老的在前面
+     */
+    private final LinkedHashMap<Key, byte[]> mEntries = new LinkedHashMap<Key, byte[]>(16, 0.75f, true);
+
+    private int mBytes;
+
+    /**
+     * 每次失效加一，调用前后不一样说明结果可能已经过期，不放进来
+     */
+    private int mGeneration;
+
+    private long mHits;
+
+    private long mMisses;
+
+    private long mInvalidations;
+
+    private ResultCache(String serviceId, int headerSize) {
+        mServiceId = serviceId;
+        mHeaderSize = headerSize;
+    }
+
+    static void setMaxBytes(int bytes) {
+        sMaxBytes = bytes;
+        synchronized (ResultCache.class) {
+            for (ResultCache cache : CACHES.values()) {
+                synchronized (cache) {
+                    cache.trimLocked();
+                }
+            }
+        }
+    }
+
+    static synchronized ResultCache obtain(String serviceId, String descriptor) {
+        ResultCache cache = CACHES.get(serviceId);
+        if (null == cache) {
+            Parcel header = Parcel.obtain();
+            try {
+                header.writeInterfaceToken(descriptor);
+                cache = new ResultCache(serviceId, header.dataSize());
+            } finally {
+                header.recycle();
+            }
+            CACHES.put(serviceId, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * 收到失效通知时调用，本进程没有缓存过这个服务就什么都不做
+     *
+     * @param code {@link #ALL_TRANSACTIONS} 表示整个服务
+     * @param args null 表示这个 code 的所有结果
+     */
+    static void invalidate(String serviceId, int code, byte[] args) {
+        ResultCache cache;
+        synchronized (ResultCache.class) {
+            cache = CACHES.get(serviceId);
+        }
+        if (null != cache) {
+            cache.invalidate(code, args);
+        }
+    }
+
+    static void dump(PrintWriter writer) {
+        ArrayList<ResultCache> caches;
+        synchronized (ResultCache.class) {
+            caches = new ArrayList<ResultCache>(CACHES.values());
+        }
+        writer.println("Result cache (max bytes per service=" + sMaxBytes + "):");
+        for (ResultCache cache : caches) {
+            synchronized (cache) {
+                writer.println("  " + cache.mServiceId + ": entries=" + cache.mEntries.size()
+                        + " bytes=" + cache.mBytes + " hits=" + cache.mHits + " misses=" + cache.mMisses
+                        + " invalidations=" + cache.mInvalidations);
+            }
+        }
+    }
+
+    /**
+     * 按 int 读出 interface token 头之后的参数，不改变 data 的读写位置
+     *
+     * @return 当前线程的查找 key，放进缓存前要 {@link Key#copy()}；参数太大或带 fd 的返回 null，不缓存
+     */
+    Key lookupKey(int code, Parcel data) {
+        int size = data.dataSize();
+        int length = (size - mHeaderSize) >> 2;
+        if (size < mHeaderSize || length > MAX_KEY_WORDS || (size & 3) != 0 || data.hasFileDescriptors()) {
+            return null;
+        }
+        Key key = LOOKUP_KEY.get();
+        int[] words = key.words;
+        int position = data.dataPosition();
+        data.setDataPosition(mHeaderSize);
+        for (int i = 0; i < length; i++) {
+            words[i] = data.readInt();
+        }
+        data.setDataPosition(position);
+        key.set(code, words, length);
+        return key;
+    }
+
+    synchronized byte[] get(Key key) {
+        byte[] value = mEntries.get(key);
+        if (null != value) {
+            mHits++;
+        } else {
+            mMisses++;
+        }
+        return value;
+    }
+
+    synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * @param key        {@link Key#copy()} 出来的
+     * @param generation 调用前 {@link #getGeneration()} 的值
+     */
+    void put(Key key, Parcel reply, int generation) {
+        int size = reply.dataSize();
+        if (size < 4 || size > MAX_VALUE_BYTES) {
+            return;
+        }
+        int position = reply.dataPosition();
+        reply.setDataPosition(0);
+        int exception = reply.readInt(); // AIDL 的 reply 以异常码开头，0 表示正常返回
+        reply.setDataPosition(position);
+        if (0 != exception) {
+            return;
+        }
+        byte[] value;
+        try {
+            value = reply.marshall();
+        } catch (RuntimeException e) {
+            return;
+        }
+        synchronized (this) {
+            if (generation != mGeneration) {
+                return;
+            }
+            byte[] old = mEntries.put(key, value);
+            mBytes += key.bytes() + value.length;
+            if (null != old) {
+                mBytes -= key.bytes() + old.length;
+            }
+            trimLocked();
+        }
+    }
+
+    synchronized void invalidate(int code, byte[] args) {
+        mGeneration++;
+        mInvalidations++;
+        if (ALL_TRANSACTIONS == code) {
+            mEntries.clear();
+            mBytes = 0;
+        } else if (null != args) {
+            IntBuffer buffer = ByteBuffer.wrap(args).order(ByteOrder.nativeOrder()).asIntBuffer(); // parcel 按本机字节序
+            int[] words = new int[buffer.remaining()];
+            buffer.get(words);
+            Key key = new Key(code, words, words.length);
+            byte[] old = mEntries.remove(key);
+            if (null != old) {
+                mBytes -= key.bytes() + old.length;
+            }
+        } else {
+            Iterator<Map.Entry<Key, byte[]>> it = mEntries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, byte[]> entry = it.next();
+                if (entry.getKey().code == code) {
+                    mBytes -= entry.getKey().bytes() + entry.getValue().length;
+                    it.remove();
+                }
+            }
+        }
+        if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+            CoreTrace.record(CoreTrace.EVENT_INVALIDATE, mServiceId, code, 0, null);
+        }
+    }
+
+    private void trimLocked() {
+        int max = sMaxBytes;
+        Iterator<Map.Entry<Key, byte[]>> it = mEntries.entrySet().iterator();
+        while (mBytes > max && it.hasNext()) {
+            Map.Entry<Key, byte[]> entry = it.next();
+            mBytes -= entry.getKey().bytes() + entry.getValue().length;
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.zero.core;
+
+import android.os.Binder;
+import android.os.IBinder;
+import android.os.IInterface;
+import android.os.Parcel;
+import android.os.RemoteException;
+
+/**
+ * 【实现进程】交给其他进程的服务 binder 外面包的一层，转发给真正的 Stub，
+ * 在转发前取出调用方带过来的 trace id（见 {@link CoreTrace}），并拆开批量的 oneway 调用（见 {@link OnewayBatcher}）和放在共享内存里的大请求、大返回（见 {@link SharedMemoryChannel}），
+ * 开启了按调用方限流的先经过 {@link CallerRateLimiter}，服务限制了并发或指定了线程的，AIDL 方法再经过 {@link ServerDispatcher}。
+ * <p>
+ * 本进程内 queryLocalInterface 仍然拿到 Stub 本身，不经过这一层。
+ */
+class ServerBinder extends Binder {
+
+    private final String mServiceId;
+
+    private final IBinder mTarget;
+
+    /**
+     * null 表示直接在 binder 线程上交给 Stub
+     */
+    private final ServerDispatcher mDispatcher;
+
+    /**
+     * null 表示不限流
+     */
+    private final CallerRateLimiter mLimiter;
+
+    ServerBinder(String serviceId, IBinder target) {
+        this(serviceId, target, null, null);
+    }
+
+    ServerBinder(String serviceId, IBinder target, ServerDispatcher dispatcher, CallerRateLimiter limiter) {
+        mServiceId = serviceId;
+        mTarget = target;
+        mDispatcher = dispatcher;
+        mLimiter = limiter;
+    }
+
+    IBinder getTarget() {
+        return mTarget;
+    }
+
+    @Override
+    public String getInterfaceDescriptor() {
+        try {
+            return mTarget.getInterfaceDescriptor();
+        } catch (RemoteException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public IInterface queryLocalInterface(String descriptor) {
+        return mTarget.queryLocalInterface(descriptor);
+    }
+
+    @Override
+    protected boolean onTransact(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        if (OnewayBatcher.BATCH_TRANSACTION == code) { // 调用方攒起来的 oneway 调用，按顺序逐个分发
+            OnewayBatcher.unpack(data, this);
+            return true;
+        }
+        if (SharedMemoryChannel.RELEASE_REPLY_TRANSACTION == code) { // 调用方读完了共享内存里的返回
+            SharedMemoryChannel.releaseReply(data);
+            return true;
+        }
+        if (SharedMemoryChannel.SHARED_MEMORY_TRANSACTION == code) { // 大的请求放在共享内存里，调用方一定能还原返回
+            int[] realCode = new int[1];
+            Parcel request = SharedMemoryChannel.readRequest(data, realCode);
+            if (null == request) {
+                return false;
+            }
+            try {
+                code = realCode[0];
+                data = request;
+                boolean result = dispatch(code, data, reply, flags);
+                SharedMemoryChannel.writeReply(reply);
+                return result;
+            } finally {
+                request.recycle();
+            }
+        }
+        if (!SharedMemoryChannel.acceptsSharedReply(data)) { // 调用方不认识共享内存的返回，原样返回
+            return dispatch(code, data, reply, flags);
+        }
+        boolean result = dispatch(code, data, reply, flags);
+        SharedMemoryChannel.writeReply(reply);
+        return result;
+    }
+
+    boolean dispatch(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        CallerRateLimiter limiter = mLimiter;
+        if (null == limiter || 0 != (flags & FLAG_ONEWAY) || !limiter.isLimited(code)) {
+            return schedule(code, data, reply, flags);
+        }
+        if (!limiter.tryAcquire(getCallingPid(), getCallingUid())) {
+            reply.writeException(new IllegalStateException("Throttled by " + limiter.getName()));
+            return true;
+        }
+        try {
+            return schedule(code, data, reply, flags);
+        } finally {
+            limiter.exit();
+        }
+    }
+
+    private boolean schedule(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        ServerDispatcher dispatcher = mDispatcher;
+        if (null != dispatcher && code >= FIRST_CALL_TRANSACTION && code <= LAST_CALL_TRANSACTION) {
+            return dispatcher.dispatch(this, code, data, reply, flags);
+        }
+        return invoke(code, data, reply, flags);
+    }
+
+    /**
+     * 交给 Stub，可能在 {@link ServerDispatcher} 指定的线程上
+     */
+    boolean invoke(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        long traceId = CoreTrace.readTrailer(data);
+        if (0 == traceId) {
+            return mTarget.transact(code, data, reply, flags);
+        }
+        long prev = CoreTrace.enter(traceId);
+        long start = System.nanoTime();
+        try {
+            return mTarget.transact(code, data, reply, flags);
+        } finally {
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_TRANSACT_IN, mServiceId, code, System.nanoTime() - start, null);
+            }
+            CoreTrace.exit(prev);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.zero.core;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Binder;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Parcel;
+import android.os.RemoteException;
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 【实现进程】服务端的调度层，限制一个服务占用的 binder 线程数，慢方法不会把进程的 binder 线程池耗光、卡住同进程的其他服务。
+ * <p>
+ * 同步调用要占着 binder 线程等返回，换到别的线程执行也省不下 binder 线程，所以仍在 binder 线程上执行，只是先拿许可：
+ * 同时执行的不超过 {@link Service#getMaxConcurrentCalls()}，排队的不超过 {@link Service#getMaxQueuedCalls()}，
+ * 再多的直接回 IllegalStateException；排队时前台（可见及以上）进程的调用先拿到许可，同一优先级先来先得。
+ * 两者加起来不超过 {@link #MAX_BINDER_THREADS}，配置得再大也会被压下来，一个服务占不满整个 binder 线程池。
+ * <p>
+ * oneway 调用方不等返回，拷贝一份 parcel 后交给服务自己的 oneway 线程，马上放回 binder 线程；
+ * 在那个线程上按收到的顺序逐个拿许可执行，不拒绝，只排队。带 binder / fd 的 parcel 不能拷贝，仍在 binder 线程上等。
+ * <p>
+ * 指定了 {@link Service#getDispatchLooper()} 的服务并发固定为 1，调用交给那个线程执行，执行时换成调用方的身份。
+ */
+class ServerDispatcher {
+
+    /**
+     * 进程优先级快照的有效期，只有需要排队时才会去取
+     */
+    private static final long IMPORTANCE_TTL_MILLIS = 1000;
+
+    /**
+     * 一个进程的 binder 线程池是 16 个，一个服务执行加排队最多占一半，留给同进程的其他服务和 core 的查询
+     */
+    static final int MAX_BINDER_THREADS = 8;
+
+    private static final long ONEWAY_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * pid -> RunningAppProcessInfo.importance
+     */
+    private static volatile HashMap<Integer, Integer> sImportance;
+
+    private static volatile long sImportanceTime;
+
+    private final String mServiceId;
+
+    private final int mMaxConcurrent;
+
+    private final int mMaxQueued;
+
+    /**
+     * 指定了线程的服务用，否则 null
+     */
+    private final Handler mHandler;
+
+    private final Looper mLooper;
+
+    private final DispatchMetrics mMetrics;
+
+    /**
+     * 执行 oneway 调用的单线程，第一次收到 oneway 时创建，空闲后线程回收
+     */
+    private volatile ThreadPoolExecutor mOnewayExecutor;
+
+    /**
+     * 等许可的调用，同时也是锁
+     */
+    private final PriorityQueue<Waiter> mWaiting = new PriorityQueue<Waiter>();
+
+    private int mRunning;
+
+    private long mSequence;
+
+    private static final class Waiter implements Comparable<Waiter> {
+
+        final boolean foreground;
+
+        final long sequence;
+
+        boolean granted;
+
+        Waiter(boolean foreground, long sequence) {
+            this.foreground = foreground;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            if (foreground != other.foreground) {
+                return foreground ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * @return 没有限制并发也没有指定线程返回 null，调用直接交给 Stub
+     */
+    static ServerDispatcher create(Service service) {
+        Looper looper = service.getDispatchLooper();
+        int maxConcurrent = null != looper ? 1 : service.getMaxConcurrentCalls();
+        if (maxConcurrent <= 0) {
+            return null;
+        }
+        maxConcurrent = Math.min(maxConcurrent, MAX_BINDER_THREADS);
+        int maxQueued = Math.min(Math.max(0, service.getMaxQueuedCalls()), MAX_BINDER_THREADS - maxConcurrent);
+        return new ServerDispatcher(service.getServiceId(), maxConcurrent, maxQueued, looper);
+    }
+
+    /**
+     * 注解里 dispatchThread = true 的服务用，每个服务一个线程
+     */
+    static Looper newDispatchLooper(String serviceId) {
+        HandlerThread thread = new HandlerThread("CoreService-" + serviceId);
+        thread.start();
+        return thread.getLooper();
+    }
+
+    private ServerDispatcher(String serviceId, int maxConcurrent, int maxQueued, Looper looper) {
+        mServiceId = serviceId;
+        mMaxConcurrent = maxConcurrent;
+        mMaxQueued = maxQueued;
+        mLooper = looper;
+        mHandler = null != looper ? new Handler(looper) : null;
+        mMetrics = DispatchMetrics.obtain(serviceId);
+    }
+
+    boolean dispatch(ServerBinder server, int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        if (0 != (flags & IBinder.FLAG_ONEWAY) && dispatchOneway(server, code, data, flags)) {
+            return true;
+        }
+        return dispatchNow(server, code, data, reply, flags);
+    }
+
+    private boolean dispatchNow(ServerBinder server, int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        long start = System.nanoTime();
+        if (!acquire(0 != (flags & IBinder.FLAG_ONEWAY))) {
+            mMetrics.recordRejected();
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_REJECT, mServiceId, code, 0, "busy");
+            }
+            reply.writeException(new IllegalStateException("Service " + mServiceId + " is busy"));
+            return true;
+        }
+        mMetrics.recordDispatched(System.nanoTime() - start);
+        try {
+            if (null == mHandler || mLooper == Looper.myLooper()) {
+                return server.invoke(code, data, reply, flags);
+            }
+            return invokeOnLooper(server, code, data, reply, flags);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * @return parcel 带 binder / fd 拷贝不了返回 false，调用方在 binder 线程上执行
+     */
+    private boolean dispatchOneway(final ServerBinder server, final int code, Parcel data, final int flags) {
+        byte[] bytes;
+        try {
+            bytes = data.marshall(); // binder 线程返回后 data 就被释放了
+        } catch (RuntimeException e) {
+            return false;
+        }
+        final Parcel copy = Parcel.obtain();
+        copy.unmarshall(bytes, 0, bytes.length);
+        copy.setDataPosition(data.dataPosition());
+        final long identity = Binder.clearCallingIdentity(); // 拿到调用方的身份，马上恢复
+        Binder.restoreCallingIdentity(identity);
+        getOnewayExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                long own = Binder.clearCallingIdentity();
+                Binder.restoreCallingIdentity(identity);
+                try {
+                    dispatchNow(server, code, copy, null, flags);
+                } catch (RemoteException e) { // 调用方不等返回，记下来就好
+                    CoreTrace.error(mServiceId, "[oneway] code=" + code, e);
+                } catch (RuntimeException e) {
+                    CoreTrace.error(mServiceId, "[oneway] code=" + code, e);
+                } finally {
+                    Binder.restoreCallingIdentity(own);
+                    copy.recycle();
+                }
+            }
+        });
+        return true;
+    }
+
+    private ThreadPoolExecutor getOnewayExecutor() {
+        ThreadPoolExecutor executor = mOnewayExecutor;
+        if (null == executor) {
+            synchronized (this) {
+                executor = mOnewayExecutor;
+                if (null == executor) {
+                    // 单线程，保持内核送过来的顺序
+                    executor = new ThreadPoolExecutor(1, 1, ONEWAY_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "CoreServiceOneway-" + mServiceId);
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                    mOnewayExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * @return 同步调用排队已满返回 false
+     */
+    private boolean acquire(boolean oneway) {
+        synchronized (mWaiting) {
+            if (mRunning < mMaxConcurrent && mWaiting.isEmpty()) {
+                mRunning++;
+                return true;
+            }
+            if (!oneway && mWaiting.size() >= mMaxQueued) {
+                return false;
+            }
+        }
+        boolean foreground = isForeground(Binder.getCallingPid()); // 可能要 IPC，不在锁里
+        Waiter waiter;
+        synchronized (mWaiting) {
+            if (mRunning < mMaxConcurrent && mWaiting.isEmpty()) {
+                mRunning++;
+                return true;
+            }
+            if (!oneway && mWaiting.size() >= mMaxQueued) {
+                return false;
+            }
+            waiter = new Waiter(foreground, mSequence++);
+            mWaiting.add(waiter);
+            mMetrics.onQueued(mWaiting.size());
+        }
+        boolean interrupted = false;
+        synchronized (waiter) {
+            while (!waiter.granted) {
+                try {
+                    waiter.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+
+    /**
+     * 有排队的就把许可直接交给它，mRunning 不变
+     */
+    private void release() {
+        Waiter next;
+        synchronized (mWaiting) {
+            next = mWaiting.poll();
+            if (null == next) {
+                mRunning--;
+                return;
+            }
+            mMetrics.onDequeued();
+        }
+        synchronized (next) {
+            next.granted = true;
+            next.notify();
+        }
+    }
+
+    private boolean invokeOnLooper(ServerBinder server, int code, Parcel data, Parcel reply, int flags)
+            throws RemoteException {
+        long identity = Binder.clearCallingIdentity(); // 拿到调用方的身份，马上恢复
+        Binder.restoreCallingIdentity(identity);
+        LooperCall call = new LooperCall(server, identity, code, data, reply, flags);
+        if (!mHandler.post(call)) { // Looper 已经退出
+            if (null != reply) {
+                reply.writeException(new IllegalStateException("Service " + mServiceId + " dispatch thread quit"));
+                return true;
+            }
+            return false;
+        }
+        return call.await();
+    }
+
+    private static final class LooperCall implements Runnable {
+
+        private final ServerBinder mServer;
+
+        private final long mIdentity;
+
+        private final int mCode;
+
+        private final Parcel mData;
+
+        private final Parcel mReply;
+
+        private final int mFlags;
+
+        private boolean mDone;
+
+        private boolean mResult;
+
+        private Throwable mError;
+
+        LooperCall(ServerBinder server, long identity, int code, Parcel data, Parcel reply, int flags) {
+            mServer = server;
+            mIdentity = identity;
+            mCode = code;
+            mData = data;
+            mReply = reply;
+            mFlags = flags;
+        }
+
+        @Override
+        public void run() {
+            long own = Binder.clearCallingIdentity();
+            Binder.restoreCallingIdentity(mIdentity);
+            boolean result = false;
+            Throwable error = null;
+            try {
+                result = mServer.invoke(mCode, mData, mReply, mFlags);
+            } catch (Throwable e) { // 交回 binder 线程抛出，和直接在 binder 线程上执行一样
+                error = e;
+            } finally {
+                Binder.restoreCallingIdentity(own);
+            }
+            synchronized (this) {
+                mResult = result;
+                mError = error;
+                mDone = true;
+                notifyAll();
+            }
+        }
+
+        synchronized boolean await() throws RemoteException {
+            boolean interrupted = false;
+            while (!mDone) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (mError instanceof RemoteException) {
+                throw (RemoteException) mError;
+            }
+            if (mError instanceof RuntimeException) {
+                throw (RuntimeException) mError;
+            }
+            if (mError instanceof Error) {
+                throw (Error) mError;
+            }
+            return mResult;
+        }
+    }
+
+    /**
+     * 调用方进程是否在前台（可见及以上），本应用的进程都是同一个 uid，getRunningAppProcesses 能看到
+     */
+    static boolean isForeground(int pid) {
+        HashMap<Integer, Integer> importance = sImportance;
+        long now = SystemClock.elapsedRealtime();
+        if (null == importance || now - sImportanceTime > IMPORTANCE_TTL_MILLIS) {
+            importance = loadImportance();
+            sImportance = importance;
+            sImportanceTime = now;
+        }
+        Integer value = importance.get(pid);
+        return null != value && value <= ActivityManager.RunningAppProcessInfo.IMPORTANCE_VISIBLE;
+    }
+
+    private static HashMap<Integer, Integer> loadImportance() {
+        HashMap<Integer, Integer> result = new HashMap<Integer, Integer>();
+        try {
+            ActivityManager manager = (ActivityManager) AppUtil.getApplication()
+                    .getSystemService(Context.ACTIVITY_SERVICE);
+            List<ActivityManager.RunningAppProcessInfo> processes = null != manager ? manager.getRunningAppProcesses() : null;
+            if (null != processes) {
+                for (ActivityManager.RunningAppProcessInfo info : processes) {
+                    result.put(info.pid, info.importance);
+                }
+            }
+        } catch (RuntimeException e) { // 取不到就都按后台处理，只是不分优先级
+            CoreTrace.error(null, "[loadImportance]", e);
+        }
+        return result;
+    }
+}
@@ -2,61 +2,174 @@ package com.zero.core;
 
 import android.os.IBinder;
 import android.os.IInterface;
+import android.os.Looper;
 import android.text.TextUtils;
-import android.util.Log;
 
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implement this abstract class to create your own service.
  */
 public abstract class Service {
 
-    private static final boolean DEBUG = AppEnv.DEBUG;
+    public static final String PROCESS_MAIN_SUFFIX = "";
 
-    private static final String TAG = Service.class.getSimpleName();
+    /**
+     * 第一次被调用时才创建实例（默认）
+     */
+    public static final int WARM_UP_LAZY = 0;
 
-    public static final String PROCESS_MAIN_SUFFIX = "";
+    /**
+     * 【core 进程】CoreProvider 创建后立即在后台创建实例
+     */
+    public static final int WARM_UP_EAGER = 1;
+
+    /**
+     * 【core 进程】主线程第一次空闲时在后台创建实例
+     */
+    public static final int WARM_UP_IDLE = 2;
+
+    /**
+     * {@link #getMaxQueuedCalls()} 的默认值
+     */
+    public static final int DEFAULT_MAX_QUEUED_CALLS = 4;
 
     private Class<?> mClazz;
 
+    private volatile int mHandle = -1;
+
     public Service(Class<?> clazz) {
         mClazz = clazz;
     }
 
-    private static final HashMap<Class<?>, IBinder> IMPL_MAP = new HashMap<>();
+    private static final ConcurrentHashMap<Class<?>, IBinder> IMPL_MAP = new ConcurrentHashMap<Class<?>, IBinder>();
+
+    /**
+     * 交给其他进程的 binder，和 IMPL_MAP 一一对应，先于 IMPL_MAP 放入
+     */
+    private static final ConcurrentHashMap<Class<?>, ServerBinder> SERVER_MAP = new ConcurrentHashMap<Class<?>, ServerBinder>();
+
+    /**
+     * 反射拿到的 Stub.asInterface，每个类只反射查找一次
+     */
+    private static final ConcurrentHashMap<Class<?>, Method> AS_INTERFACE_METHODS = new ConcurrentHashMap<Class<?>, Method>();
+
+    private volatile InterfaceFactory mInterfaceFactory;
+
+    /**
+     * binder 转接口的工厂，相当于 AIDL 生成的 Stub.asInterface
+     */
+    public interface InterfaceFactory {
+        IInterface asInterface(IBinder binder);
+    }
 
     public final IInterface asInterface(IBinder binder) {
-        try {
-            Method asInterface = mClazz.getMethod("asInterface", IBinder.class);
-            return (IInterface) asInterface.invoke(mClazz, binder);
-        } catch (Exception e) {
-            if (DEBUG) {
-                Log.e(TAG, "[asInterface]", e);
+        InterfaceFactory factory = mInterfaceFactory;
+        if (null == factory) {
+            factory = createInterfaceFactory();
+            if (null == factory) {
+                factory = new ReflectInterfaceFactory(mClazz);
             }
+            mInterfaceFactory = factory;
         }
+        return factory.asInterface(binder);
+    }
+
+    /**
+     * 覆写此方法直接返回 Stub.asInterface 的调用可以完全避免反射，默认返回 null 则反射调用实现类的 asInterface
+     *
+     * @return
+     */
+    protected InterfaceFactory createInterfaceFactory() {
         return null;
     }
 
+    private static class ReflectInterfaceFactory implements InterfaceFactory {
+
+        private final Class<?> mClazz;
+
+        private final Method mMethod;
+
+        ReflectInterfaceFactory(Class<?> clazz) {
+            mClazz = clazz;
+            Method method = AS_INTERFACE_METHODS.get(clazz);
+            if (null == method) {
+                try {
+                    method = clazz.getMethod("asInterface", IBinder.class);
+                    AS_INTERFACE_METHODS.put(clazz, method);
+                } catch (Exception e) {
+                    CoreTrace.error(null, "[ReflectInterfaceFactory] " + clazz.getName(), e);
+                }
+            }
+            mMethod = method;
+        }
+
+        @Override
+        public IInterface asInterface(IBinder binder) {
+            if (null == mMethod) {
+                return null;
+            }
+            try {
+                return (IInterface) mMethod.invoke(mClazz, binder);
+            } catch (Exception e) {
+                CoreTrace.error(null, "[asInterface] " + mClazz.getName(), e);
+            }
+            return null;
+        }
+    }
+
     public final IBinder getService() {
         ensureInRightProcess();
         IBinder service = IMPL_MAP.get(mClazz);
         if (null == service) {
-            try {
-                service = (IBinder) mClazz.newInstance();
-                IMPL_MAP.put(mClazz, service);
-            } catch (Exception e) {
-                if (DEBUG) {
-                    Log.e(TAG, "[asInterface]", e);
+            synchronized (this) { // 多个 binder 线程同时首次访问时只创建一个实例
+                service = IMPL_MAP.get(mClazz);
+                if (null == service) {
+                    try {
+                        service = (IBinder) mClazz.newInstance();
+                        ServerBinder server = new ServerBinder(getServiceId(), service,
+                                ServerDispatcher.create(this), CallerRateLimiter.create(this));
+                        SERVER_MAP.put(mClazz, server);
+                        IMPL_MAP.put(mClazz, service);
+                        if (isImplementCoreProcess()) { // 推给已注册的其他进程，它们之后就不用再来 core 查了
+                            ServiceDirectory.publishService(getServiceId(), server);
+                        }
+                    } catch (Exception e) { // 否则调用方只会看到远处的 "no such service"
+                        CoreTrace.error(getServiceId(), "[getService] create " + mClazz.getName(), e);
+                    }
                 }
             }
         }
         return service;
     }
 
+    /**
+     * 交给其他进程的 binder，是 {@link #getService()} 外面包了一层的 {@link ServerBinder}
+     *
+     * @return
+     */
+    IBinder getServiceBinder() {
+        return null != getService() ? SERVER_MAP.get(mClazz) : null;
+    }
+
     public abstract String getServiceId();
 
+    /**
+     * 服务句柄，install（或从注解索引加载）时分配，可以交给 {@link CoreServiceManager#getService(int)}，省掉按 id 查表。
+     * 注解索引里的服务句柄就是它在索引里的位置，同一个 APK 的每个进程都一样，查询时直接传句柄；
+     * 只 install 过的服务句柄排在索引之后，只在本进程有效。都不要持久化，换了版本句柄会变。
+     *
+     * @return 还没有 install 返回 -1
+     */
+    public final int getHandle() {
+        return mHandle;
+    }
+
+    void setHandle(int handle) {
+        mHandle = handle;
+    }
+
     /**
      * 返回运行所在进程名的结尾，如果就是运行在 core 进程则不用覆写(默认返回null)，空字符代表主进程
      * 例如，运行在 [package]:float，那就 return ":float"，不能写错.
@@ -67,6 +180,116 @@ public abstract class Service {
         return null;
     }
 
+    /**
+     * 返回除 {@link #getProcessSuffix()} 外还运行同一个服务的进程后缀（规则同 getProcessSuffix，不能是 core 进程），
+     * 每个进程各有一个实例（副本）。调用方拿到的是路由代理，每次调用交给未完成调用最少的存活副本，
+     * 副本死掉后改用其他副本，幂等的调用（见 {@link #getIdempotentTransactions()}）会换一个副本重试。
+     * 副本之间不共享状态，适合无状态、计算密集的服务。默认 null 不复制。
+     *
+     * @return
+     */
+    protected String[] getReplicaProcessSuffixes() {
+        return null;
+    }
+
+    /**
+     * 返回幂等（重复调用没有副作用，例如纯查询）的 transaction code，对端进程死掉时这些调用会重新找到服务后重试一次，
+     * 其他调用仍然抛 DeadObjectException。默认 null 不重试。
+     * <p>
+     * AIDL 的 code 按方法声明顺序为 IBinder.FIRST_CALL_TRANSACTION + 0、+ 1 ...
+     *
+     * @return
+     */
+    protected int[] getIdempotentTransactions() {
+        return null;
+    }
+
+    /**
+     * 返回 true 则调用方会把短时间内的 oneway 调用攒成一次 transaction 发送（见 OnewayBatcher），
+     * 适合成批触发的 oneway 方法；同步调用前会先把攒着的发出去，顺序不变。默认 false。
+     *
+     * @return
+     */
+    protected boolean isOnewayBatchingEnabled() {
+        return false;
+    }
+
+    /**
+     * 返回可缓存的 transaction code：只读、幂等、结果只取决于参数（例如 isWhite(pkg)），
+     * 调用方会把结果按参数缓存在本进程（见 ResultCache），重复调用不再走 IPC。
+     * 状态变了由实现方调用 CoreServiceManager.invalidateCache 通知所有进程。默认 null 不缓存。
+     * <p>
+     * code 的规则同 {@link #getIdempotentTransactions()}
+     *
+     * @return
+     */
+    protected int[] getCacheableTransactions() {
+        return null;
+    }
+
+    /**
+     * 返回预创建策略：{@link #WARM_UP_LAZY}、{@link #WARM_UP_EAGER} 或 {@link #WARM_UP_IDLE}，只对 core 进程的服务有效。
+     * 构造耗时（读配置、建数据库等）的服务设成 EAGER / IDLE，第一个调用方就不用等构造了。
+     *
+     * @return
+     */
+    protected int getWarmUpPolicy() {
+        return WARM_UP_LAZY;
+    }
+
+    /**
+     * 返回构造时要用到的其他 core 服务的 ServiceId，预创建时先创建它们，没有依赖的服务并行创建。默认 null。
+     *
+     * @return
+     */
+    protected String[] getDependencies() {
+        return null;
+    }
+
+    /**
+     * 返回其他进程的调用同时在 binder 线程上执行的个数上限（见 ServerDispatcher）。一个进程只有 16 个 binder 线程，
+     * 慢方法（例如 killSysWait）不限制的话会把它们占满，同进程的其他服务也跟着卡住。默认 0 不限制，
+     * 限制时最多按 8 个算（见 ServerDispatcher.MAX_BINDER_THREADS）。
+     *
+     * @return
+     */
+    protected int getMaxConcurrentCalls() {
+        return 0;
+    }
+
+    /**
+     * 返回超过 {@link #getMaxConcurrentCalls()} 时最多排队的同步调用数，再多的调用方直接收到 IllegalStateException；
+     * 排队时前台进程的调用先执行。排队的调用同样占着 binder 线程，和 {@link #getMaxConcurrentCalls()} 加起来超过
+     * 8 个的部分不生效。
+     * oneway 调用交给服务自己的线程排队，不占 binder 线程，也不会被拒绝。默认 {@link #DEFAULT_MAX_QUEUED_CALLS}。
+     *
+     * @return
+     */
+    protected int getMaxQueuedCalls() {
+        return DEFAULT_MAX_QUEUED_CALLS;
+    }
+
+    /**
+     * 返回每个调用方进程每秒最多的同步调用数（见 CallerRateLimiter），空闲后允许一秒的突发，
+     * 超出的调用方收到 IllegalStateException。用来防止一个出错的进程循环调用拖垮本进程。默认 0 不限流。
+     *
+     * @return
+     */
+    protected int getCallerRateLimit() {
+        return 0;
+    }
+
+    /**
+     * 返回非 null 则其他进程的调用都交给这个 Looper 的线程串行执行（实现不是线程安全的，或者要在主线程上操作），
+     * binder 线程等它执行完，并发上限固定为 1，实现里 Binder.getCallingUid/Pid 仍然是调用方。
+     * 这个线程上不能同步调用会反过来调用本服务的其他进程，否则会死锁。只在创建服务时调用一次，默认 null。
+     *
+     * @return
+     */
+    protected Looper getDispatchLooper() {
+        return null;
+    }
+
     /**
      * install此Service到mAllServices中
      */
@@ -105,13 +328,27 @@ public abstract class Service {
         String suffix = getProcessSuffix();
         if (null == suffix) {
             return AppUtil.runInCoreProcess();
-        } else {
-            if (!TextUtils.isEmpty(suffix)) {
-                return AppUtil.getProcessName().endsWith(getProcessSuffix());
-            } else {
-                return AppUtil.getProcessName().equals(AppUtil.getApplication().getPackageName());
+        }
+        if (isCurrProcess(suffix)) {
+            return true;
+        }
+        String[] replicas = getReplicaProcessSuffixes();
+        if (null != replicas) {
+            for (String replica : replicas) {
+                if (null != replica && isCurrProcess(replica)) {
+                    return true;
+                }
             }
         }
+        return false;
+    }
+
+    private static boolean isCurrProcess(String suffix) {
+        if (!TextUtils.isEmpty(suffix)) {
+            return AppUtil.getProcessName().endsWith(suffix);
+        } else {
+            return AppUtil.getProcessName().equals(AppUtil.getApplication().getPackageName());
+        }
     }
 
     /**
@@ -0,0 +1,146 @@
+package com.zero.core;
+
+import android.os.IBinder;
+import android.os.RemoteCallbackList;
+import android.os.RemoteException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 【core 进程】服务目录：记录已经创建的 core 服务和已注册的其他进程 ServiceManager，
+ * 其他进程 installOtherManager 时推一份全量快照过去，之后有增删再推增量，
+ * 其他进程的 getService 稳定后只需要读本地 cache。
+ */
+class ServiceDirectory {
+
+    /**
+     * 已注册的其他进程，cookie 是进程名；进程死掉时 RemoteCallbackList 会自动移除并回调 onCallbackDied
+     */
+    private static final RemoteCallbackList<IOtherServiceManager> CLIENTS = new RemoteCallbackList<IOtherServiceManager>() {
+        @Override
+        public void onCallbackDied(IOtherServiceManager callback, Object cookie) {
+            if (cookie instanceof String) {
+                onProcessDied((String) cookie, callback.asBinder());
+            }
+        }
+    };
+
+    /**
+     * key 同 BINDER_CACHE：服务是 serviceId，其他进程的 ServiceManager 是进程名。所有读写和推送都在类锁里，保证推送顺序
+     */
+    private static final LinkedHashMap<String, ServiceParcel> ENTRIES = new LinkedHashMap<String, ServiceParcel>();
+
+    /**
+     * 其他进程注册时调用：先推全量快照，再把该进程的 ServiceManager 作为增量推给其他进程
+     */
+    static void register(String processName, IBinder manager) {
+        if (null == processName || null == manager) {
+            return;
+        }
+        ServiceList.clearNegativeCache(); // core 进程自己的 negative cache 也要失效
+        IOtherServiceManager client = IOtherServiceManager.Stub.asInterface(manager);
+        synchronized (ServiceDirectory.class) {
+            ArrayList<ServiceParcel> snapshot = new ArrayList<ServiceParcel>(ENTRIES.size());
+            for (ServiceParcel entry : ENTRIES.values()) {
+                if (!processName.equals(entry.getServiceId())) {
+                    snapshot.add(entry);
+                }
+            }
+            CLIENTS.register(client, processName);
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_DIRECTORY, processName, snapshot.size(), 0, "register");
+            }
+            send(client, snapshot);
+            publishLocked(new ServiceParcel(processName, manager, null));
+        }
+    }
+
+    /**
+     * core 服务实例创建后调用
+     */
+    static void publishService(String id, IBinder binder) {
+        String descriptor = null;
+        try {
+            descriptor = binder.getInterfaceDescriptor(); // 本地 binder，不走 IPC
+        } catch (RemoteException e) {
+        }
+        synchronized (ServiceDirectory.class) {
+            publishLocked(new ServiceParcel(id, binder, descriptor));
+        }
+    }
+
+    private static void onProcessDied(String processName, IBinder manager) {
+        synchronized (ServiceDirectory.class) {
+            ServiceParcel entry = ENTRIES.get(processName);
+            if (null == entry || entry.getBinder() != manager) { // 同名进程已经重新注册过了
+                return;
+            }
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_DEATH, processName);
+            }
+            ENTRIES.remove(processName);
+            broadcastLocked(new ServiceParcel(processName, null, null), processName);
+        }
+    }
+
+    private static void publishLocked(ServiceParcel entry) {
+        ServiceParcel old = ENTRIES.get(entry.getServiceId());
+        if (null != old && old.getBinder() == entry.getBinder()) {
+            return;
+        }
+        ENTRIES.put(entry.getServiceId(), entry);
+        broadcastLocked(entry, entry.getServiceId());
+    }
+
+    /**
+     * @param excludeProcess 不推给这个进程（条目就是它自己）
+     */
+    private static void broadcastLocked(ServiceParcel entry, String excludeProcess) {
+        List<ServiceParcel> delta = Collections.singletonList(entry);
+        int count = CLIENTS.beginBroadcast();
+        try {
+            for (int i = 0; i < count; i++) {
+                if (excludeProcess.equals(CLIENTS.getBroadcastCookie(i))) {
+                    continue;
+                }
+                send(CLIENTS.getBroadcastItem(i), delta);
+            }
+        } finally {
+            CLIENTS.finishBroadcast();
+        }
+    }
+
+    /**
+     * 实现方发布的结果缓存失效，推给所有已注册的进程（包括发布方自己，它也可能缓存了别的进程的同名服务代理）
+     */
+    static void invalidate(String serviceId, int code, byte[] args) {
+        synchronized (ServiceDirectory.class) {
+            int count = CLIENTS.beginBroadcast();
+            try {
+                for (int i = 0; i < count; i++) {
+                    try {
+                        CLIENTS.getBroadcastItem(i).invalidateCache(serviceId, code, args); // oneway
+                    } catch (RemoteException e) {
+                        CoreTrace.error(serviceId, "[invalidate] " + CLIENTS.getBroadcastCookie(i), e);
+                    }
+                }
+            } finally {
+                CLIENTS.finishBroadcast();
+            }
+        }
+    }
+
+    private static void send(IOtherServiceManager client, List<ServiceParcel> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            client.onDirectoryChanged(entries); // oneway，不会卡住 core
+        } catch (RemoteException e) {
+            CoreTrace.error(null, "[send]", e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.zero.core;
+
+import android.os.IBinder;
+import android.os.IInterface;
+
+import java.util.Arrays;
+
+/**
+ * 编译期生成的服务索引（由 compiler 模块根据 &#64;CoreService 生成 {@link #CLASS_NAME}），不要自己继承。
+ * <p>
+ * 只保存按 id 排序的 id 和进程后缀，实现类只在 {@link #getServiceClass(int)} 真正被调用时才加载。
+ * 同一个 APK 的每个进程排序都一样，位置直接用作服务句柄（见 {@link Service#getHandle()}），跨进程查询时传位置不传 id。
+ */
+public abstract class ServiceIndex {
+
+    static final String CLASS_NAME = "com.zero.core.GeneratedServiceIndex";
+
+    private final String[] mIds;
+
+    private final String[] mProcessSuffixes;
+
+    protected ServiceIndex(String[] ids, String[] processSuffixes) {
+        mIds = ids;
+        mProcessSuffixes = processSuffixes;
+    }
+
+    /**
+     * @return 生成的实现类，index 越界返回 null
+     */
+    protected abstract Class<?> getServiceClass(int index);
+
+    /**
+     * @return 直接调用实现类的 Stub.asInterface，index 越界返回 null
+     */
+    protected abstract IInterface asInterface(int index, IBinder binder);
+
+    /**
+     * @return 幂等的 transaction code，没有声明返回 null
+     */
+    protected int[] getIdempotentTransactions(int index) {
+        return null;
+    }
+
+    /**
+     * @return 可缓存的 transaction code，没有声明返回 null
+     */
+    protected int[] getCacheableTransactions(int index) {
+        return null;
+    }
+
+    /**
+     * @return 是否合并 oneway 调用
+     */
+    protected boolean isOnewayBatchingEnabled(int index) {
+        return false;
+    }
+
+    /**
+     * @return 同时执行的调用数上限，0 不限制
+     */
+    protected int getMaxConcurrentCalls(int index) {
+        return 0;
+    }
+
+    /**
+     * @return 超过并发上限时最多排队的调用数
+     */
+    protected int getMaxQueuedCalls(int index) {
+        return Service.DEFAULT_MAX_QUEUED_CALLS;
+    }
+
+    /**
+     * @return 每个调用方每秒最多的调用数，0 不限流
+     */
+    protected int getCallerRateLimit(int index) {
+        return 0;
+    }
+
+    /**
+     * @return 是否在服务自己的线程上串行执行
+     */
+    protected boolean hasDispatchThread(int index) {
+        return false;
+    }
+
+    /**
+     * @return 副本所在的其他进程后缀，没有声明返回 null
+     */
+    protected String[] getReplicaProcessSuffixes(int index) {
+        return null;
+    }
+
+    /**
+     * @return 预创建策略，不用加载实现类
+     */
+    protected int getWarmUpPolicy(int index) {
+        return Service.WARM_UP_LAZY;
+    }
+
+    /**
+     * @return 依赖的 ServiceId，没有声明返回 null
+     */
+    protected String[] getDependencies(int index) {
+        return null;
+    }
+
+    int indexOf(String id) {
+        return Arrays.binarySearch(mIds, id);
+    }
+
+    int size() {
+        return mIds.length;
+    }
+
+    String getServiceId(int index) {
+        return mIds[index];
+    }
+
+    String getProcessSuffix(int index) {
+        return mProcessSuffixes[index];
+    }
+
+    /**
+     * 第一次用到时才加载生成的索引类，没有使用注解的工程返回 null
+     */
+    static ServiceIndex get() {
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+
+        static final ServiceIndex INSTANCE = load();
+
+        private static ServiceIndex load() {
+            try {
+                return (ServiceIndex) Class.forName(CLASS_NAME).newInstance();
+            } catch (ClassNotFoundException e) {
+                if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                    CoreTrace.record(CoreTrace.EVENT_LOOKUP, null, 0, 0, "no generated index");
+                }
+            } catch (Exception e) {
+                CoreTrace.error(null, "[ServiceIndex.load]", e);
+            }
+            return null;
+        }
+    }
+}
@@ -2,9 +2,11 @@ package com.zero.core;
 
 import android.os.IBinder;
 import android.os.IInterface;
-import android.util.Log;
+import android.os.RemoteException;
+import android.os.SystemClock;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -12,40 +14,135 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class ServiceList {
 
-    private static final boolean DEBUG = AppEnv.DEBUG;
+    /**
+     * 非 core 进程注册的 ServiceManager，进程死掉时由 death recipient 移除，读的时候不加锁也不 ping
+     */
+    private static final ConcurrentHashMap<String, OtherManagerRecord> OTHER_SERVICE_MANAGERS = new ConcurrentHashMap<String, OtherManagerRecord>();
 
-    private static final String TAG = ServiceList.class.getSimpleName();
+    private static final ConcurrentHashMap<String, Service> ALL_SERVICES = new ConcurrentHashMap<String, Service>();
 
     /**
-     * 非 core 进程注册的 ServiceManager
+     * 不在注解索引里的服务（只 install 过）的句柄，从索引的大小开始按 install 的顺序分配，不同进程不保证一样，只在本进程内用。
+     * 索引里的服务句柄就是它在 {@link ServiceIndex} 里的位置，不放在这里
      */
-    private static final HashMap<String, IBinder> OTHER_SERVICE_MANAGERS = new HashMap<String, IBinder>();
+    private static final ConcurrentHashMap<String, Integer> HANDLES = new ConcurrentHashMap<String, Integer>();
 
-    private static final ConcurrentHashMap<String, Service> ALL_SERVICES = new ConcurrentHashMap<String, Service>();
+    /**
+     * 下一个分配给索引外服务的句柄，-1 表示还没确定索引的大小
+     */
+    private static int sNextHandle = -1;
+
+    /**
+     * 下标是句柄，只增不减，扩容时整体替换；索引里还没加载的服务对应的位置是 null
+     */
+    private static volatile Slot[] sSlots = new Slot[0];
+
+    static final int ROUTE_UNKNOWN = 0;
+
+    /**
+     * 在本进程实现
+     */
+    static final int ROUTE_LOCAL = 1;
+
+    /**
+     * 在 core 进程实现
+     */
+    static final int ROUTE_CORE = 2;
+
+    /**
+     * 在其他非 core 进程实现，进程名见 {@link Slot#peerProcess}
+     */
+    static final int ROUTE_PEER = 3;
 
     /**
-     * 访问的接口cache
+     * 在多个非 core 进程各有一个副本，进程名见 {@link Slot#replicaProcesses}
+     */
+    static final int ROUTE_REPLICATED = 4;
+
+    /**
+     * 一个服务在本进程的全部状态，热路径上按句柄取出来后不再查 map、不再比较进程名
+     */
+    static final class Slot {
+
+        final int handle;
+
+        /**
+         * 句柄来自注解索引，每个进程都一样，可以直接传给其他进程查
+         */
+        final boolean indexed;
+
+        volatile Service service;
+
+        volatile IBinder binder;
+
+        volatile IInterface iin;
+
+        /**
+         * 先写 peerProcess 再写 route，读到 route 就能读到 peerProcess
+         */
+        volatile int route;
+
+        String peerProcess;
+
+        String[] replicaProcesses;
+
+        Slot(int handle, boolean indexed, Service service) {
+            this.handle = handle;
+            this.indexed = indexed;
+            this.service = service;
+        }
+    }
+
+    /**
+     * 访问的接口cache，key 是没有句柄的 id（其他进程的 ServiceManager 用进程名，还没加载的索引服务）
      */
     private static final ConcurrentHashMap<String, IBinder> BINDER_CACHE = new ConcurrentHashMap<String, IBinder>();
 
-    static synchronized void putOtherManager(String process, IBinder binder) {
-        if (DEBUG) {
-            Log.d(TAG, "[putOtherManager] process=" + process);
+    /**
+     * 已经转好的接口cache，命中时不再走 asInterface，binder die 时和 BINDER_CACHE 一起清掉
+     */
+    private static final ConcurrentHashMap<String, IInterface> INTERFACE_CACHE = new ConcurrentHashMap<String, IInterface>();
+
+    private static class OtherManagerRecord implements IBinder.DeathRecipient {
+
+        final String process;
+
+        final IBinder binder;
+
+        OtherManagerRecord(String process, IBinder binder) {
+            this.process = process;
+            this.binder = binder;
+        }
+
+        @Override
+        public void binderDied() {
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_DEATH, process);
+            }
+            OTHER_SERVICE_MANAGERS.remove(process, this); // 已经换成新注册的记录就不动
         }
-        OTHER_SERVICE_MANAGERS.put(process, binder);
     }
 
-    static synchronized IBinder getOtherAvailableManager(String process) {
-        if (DEBUG) {
-            Log.d(TAG, "[getOtherAvailableManager] process=" + process);
+    static void putOtherManager(String process, IBinder binder) {
+        if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+            CoreTrace.record(CoreTrace.EVENT_DIRECTORY, process, 0, 0, "manager installed");
         }
-        IBinder manager = OTHER_SERVICE_MANAGERS.get(process);
-        if (null != manager && manager.pingBinder()) {
-            return manager;
-        } else {
-            OTHER_SERVICE_MANAGERS.remove(process);
-            return null;
+        OtherManagerRecord record = new OtherManagerRecord(process, binder);
+        try {
+            binder.linkToDeath(record, 0);
+        } catch (RemoteException e) { // 注册的时候已经死了
+            CoreTrace.error(process, "[putOtherManager]", e);
+            return;
         }
+        OtherManagerRecord old = OTHER_SERVICE_MANAGERS.put(process, record);
+        if (null != old) { // 同一个 binder 重复注册也要解开旧的 recipient，否则每注册一次多挂一个
+            old.binder.unlinkToDeath(old, 0);
+        }
+    }
+
+    static IBinder getOtherAvailableManager(String process) {
+        OtherManagerRecord record = OTHER_SERVICE_MANAGERS.get(process);
+        return null != record ? record.binder : null;
     }
 
     /**
@@ -55,7 +152,8 @@ public class ServiceList {
      * @return
      */
     static IBinder getCacheBinder(String id) {
-        return BINDER_CACHE.get(id);
+        Slot slot = getSlot(id);
+        return null != slot ? slot.binder : BINDER_CACHE.get(id);
     }
 
     /**
@@ -65,11 +163,169 @@ public class ServiceList {
      * @return
      */
     static void putCacheBinder(String id, IBinder binder) {
-        BINDER_CACHE.put(id, binder);
+        Slot slot = getSlot(id);
+        if (null != slot) {
+            slot.binder = binder;
+        } else {
+            BINDER_CACHE.put(id, binder);
+        }
     }
 
     static void removeCacheBinder(String id) {
-        BINDER_CACHE.remove(id);
+        Slot slot = getSlot(id);
+        if (null != slot) {
+            slot.binder = null;
+            slot.iin = null;
+        } else {
+            BINDER_CACHE.remove(id);
+            INTERFACE_CACHE.remove(id);
+        }
+    }
+
+    static IInterface getCacheInterface(String id) {
+        Slot slot = getSlot(id);
+        return null != slot ? slot.iin : INTERFACE_CACHE.get(id);
+    }
+
+    static void putCacheInterface(String id, IInterface iin) {
+        Slot slot = getSlot(id);
+        if (null != slot) {
+            slot.iin = iin;
+        } else {
+            INTERFACE_CACHE.put(id, iin);
+        }
+    }
+
+    /**
+     * @return 越界返回 null
+     */
+    static Slot getSlot(int handle) {
+        Slot[] slots = sSlots;
+        return handle >= 0 && handle < slots.length ? slots[handle] : null;
+    }
+
+    /**
+     * 索引里的 id 二分查找索引，不查 map；索引外的才查 {@link #HANDLES}
+     *
+     * @return 还没有句柄（没有 install、索引里的还没加载）返回 null
+     */
+    static Slot getSlot(String id) {
+        ServiceIndex index = ServiceIndex.get();
+        int position = null != index ? index.indexOf(id) : -1;
+        if (position >= 0) {
+            return getSlot(position);
+        }
+        Integer handle = HANDLES.get(id);
+        return null != handle ? sSlots[handle] : null;
+    }
+
+    /**
+     * 给服务分配句柄，同一个 id 只分配一次；之前以 id 为 key 放进 cache 的 binder 搬到 slot 里
+     */
+    private static void register(String id, Service service) {
+        synchronized (ServiceList.class) {
+            Slot slot = getSlot(id);
+            if (null != slot) {
+                slot.service = service;
+                slot.route = ROUTE_UNKNOWN;
+                service.setHandle(slot.handle);
+                return;
+            }
+            ServiceIndex index = ServiceIndex.get();
+            int position = null != index ? index.indexOf(id) : -1;
+            int handle = position;
+            if (position < 0) {
+                if (sNextHandle < 0) {
+                    sNextHandle = null != index ? index.size() : 0;
+                }
+                handle = sNextHandle++;
+            }
+            slot = new Slot(handle, position >= 0, service);
+            slot.binder = BINDER_CACHE.remove(id);
+            slot.iin = INTERFACE_CACHE.remove(id);
+            Slot[] slots = Arrays.copyOf(sSlots, Math.max(sSlots.length, handle + 1));
+            slots[handle] = slot;
+            sSlots = slots; // 先发布数组再发布句柄，拿到句柄的线程一定能看到 slot
+            if (position < 0) {
+                HANDLES.put(id, handle);
+            }
+            service.setHandle(handle);
+        }
+    }
+
+    /**
+     * 服务在哪里实现，每个句柄只算一次
+     */
+    static int getRoute(Slot slot) {
+        int route = slot.route;
+        if (ROUTE_UNKNOWN != route) {
+            return route;
+        }
+        Service service = slot.service;
+        if (service.isCurrImplementProcess()) {
+            route = ROUTE_LOCAL;
+        } else if (service.isImplementCoreProcess()) {
+            route = ROUTE_CORE;
+        } else {
+            slot.peerProcess = AppUtil.getPackageName() + service.getProcessSuffix();
+            route = ROUTE_PEER;
+            String[] replicas = service.getReplicaProcessSuffixes();
+            if (null != replicas && replicas.length > 0) {
+                String[] processes = new String[replicas.length + 1];
+                processes[0] = slot.peerProcess;
+                for (int i = 0; i < replicas.length; i++) {
+                    processes[i + 1] = AppUtil.getPackageName() + replicas[i];
+                }
+                slot.replicaProcesses = processes;
+                route = ROUTE_REPLICATED;
+            }
+        }
+        slot.route = route;
+        return route;
+    }
+
+    /**
+     * 进程类型确定（CoreProvider 创建）后调用，之前算的路由可能不对
+     */
+    static void resetRoutes() {
+        for (Slot slot : sSlots) {
+            if (null != slot) {
+                slot.route = ROUTE_UNKNOWN;
+            }
+        }
+    }
+
+    /**
+     * 【主进程】查不到的服务/ServiceManager 在这段时间内不再重复走 IPC
+     */
+    private static final long NEGATIVE_CACHE_TTL = 3000;
+
+    /**
+     * 查不到的 key -> 过期时间（elapsedRealtime），key 同 BINDER_CACHE
+     */
+    private static final ConcurrentHashMap<String, Long> NEGATIVE_CACHE = new ConcurrentHashMap<String, Long>();
+
+    static boolean isNegativeCached(String id) {
+        Long expiry = NEGATIVE_CACHE.get(id);
+        if (null == expiry) {
+            return false;
+        }
+        if (expiry > SystemClock.elapsedRealtime()) {
+            return true;
+        }
+        NEGATIVE_CACHE.remove(id, expiry);
+        return false;
+    }
+
+    static void putNegativeCache(String id) {
+        NEGATIVE_CACHE.put(id, SystemClock.elapsedRealtime() + NEGATIVE_CACHE_TTL);
+    }
+
+    /**
+     * 有新的进程注册时清掉，之前查不到的服务可能已经可用了
+     */
+    static void clearNegativeCache() {
+        NEGATIVE_CACHE.clear();
     }
 
     /**
@@ -79,7 +335,83 @@ public class ServiceList {
      * @return
      */
     static Service getService(String id) {
-        return ALL_SERVICES.get(id);
+        Service service = ALL_SERVICES.get(id);
+        if (null == service) {
+            service = getIndexedService(id);
+        }
+        return service;
+    }
+
+    /**
+     * 按句柄找，索引里还没加载的服务在这里加载，其他进程传过来的句柄也可以用
+     *
+     * @return 没有这个句柄返回 null
+     */
+    static Service getService(int handle) {
+        Slot slot = getSlot(handle);
+        if (null != slot) {
+            return slot.service;
+        }
+        ServiceIndex index = ServiceIndex.get();
+        if (null == index || handle < 0 || handle >= index.size()) {
+            return null;
+        }
+        return getIndexedService(index.getServiceId(handle));
+    }
+
+    /**
+     * 没有 install 过的 id 再去编译期生成的索引里找，找到后才加载实现类并放入 ALL_SERVICES
+     */
+    private static Service getIndexedService(String id) {
+        ServiceIndex index = ServiceIndex.get();
+        if (null == index || null == id) {
+            return null;
+        }
+        int i = index.indexOf(id);
+        if (i < 0) {
+            return null;
+        }
+        Class<?> clazz = index.getServiceClass(i);
+        if (null == clazz) {
+            return null;
+        }
+        synchronized (ServiceList.class) { // 先分配句柄再放进 ALL_SERVICES，别的线程查到的服务一定已经有句柄
+            Service old = ALL_SERVICES.get(id);
+            if (null != old) {
+                return old;
+            }
+            Service service = new IndexedService(index, i, clazz);
+            register(id, service);
+            ALL_SERVICES.put(id, service);
+            return service;
+        }
+    }
+
+    /**
+     * 【core 进程】需要预创建的 core 服务，索引里的服务只有需要预创建的才会加载实现类
+     */
+    static ArrayList<Service> getWarmUpServices() {
+        ArrayList<Service> result = new ArrayList<Service>();
+        for (Service service : ALL_SERVICES.values()) {
+            if (service.isImplementCoreProcess() && Service.WARM_UP_LAZY != service.getWarmUpPolicy()) {
+                result.add(service);
+            }
+        }
+        ServiceIndex index = ServiceIndex.get();
+        if (null != index) {
+            for (int i = 0; i < index.size(); i++) {
+                String id = index.getServiceId(i);
+                if (ALL_SERVICES.containsKey(id) || null != index.getProcessSuffix(i)
+                        || Service.WARM_UP_LAZY == index.getWarmUpPolicy(i)) {
+                    continue;
+                }
+                Service service = getIndexedService(id);
+                if (null != service) {
+                    result.add(service);
+                }
+            }
+        }
+        return result;
     }
 
     /**
@@ -89,17 +421,40 @@ public class ServiceList {
      * @param service
      */
     static void putService(String id, Service service) {
-        ALL_SERVICES.put(id, service);
+        synchronized (ServiceList.class) { // 同 getIndexedService，先分配句柄
+            register(id, service);
+            ALL_SERVICES.put(id, service);
+        }
     }
 
-    static IInterface getInterface(String id, IBinder binder) {
-        Service service = ALL_SERVICES.get(id);
-        if (service == null) {
-            if (DEBUG) {
-                Log.e(TAG, "[getInterface]：service is null, id=" + id);
+    /**
+     * 【实现进程】批量取出在当前进程实现的服务，连同 descriptor 一起打包，不在当前进程实现的 id 直接跳过
+     *
+     * @param ids
+     * @return
+     */
+    static ArrayList<ServiceParcel> getImplementedServices(String[] ids) {
+        ArrayList<ServiceParcel> result = new ArrayList<ServiceParcel>();
+        if (null == ids) {
+            return result;
+        }
+        for (String id : ids) {
+            Service service = getService(id);
+            if (null == service || !service.isCurrImplementProcess()) {
+                continue;
+            }
+            IBinder binder = service.getServiceBinder();
+            if (null == binder) {
+                continue;
+            }
+            String descriptor = null;
+            try {
+                descriptor = binder.getInterfaceDescriptor(); // 本地 binder，不走 IPC
+            } catch (RemoteException e) {
             }
+            result.add(new ServiceParcel(id, binder, descriptor));
         }
-        return ALL_SERVICES.get(id).asInterface(binder);
+        return result;
     }
 
 }
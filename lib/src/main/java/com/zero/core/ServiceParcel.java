@@ -9,20 +9,43 @@ import android.os.Parcelable;
  */
 public class ServiceParcel implements Parcelable {
 
+    private final String mServiceId;
+
     private final IBinder mBinder;
 
+    /**
+     * binder 的 interface descriptor，随 binder 一起传过来，省掉一次 getInterfaceDescriptor 的 IPC
+     */
+    private final String mDescriptor;
+
     private ServiceParcel(Parcel source) {
+        mServiceId = source.readString();
         mBinder = source.readStrongBinder();
+        mDescriptor = source.readString();
     }
 
     public ServiceParcel(IBinder binder) {
+        this(null, binder, null);
+    }
+
+    public ServiceParcel(String serviceId, IBinder binder, String descriptor) {
+        this.mServiceId = serviceId;
         this.mBinder = binder;
+        this.mDescriptor = descriptor;
+    }
+
+    public String getServiceId() {
+        return mServiceId;
     }
 
     public IBinder getBinder() {
         return mBinder;
     }
 
+    public String getDescriptor() {
+        return mDescriptor;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -30,7 +53,9 @@ public class ServiceParcel implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(mServiceId);
         dest.writeStrongBinder(mBinder);
+        dest.writeString(mDescriptor);
     }
 
     public static final Parcelable.Creator<ServiceParcel> CREATOR = new Parcelable.Creator<ServiceParcel>() {
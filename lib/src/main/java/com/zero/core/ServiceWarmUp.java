@@ -0,0 +1,151 @@
+package com.zero.core;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 【core 进程】启动时按依赖关系预先创建服务实例，第一个调用方不用再等构造。
+ * <p>
+ * {@link Service#WARM_UP_EAGER} 的服务和它依赖的服务在 CoreProvider.onCreate 后立即开始，
+ * {@link Service#WARM_UP_IDLE} 的等主线程第一次空闲；依赖都创建完的服务才会提交，
+ * 互不依赖的在 {@link LookupExecutor} 上并行创建。依赖有环或依赖不在 core 进程的，只记录错误，不影响其他服务。
+ */
+class ServiceWarmUp {
+
+    private static boolean sStarted;
+
+    private static class Node implements Runnable {
+
+        final Service service;
+
+        final ArrayList<Node> dependents = new ArrayList<Node>();
+
+        /**
+         * 还没创建完的依赖个数，IDLE 的再加上一个空闲闸门，减到 0 时提交
+         */
+        final AtomicInteger pending = new AtomicInteger();
+
+        boolean idle;
+
+        Node(Service service) {
+            this.service = service;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            service.getService(); // 创建失败 Service 里已经处理，第一次调用时还会再试
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+                CoreTrace.record(CoreTrace.EVENT_WARM_UP, service.getServiceId(), 0, System.nanoTime() - start, null);
+            }
+            for (Node dependent : dependents) {
+                dependent.release();
+            }
+        }
+
+        void release() {
+            if (0 == pending.decrementAndGet()) {
+                LookupExecutor.get().execute(this);
+            }
+        }
+    }
+
+    /**
+     * CoreProvider.onCreate 时在主线程调用
+     */
+    static void start() {
+        synchronized (ServiceWarmUp.class) {
+            if (sStarted) {
+                return;
+            }
+            sStarted = true;
+        }
+        LinkedHashMap<String, Node> nodes = new LinkedHashMap<String, Node>();
+        ArrayList<Service> idleRoots = new ArrayList<Service>();
+        for (Service service : ServiceList.getWarmUpServices()) {
+            if (Service.WARM_UP_EAGER == service.getWarmUpPolicy()) {
+                add(nodes, service, false, new HashMap<String, Boolean>());
+            } else {
+                idleRoots.add(service);
+            }
+        }
+        for (Service service : idleRoots) {
+            add(nodes, service, true, new HashMap<String, Boolean>());
+        }
+        if (nodes.isEmpty()) {
+            return;
+        }
+        final ArrayList<Node> idleNodes = new ArrayList<Node>();
+        for (Node node : nodes.values()) {
+            if (node.idle) {
+                node.pending.incrementAndGet();
+                idleNodes.add(node);
+            }
+        }
+        // 先把计数全部设好再提交，避免前面的节点已经跑完去减后面还没设好的计数
+        ArrayList<Node> ready = new ArrayList<Node>();
+        for (Node node : nodes.values()) {
+            if (0 == node.pending.get()) {
+                ready.add(node);
+            }
+        }
+        for (Node node : ready) {
+            LookupExecutor.get().execute(node);
+        }
+        if (!idleNodes.isEmpty()) {
+            Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                @Override
+                public boolean queueIdle() {
+                    for (Node node : idleNodes) {
+                        node.release();
+                    }
+                    return false;
+                }
+            });
+        }
+    }
+
+    /**
+     * 深度优先加入节点和它的依赖，依赖跟着依赖方的阶段走（EAGER 服务依赖的 LAZY / IDLE 服务也提前创建）
+     *
+     * @param visiting 当前路径上的 id，用来发现环
+     * @return 节点，依赖有环或不能在 core 进程创建返回 null
+     */
+    private static Node add(Map<String, Node> nodes, Service service, boolean idle, Map<String, Boolean> visiting) {
+        String id = service.getServiceId();
+        Node node = nodes.get(id);
+        if (null != node) { // EAGER 的先加完，这里遇到的已有节点阶段不会比当前晚
+            return node;
+        }
+        if (null != visiting.put(id, Boolean.TRUE)) {
+            CoreTrace.error(id, "[warmUp] dependency cycle " + visiting.keySet(), null);
+            return null;
+        }
+        node = new Node(service);
+        node.idle = idle;
+        String[] dependencies = service.getDependencies();
+        if (null != dependencies) {
+            for (String dependencyId : dependencies) {
+                Service dependency = ServiceList.getService(dependencyId);
+                if (null == dependency || !dependency.isImplementCoreProcess()) {
+                    CoreTrace.error(id, "[warmUp] dependency not in core process: " + dependencyId, null);
+                    continue;
+                }
+                Node dependencyNode = add(nodes, dependency, idle, visiting);
+                if (null != dependencyNode) {
+                    dependencyNode.dependents.add(node);
+                    node.pending.incrementAndGet();
+                }
+            }
+        }
+        visiting.remove(id);
+        nodes.put(id, node);
+        return node;
+    }
+}
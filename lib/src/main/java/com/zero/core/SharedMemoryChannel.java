@@ -0,0 +1,380 @@
+package com.zero.core;
+
+import android.os.IBinder;
+import android.os.MemoryFile;
+import android.os.Parcel;
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * 超过阈值的请求/返回不直接放进 binder 缓冲（整个进程共用约 1MB，超了就 TransactionTooLargeException），
+ * 而是写进 ashmem（MemoryFile），parcel 里只带 fd 和长度。
+ * <p>
+ * 同步请求用的 region 放在池里复用：对端在分发前就读完了，transact 返回后即可回收；
+ * oneway 请求的 region 用完即关，parcel 里的 fd 是 dup 出来的，对端读完关掉后 region 才释放。
+ * 返回的 region 也从池里取，实现方不知道调用方什么时候读完，先借出去，调用方读完发 {@link #RELEASE_REPLY_TRANSACTION} 再回收；
+ * 一直没还的（调用方死了）超过 {@link #MAX_LEASED_REGIONS} 个后关掉最早的，调用方手里的 dup 不受影响。
+ * <p>
+ * 只有请求表明调用方能还原时才把返回换成共享内存：走 {@link #SHARED_MEMORY_TRANSACTION} 的请求，
+ * 或者 {@link #transact} 在同步请求末尾加了 {@link #ACCEPT_MAGIC} 的。其他调用方（没有经过这里的 binder）总是拿到原样的返回。
+ * 带 binder / fd 的 parcel 不能 marshall，仍然走普通 transaction。
+ */
+class SharedMemoryChannel {
+
+    /**
+     * 请求走共享内存时的 code，写法同 {@link OnewayBatcher#BATCH_TRANSACTION}
+     */
+    static final int SHARED_MEMORY_TRANSACTION = ('_' << 24) | ('C' << 16) | ('S' << 8) | 'M';
+
+    /**
+     * 【调用方】读完共享内存里的返回后发的 oneway transaction，带返回里的 token
+     */
+    static final int RELEASE_REPLY_TRANSACTION = ('_' << 24) | ('C' << 16) | ('S' << 8) | 'F';
+
+    /**
+     * 返回走共享内存时 reply 开头的标记，后面跟 {@link #REPLY_MAGIC}、借出的 token、长度和 fd
+     */
+    private static final int REPLY_MARKER = ('_' << 24) | ('C' << 16) | ('S' << 8) | 'R';
+
+    private static final long REPLY_MAGIC = 0x5A43534D454D5259L;
+
+    /**
+     * 同步请求末尾的标记，表示调用方能还原共享内存里的返回
+     */
+    private static final long ACCEPT_MAGIC = 0x5A43534143435054L;
+
+    private static final int ACCEPT_SIZE = 8;
+
+    private static final int MAX_POOLED_REGIONS = 4;
+
+    private static final int MAX_LEASED_REGIONS = 4;
+
+    private static final String REGION_NAME = "CoreServiceManager";
+
+    /**
+     * 共享内存要多拷贝几次，只给接近 binder 缓冲上限、直接发会失败的数据用
+     */
+    private static volatile int sThreshold = 512 * 1024;
+
+    private static final ArrayList<MemoryFile> POOL = new ArrayList<MemoryFile>(MAX_POOLED_REGIONS);
+
+    /**
+     * 【实现方】借给调用方还没还回来的返回 region，按借出顺序
+     */
+    private static final LinkedHashMap<Integer, MemoryFile> LEASED = new LinkedHashMap<Integer, MemoryFile>();
+
+    private static int sNextToken;
+
+    private static Method sGetFileDescriptor;
+
+    private static boolean sUnsupported;
+
+    static void setThreshold(int bytes) {
+        sThreshold = bytes;
+    }
+
+    static boolean isLarge(Parcel parcel) {
+        return parcel.dataSize() > sThreshold;
+    }
+
+    /**
+     * 【调用方】代替 remote.transact，大的请求走共享内存，大的返回在这里还原
+     */
+    static boolean transact(IBinder remote, int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        boolean result;
+        byte[] bytes = isLarge(data) && !sUnsupported ? marshall(data) : null;
+        if (null != bytes) {
+            result = transactShared(remote, code, bytes, reply, flags);
+        } else if (null == reply || (flags & IBinder.FLAG_ONEWAY) != 0) {
+            return remote.transact(code, data, reply, flags);
+        } else {
+            int size = data.dataSize();
+            data.setDataPosition(size);
+            data.writeLong(ACCEPT_MAGIC);
+            try {
+                result = remote.transact(code, data, reply, flags);
+            } finally {
+                data.setDataSize(size); // 重试时 data 会原样再发一次
+            }
+        }
+        if (null != reply) {
+            readReply(remote, reply);
+        }
+        return result;
+    }
+
+    private static boolean transactShared(IBinder remote, int code, byte[] bytes, Parcel reply, int flags) throws RemoteException {
+        boolean oneway = (flags & IBinder.FLAG_ONEWAY) != 0;
+        MemoryFile region;
+        try {
+            region = oneway ? new MemoryFile(REGION_NAME, bytes.length) : acquire(bytes.length);
+            region.writeBytes(bytes, 0, 0, bytes.length);
+        } catch (IOException e) {
+            throw new RemoteException(); // 系统调用失败，和 binder 缓冲不够一样当作调用失败
+        }
+        Parcel handle = Parcel.obtain();
+        try {
+            FileDescriptor fd = getFileDescriptor(region);
+            if (null == fd) { // 拿不到 fd，只能原样发
+                handle.unmarshall(bytes, 0, bytes.length);
+                handle.setDataPosition(0);
+                return remote.transact(code, handle, reply, flags);
+            }
+            handle.writeInt(code);
+            handle.writeInt(bytes.length);
+            handle.writeFileDescriptor(fd); // parcel 持有 dup 出来的 fd
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_VERBOSE)) {
+                CoreTrace.record(CoreTrace.EVENT_TRANSACT, null, code, 0, "shared memory " + bytes.length);
+            }
+            return remote.transact(SHARED_MEMORY_TRANSACTION, handle, reply, flags);
+        } finally {
+            handle.recycle();
+            if (oneway) {
+                region.close();
+            } else {
+                release(region);
+            }
+        }
+    }
+
+    /**
+     * 【实现方】取出共享内存里的请求
+     *
+     * @return 原来的请求，code 放在 codeOut[0]；读失败返回 null
+     */
+    static Parcel readRequest(Parcel handle, int[] codeOut) {
+        codeOut[0] = handle.readInt();
+        int length = handle.readInt();
+        ParcelFileDescriptor pfd = handle.readFileDescriptor();
+        byte[] bytes = read(pfd, length);
+        if (null == bytes) {
+            return null;
+        }
+        Parcel data = Parcel.obtain();
+        data.unmarshall(bytes, 0, bytes.length);
+        data.setDataPosition(0);
+        return data;
+    }
+
+    /**
+     * 【实现方】取出并去掉同步请求末尾的 {@link #ACCEPT_MAGIC}
+     *
+     * @return 调用方能还原共享内存里的返回
+     */
+    static boolean acceptsSharedReply(Parcel data) {
+        int size = data.dataSize();
+        if (size < ACCEPT_SIZE) {
+            return false;
+        }
+        int position = data.dataPosition();
+        data.setDataPosition(size - ACCEPT_SIZE);
+        boolean accepted = data.readLong() == ACCEPT_MAGIC;
+        if (accepted) {
+            data.setDataSize(size - ACCEPT_SIZE);
+        }
+        data.setDataPosition(position);
+        return accepted;
+    }
+
+    /**
+     * 【实现方】分发完后调用，大的返回换成共享内存，调用方必须是 {@link #transact}
+     */
+    static void writeReply(Parcel reply) {
+        if (null == reply || !isLarge(reply) || sUnsupported) {
+            return;
+        }
+        byte[] bytes = marshall(reply);
+        if (null == bytes) {
+            return;
+        }
+        MemoryFile region;
+        try {
+            region = acquire(bytes.length);
+        } catch (IOException e) { // 保持原样返回
+            CoreTrace.error(null, "[writeReply]", e);
+            return;
+        }
+        try {
+            region.writeBytes(bytes, 0, 0, bytes.length);
+            FileDescriptor fd = getFileDescriptor(region);
+            if (null == fd) {
+                release(region);
+                return;
+            }
+            int token = lease(region);
+            reply.setDataSize(0);
+            reply.setDataPosition(0);
+            reply.writeInt(REPLY_MARKER);
+            reply.writeLong(REPLY_MAGIC);
+            reply.writeInt(token);
+            reply.writeInt(bytes.length);
+            reply.writeFileDescriptor(fd);
+            reply.setDataPosition(0);
+        } catch (IOException e) { // 保持原样返回
+            CoreTrace.error(null, "[writeReply]", e);
+            release(region);
+        }
+    }
+
+    /**
+     * 【实现方】调用方读完了，把借出去的 region 放回池里
+     */
+    static void releaseReply(Parcel data) {
+        MemoryFile region;
+        synchronized (LEASED) {
+            region = LEASED.remove(data.readInt());
+        }
+        if (null != region) {
+            release(region);
+        }
+    }
+
+    private static int lease(MemoryFile region) {
+        MemoryFile evicted = null;
+        int token;
+        synchronized (LEASED) {
+            if (LEASED.size() >= MAX_LEASED_REGIONS) {
+                Iterator<MemoryFile> iterator = LEASED.values().iterator();
+                evicted = iterator.next();
+                iterator.remove();
+            }
+            token = ++sNextToken;
+            LEASED.put(token, region);
+        }
+        if (null != evicted) { // 调用方还没还的话它手里的 dup 仍然有效，只是不再复用
+            evicted.close();
+        }
+        return token;
+    }
+
+    /**
+     * 【调用方】reply 是共享内存的话还原成原来的内容，读完告诉对端回收 region
+     */
+    private static void readReply(IBinder remote, Parcel reply) throws RemoteException {
+        if (reply.dataSize() < 16) {
+            return;
+        }
+        int position = reply.dataPosition();
+        reply.setDataPosition(0);
+        if (reply.readInt() != REPLY_MARKER || reply.readLong() != REPLY_MAGIC) {
+            reply.setDataPosition(position);
+            return;
+        }
+        int token = reply.readInt();
+        int length = reply.readInt();
+        byte[] bytes = read(reply.readFileDescriptor(), length);
+        Parcel release = Parcel.obtain();
+        try {
+            release.writeInt(token);
+            remote.transact(RELEASE_REPLY_TRANSACTION, release, null, IBinder.FLAG_ONEWAY);
+        } catch (RemoteException e) { // 对端死了，region 随进程释放
+        } finally {
+            release.recycle();
+        }
+        if (null == bytes) {
+            throw new RemoteException();
+        }
+        reply.setDataSize(0);
+        reply.unmarshall(bytes, 0, bytes.length);
+        reply.setDataPosition(0);
+    }
+
+    private static byte[] read(ParcelFileDescriptor pfd, int length) {
+        if (null == pfd) {
+            return null;
+        }
+        FileInputStream in = new FileInputStream(pfd.getFileDescriptor());
+        try {
+            in.getChannel().position(0); // 池里的 region 会被反复读，fd 的偏移是共享的
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int count = in.read(bytes, offset, length - offset);
+                if (count < 0) {
+                    return null;
+                }
+                offset += count;
+            }
+            return bytes;
+        } catch (IOException e) {
+            CoreTrace.error(null, "[read]", e);
+            return null;
+        } finally {
+            try {
+                pfd.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * @return 带 binder / fd 的返回 null
+     */
+    private static byte[] marshall(Parcel parcel) {
+        try {
+            return parcel.marshall();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static MemoryFile acquire(int length) throws IOException {
+        synchronized (POOL) {
+            for (int i = 0; i < POOL.size(); i++) {
+                if (POOL.get(i).length() >= length) {
+                    return POOL.remove(i);
+                }
+            }
+        }
+        int size = length <= 1 ? 1 : Integer.highestOneBit(length - 1) << 1; // 向上取 2 的幂，方便复用
+        return new MemoryFile(REGION_NAME, size);
+    }
+
+    private static void release(MemoryFile region) {
+        synchronized (POOL) {
+            if (POOL.size() < MAX_POOLED_REGIONS) {
+                POOL.add(region);
+                return;
+            }
+        }
+        region.close();
+    }
+
+    /**
+     * MemoryFile.getFileDescriptor 是隐藏方法，反射调用，失败后不再尝试
+     */
+    private static FileDescriptor getFileDescriptor(MemoryFile region) {
+        Method method;
+        synchronized (SharedMemoryChannel.class) {
+            if (sUnsupported) {
+                return null;
+            }
+            method = sGetFileDescriptor;
+            if (null == method) {
+                try {
+                    method = MemoryFile.class.getDeclaredMethod("getFileDescriptor");
+                    method.setAccessible(true);
+                    sGetFileDescriptor = method;
+                } catch (Exception e) {
+                    sUnsupported = true;
+                    CoreTrace.error(null, "[getFileDescriptor]", e);
+                    return null;
+                }
+            }
+        }
+        try {
+            return (FileDescriptor) method.invoke(region);
+        } catch (Exception e) {
+            CoreTrace.error(null, "[getFileDescriptor]", e);
+            return null;
+        }
+    }
+}
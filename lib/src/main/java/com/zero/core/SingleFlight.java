@@ -0,0 +1,78 @@
+package com.zero.core;
+
+import android.os.RemoteException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 同一个 key 同时只有一个线程真正执行查询（IPC），其他线程等它的结果；不同 key 之间互不影响
+ */
+class SingleFlight<V> {
+
+    interface Call<V> {
+        V call() throws RemoteException;
+    }
+
+    private final ConcurrentHashMap<String, Flight<V>> mFlights = new ConcurrentHashMap<String, Flight<V>>();
+
+    V execute(String key, Call<V> call) throws RemoteException {
+        Flight<V> flight = new Flight<V>();
+        Flight<V> running = mFlights.putIfAbsent(key, flight);
+        if (null != running) {
+            return running.await();
+        }
+        try {
+            V value = call.call();
+            flight.finish(value, null);
+            return value;
+        } catch (RemoteException e) {
+            flight.finish(null, e);
+            throw e;
+        } catch (RuntimeException e) {
+            flight.finish(null, e);
+            throw e;
+        } catch (Error e) { // 例如创建服务时 NoClassDefFoundError，也要放开正在等的线程
+            flight.finish(null, new RuntimeException(e));
+            throw e;
+        } finally {
+            mFlights.remove(key, flight);
+        }
+    }
+
+    private static class Flight<V> {
+
+        private final CountDownLatch mDone = new CountDownLatch(1);
+
+        private V mValue;
+
+        private Exception mError;
+
+        void finish(V value, Exception error) {
+            mValue = value;
+            mError = error;
+            mDone.countDown();
+        }
+
+        V await() throws RemoteException {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    mDone.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (mError instanceof RemoteException) {
+                throw (RemoteException) mError;
+            } else if (mError instanceof RuntimeException) {
+                throw (RuntimeException) mError;
+            }
+            return mValue;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.zero.core;
+
+import android.os.IBinder;
+import android.os.IInterface;
+import android.os.Parcel;
+import android.os.RemoteException;
+
+import java.io.FileDescriptor;
+
+/**
+ * 【调用方】远端 binder 外面包的一层，transact 时带上 trace id（见 {@link CoreTrace}），其他方法直接转发。
+ * 用于和 core 之间的 ICoreServiceManager 通道，服务的 binder 由 RemoteBinderProxy 负责。
+ */
+class TraceBinder implements IBinder {
+
+    private final String mName;
+
+    private final IBinder mRemote;
+
+    TraceBinder(String name, IBinder remote) {
+        mName = name;
+        mRemote = remote;
+    }
+
+    @Override
+    public boolean transact(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+        if (!CoreTrace.isEnabled(CoreTrace.LEVEL_INFO)) {
+            return mRemote.transact(code, data, reply, flags);
+        }
+        long prev = CoreTrace.begin();
+        long start = System.nanoTime();
+        try {
+            CoreTrace.writeTrailer(data, CoreTrace.currentTraceId());
+            return mRemote.transact(code, data, reply, flags);
+        } finally {
+            if (CoreTrace.isEnabled(CoreTrace.LEVEL_VERBOSE)) {
+                CoreTrace.record(CoreTrace.EVENT_TRANSACT, mName, code, System.nanoTime() - start, null);
+            }
+            CoreTrace.exit(prev);
+        }
+    }
+
+    @Override
+    public String getInterfaceDescriptor() throws RemoteException {
+        return mRemote.getInterfaceDescriptor();
+    }
+
+    @Override
+    public boolean pingBinder() {
+        return mRemote.pingBinder();
+    }
+
+    @Override
+    public boolean isBinderAlive() {
+        return mRemote.isBinderAlive();
+    }
+
+    @Override
+    public IInterface queryLocalInterface(String descriptor) {
+        return mRemote.queryLocalInterface(descriptor);
+    }
+
+    @Override
+    public void dump(FileDescriptor fd, String[] args) throws RemoteException {
+        mRemote.dump(fd, args);
+    }
+
+    @Override
+    public void dumpAsync(FileDescriptor fd, String[] args) throws RemoteException {
+        mRemote.dumpAsync(fd, args);
+    }
+
+    @Override
+    public void linkToDeath(DeathRecipient recipient, int flags) throws RemoteException {
+        mRemote.linkToDeath(recipient, flags);
+    }
+
+    @Override
+    public boolean unlinkToDeath(DeathRecipient recipient, int flags) {
+        return mRemote.unlinkToDeath(recipient, flags);
+    }
+}
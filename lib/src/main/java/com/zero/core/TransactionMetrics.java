@@ -0,0 +1,363 @@
+package com.zero.core;
+
+import android.os.IBinder;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 客户端跨进程调用的统计，按服务 id + transaction code 记录次数、耗时分布和请求/返回的 parcel 大小。
+ * 记录时不加锁，只有原子计数，release 包也可以常开；{@link #setEnabled(boolean)} 关掉后只剩一次 volatile 读。
+ * <p>
+ * 可通过 {@link CoreServiceManager#dump(PrintWriter)} 或对服务 binder 调用 dump/dumpAsync 输出。
+ */
+public class TransactionMetrics {
+
+    /**
+     * 耗时直方图的桶数，第 i 个桶是 [2^(i-1), 2^i) 微秒，最后一个桶收所有更大的
+     */
+    public static final int HISTOGRAM_BUCKETS = 32;
+
+    /**
+     * AIDL 从 FIRST_CALL_TRANSACTION 开始按声明顺序编号，前这么多个用数组存，其余的放 map
+     */
+    private static final int DIRECT_CODES = 64;
+
+    private static volatile boolean sEnabled = true;
+
+    private static final ConcurrentHashMap<String, ServiceMetrics> SERVICES = new ConcurrentHashMap<String, ServiceMetrics>();
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * @param id
+     * @return 还没有调用过返回 null
+     */
+    public static ServiceMetrics getServiceMetrics(String id) {
+        return SERVICES.get(id);
+    }
+
+    public static List<ServiceMetrics> getAllServiceMetrics() {
+        ArrayList<ServiceMetrics> result = new ArrayList<ServiceMetrics>(SERVICES.values());
+        Collections.sort(result, new Comparator<ServiceMetrics>() {
+            @Override
+            public int compare(ServiceMetrics lhs, ServiceMetrics rhs) {
+                return lhs.getServiceId().compareTo(rhs.getServiceId());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 清零所有计数。已有的代理一直持有自己的 ServiceMetrics，所以就地清零而不是从 map 里移除；
+     * 和正在进行的 record 之间不加锁，清零瞬间的个别调用可能只被清掉一部分。
+     */
+    public static void reset() {
+        for (ServiceMetrics metrics : SERVICES.values()) {
+            metrics.reset();
+        }
+    }
+
+    static ServiceMetrics obtain(String id) {
+        ServiceMetrics metrics = SERVICES.get(id);
+        if (null == metrics) {
+            metrics = new ServiceMetrics(id);
+            ServiceMetrics old = SERVICES.putIfAbsent(id, metrics);
+            if (null != old) {
+                metrics = old;
+            }
+        }
+        return metrics;
+    }
+
+    public static void dump(PrintWriter writer) {
+        writer.println("Transaction metrics:");
+        for (ServiceMetrics metrics : getAllServiceMetrics()) {
+            metrics.dump(writer);
+        }
+    }
+
+    /**
+     * 一个服务的统计
+     */
+    public static final class ServiceMetrics {
+
+        private final String mServiceId;
+
+        private final AtomicReferenceArray<MethodMetrics> mDirect = new AtomicReferenceArray<MethodMetrics>(DIRECT_CODES);
+
+        private final ConcurrentHashMap<Integer, MethodMetrics> mOthers = new ConcurrentHashMap<Integer, MethodMetrics>();
+
+        ServiceMetrics(String id) {
+            mServiceId = id;
+        }
+
+        public String getServiceId() {
+            return mServiceId;
+        }
+
+        /**
+         * @param code
+         * @return 这个 code 还没有调用过返回 null
+         */
+        public MethodMetrics getMethodMetrics(int code) {
+            int slot = code - IBinder.FIRST_CALL_TRANSACTION;
+            if (slot >= 0 && slot < DIRECT_CODES) {
+                return mDirect.get(slot);
+            }
+            return mOthers.get(code);
+        }
+
+        /**
+         * @return 按 code 排序
+         */
+        public List<MethodMetrics> getAllMethodMetrics() {
+            ArrayList<MethodMetrics> result = new ArrayList<MethodMetrics>();
+            for (int i = 0; i < DIRECT_CODES; i++) {
+                MethodMetrics metrics = mDirect.get(i);
+                if (null != metrics) {
+                    result.add(metrics);
+                }
+            }
+            result.addAll(mOthers.values());
+            Collections.sort(result, new Comparator<MethodMetrics>() {
+                @Override
+                public int compare(MethodMetrics lhs, MethodMetrics rhs) {
+                    return lhs.getCode() < rhs.getCode() ? -1 : (lhs.getCode() == rhs.getCode() ? 0 : 1);
+                }
+            });
+            return result;
+        }
+
+        MethodMetrics obtain(int code) {
+            int slot = code - IBinder.FIRST_CALL_TRANSACTION;
+            if (slot >= 0 && slot < DIRECT_CODES) {
+                MethodMetrics metrics = mDirect.get(slot);
+                if (null == metrics) {
+                    mDirect.compareAndSet(slot, null, new MethodMetrics(code));
+                    metrics = mDirect.get(slot);
+                }
+                return metrics;
+            }
+            MethodMetrics metrics = mOthers.get(code);
+            if (null == metrics) {
+                metrics = new MethodMetrics(code);
+                MethodMetrics old = mOthers.putIfAbsent(code, metrics);
+                if (null != old) {
+                    metrics = old;
+                }
+            }
+            return metrics;
+        }
+
+        void record(int code, long nanos, int requestBytes, int replyBytes, boolean failed) {
+            obtain(code).record(nanos, requestBytes, replyBytes, failed);
+        }
+
+        void reset() {
+            for (int i = 0; i < DIRECT_CODES; i++) {
+                MethodMetrics metrics = mDirect.get(i);
+                if (null != metrics) {
+                    metrics.reset();
+                }
+            }
+            for (MethodMetrics metrics : mOthers.values()) {
+                metrics.reset();
+            }
+        }
+
+        public void dump(PrintWriter writer) {
+            writer.print("  ");
+            writer.println(mServiceId);
+            for (MethodMetrics metrics : getAllMethodMetrics()) {
+                metrics.dump(writer);
+            }
+        }
+    }
+
+    /**
+     * 一个 transaction code 的统计
+     */
+    public static final class MethodMetrics {
+
+        private final int mCode;
+
+        private final AtomicLong mCount = new AtomicLong();
+
+        private final AtomicLong mFailures = new AtomicLong();
+
+        private final AtomicLong mTotalNanos = new AtomicLong();
+
+        private final AtomicLong mMaxNanos = new AtomicLong();
+
+        private final AtomicLong mRequestBytes = new AtomicLong();
+
+        private final AtomicLong mMaxRequestBytes = new AtomicLong();
+
+        private final AtomicLong mReplyBytes = new AtomicLong();
+
+        private final AtomicLong mMaxReplyBytes = new AtomicLong();
+
+        private final AtomicLongArray mHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+        MethodMetrics(int code) {
+            mCode = code;
+        }
+
+        void record(long nanos, int requestBytes, int replyBytes, boolean failed) {
+            mCount.incrementAndGet();
+            if (failed) {
+                mFailures.incrementAndGet();
+            }
+            mTotalNanos.addAndGet(nanos);
+            updateMax(mMaxNanos, nanos);
+            mRequestBytes.addAndGet(requestBytes);
+            updateMax(mMaxRequestBytes, requestBytes);
+            mReplyBytes.addAndGet(replyBytes);
+            updateMax(mMaxReplyBytes, replyBytes);
+            mHistogram.incrementAndGet(bucketOf(nanos / 1000));
+        }
+
+        void reset() {
+            mCount.set(0);
+            mFailures.set(0);
+            mTotalNanos.set(0);
+            mMaxNanos.set(0);
+            mRequestBytes.set(0);
+            mMaxRequestBytes.set(0);
+            mReplyBytes.set(0);
+            mMaxReplyBytes.set(0);
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                mHistogram.set(i, 0);
+            }
+        }
+
+        public int getCode() {
+            return mCode;
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        /**
+         * @return 抛异常的调用次数
+         */
+        public long getFailures() {
+            return mFailures.get();
+        }
+
+        public long getTotalNanos() {
+            return mTotalNanos.get();
+        }
+
+        public long getMaxNanos() {
+            return mMaxNanos.get();
+        }
+
+        public long getRequestBytes() {
+            return mRequestBytes.get();
+        }
+
+        public long getMaxRequestBytes() {
+            return mMaxRequestBytes.get();
+        }
+
+        public long getReplyBytes() {
+            return mReplyBytes.get();
+        }
+
+        public long getMaxReplyBytes() {
+            return mMaxReplyBytes.get();
+        }
+
+        /**
+         * @return 各个桶的计数，见 {@link #HISTOGRAM_BUCKETS}
+         */
+        public long[] getHistogram() {
+            long[] result = new long[HISTOGRAM_BUCKETS];
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                result[i] = mHistogram.get(i);
+            }
+            return result;
+        }
+
+        /**
+         * @param percentile 0~100
+         * @return 所在桶的上界（微秒），没有数据返回 0
+         */
+        public long getPercentileMicros(double percentile) {
+            long[] histogram = getHistogram();
+            long total = 0;
+            for (long count : histogram) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                seen += histogram[i];
+                if (seen >= target) {
+                    return 1L << i;
+                }
+            }
+            return 1L << (HISTOGRAM_BUCKETS - 1);
+        }
+
+        public void dump(PrintWriter writer) {
+            long count = getCount();
+            writer.print("    code=");
+            writer.print(mCode);
+            writer.print(" count=");
+            writer.print(count);
+            writer.print(" failures=");
+            writer.print(getFailures());
+            writer.print(" avg(us)=");
+            writer.print(count == 0 ? 0 : getTotalNanos() / count / 1000);
+            writer.print(" p50(us)<=");
+            writer.print(getPercentileMicros(50));
+            writer.print(" p99(us)<=");
+            writer.print(getPercentileMicros(99));
+            writer.print(" max(us)=");
+            writer.print(getMaxNanos() / 1000);
+            writer.print(" req(avg/max)=");
+            writer.print(count == 0 ? 0 : getRequestBytes() / count);
+            writer.print("/");
+            writer.print(getMaxRequestBytes());
+            writer.print(" reply(avg/max)=");
+            writer.print(count == 0 ? 0 : getReplyBytes() / count);
+            writer.print("/");
+            writer.println(getMaxReplyBytes());
+        }
+
+        private static int bucketOf(long micros) {
+            if (micros <= 0) {
+                return 0;
+            }
+            int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            return bucket < HISTOGRAM_BUCKETS ? bucket : HISTOGRAM_BUCKETS - 1;
+        }
+
+        private static void updateMax(AtomicLong max, long value) {
+            long current;
+            do {
+                current = max.get();
+            } while (value > current && !max.compareAndSet(current, value));
+        }
+    }
+}